@@ -0,0 +1,81 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
+import at.ac.tuwien.mmue_sb10.persistence.User;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs update and draw of the GameState for thousands of frames on every stage and fails if a frame allocates objects.
+ * Frames in which the player dies or finishes are skipped, because saving the savefile hands a task to the database thread.
+ * The game gets its own context with an in-memory database, so the heatmaps, stats, ghosts and times of the test do not end up on the device
+ */
+@RunWith(AndroidJUnit4.class)
+public class GameLoopAllocationTest {
+    private static final int[] LEVELS = {-5, -4, -3, -2, -1, 1, 2, 3, 4, 5, 6, 7, 8};
+    private static final int FRAMES = 3000; //simulated frames per stage
+    private static final int WARMUP_FRAMES = 120; //frames at the start of a stage that may allocate (first draw calls, class loading)
+    private static final long FRAME_TIME = 16; //ms per frame at 60 fps
+
+    @Test
+    public void updateAndDraw_doNotAllocate() {
+        Context context = new ContextWrapper(InstrumentationRegistry.getInstrumentation().getTargetContext()) {
+            @Override
+            public Context getApplicationContext() {
+                return this; //HighscoreRepository keeps the application context, it has to find the in-memory database as well
+            }
+        };
+        EscapeDatabase.createInMemory(context);
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        GameState state = new GameState(context, metrics.density, metrics.widthPixels, metrics.heightPixels);
+        Canvas canvas = new Canvas(Bitmap.createBitmap(metrics.widthPixels, metrics.heightPixels, Bitmap.Config.ARGB_8888));
+        MotionEvent tap = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, metrics.widthPixels * 0.75f, metrics.heightPixels / 2f, 0);
+        MotionEvent release = MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, metrics.widthPixels * 0.75f, metrics.heightPixels / 2f, 0);
+
+        //tutorial user that is not in the database
+        User user = new User("allocation test", true);
+        state.setUser(user);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int level : LEVELS) {
+                state.load(level);
+                state.onTouchEvent(tap); //starts the stage
+                for (int frame = 1; frame <= FRAMES && !state.finished; frame++) {
+                    if (state.isPlayerDead()) {
+                        //retry happens when the finger is lifted
+                        state.onTouchEvent(tap);
+                        state.onTouchEvent(release);
+                    }
+
+                    int allocations = Debug.getThreadAllocCount();
+                    state.update(FRAME_TIME);
+                    state.draw(canvas, FRAME_TIME);
+                    int allocated = Debug.getThreadAllocCount() - allocations;
+
+                    if (frame > WARMUP_FRAMES && allocated > 0 && !state.isPlayerDead() && !state.finished)
+                        fail("frame " + frame + " of stage " + level + " allocated " + allocated + " objects");
+                }
+            }
+        } finally {
+            Debug.stopAllocCounting();
+            tap.recycle();
+            release.recycle();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Keeps the timings of the last frames and writes them to a file after a slow frame or a crash.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class is a flight recorder for the render loop. Every frame adds one record (start, update, lock, draw and post time) to a ring buffer
+ * of fixed size, so recording does not allocate. When a frame takes longer than SLOW_FRAME_NS, the buffer is copied and written to
+ * files/flight_recorder on the background thread. When the app crashes, the buffer is written right away before the app is terminated
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class FrameRecorder {
+    private static final String TAG = FrameRecorder.class.getSimpleName();
+    private static FrameRecorder sInstance;
+
+    private static final int CAPACITY = 600; //frames kept in the ring buffer (10 seconds at 60 fps)
+    private static final int FIELDS = 6; //start, update, lock, draw, post, level
+    private static final long SLOW_FRAME_NS = 50_000_000; //frames taking longer than this trigger a dump
+    private static final long MIN_DUMP_INTERVAL = 30_000; //time in ms between two dumps of slow frames
+    private static final int MAX_FILES = 5; //number of dumps kept in the directory. older dumps are deleted
+    private static final String DIRECTORY = "flight_recorder";
+
+    private final File directory; //directory the dumps are written to
+    private final long[] records; //ring buffer, FIELDS values per frame
+    private final long[] snapshot; //copy of records that is written on the background thread
+    private final Runnable write_snapshot = this::writeSnapshot; //task to write the snapshot. created once instead of for every dump
+    private int head; //index of the next record
+    private int count; //number of valid records
+    private int snapshot_count; //number of valid records in snapshot
+    private boolean dump_pending; //snapshot is being written
+    private long last_dump; //uptime of the last dump in ms
+    private int level; //current level, written with every record
+
+    /**
+     * Private constructor for the FrameRecorder. Installs a handler that writes the buffer if the app crashes
+     * @param context Context of the app to get the files directory
+     * @since 1.1
+     */
+    private FrameRecorder(Context context) {
+        this.directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+        this.records = new long[CAPACITY * FIELDS];
+        this.snapshot = new long[CAPACITY * FIELDS];
+        this.last_dump = -MIN_DUMP_INTERVAL;
+
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+            dumpNow("crash");
+            if (previous != null)
+                previous.uncaughtException(thread, throwable);
+        });
+    }
+
+    /**
+     * Singleton Pattern used for the FrameRecorder, so there is only one crash handler
+     * @param context Context of the app to construct the FrameRecorder if there is no instance yet
+     * @since 1.1
+     */
+    public static FrameRecorder getInstance(Context context) {
+        if (null == sInstance) {
+            synchronized (FrameRecorder.class) {
+                if (null == sInstance)
+                    sInstance = new FrameRecorder(context);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Sets the level that is written with the following records
+     * @param level ID of the current stage
+     * @since 1.1
+     */
+    public synchronized void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Adds the timings of a frame. Starts writing a dump if the frame was slow
+     *
+     * @param start_ns  Start of the frame (System.nanoTime)
+     * @param update_ns Time in ns update took
+     * @param lock_ns   Time in ns locking the canvas took
+     * @param draw_ns   Time in ns draw took
+     * @param post_ns   Time in ns posting the canvas took
+     * @since 1.1
+     */
+    public synchronized void record(long start_ns, long update_ns, long lock_ns, long draw_ns, long post_ns) {
+        int i = this.head * FIELDS;
+        this.records[i] = start_ns;
+        this.records[i + 1] = update_ns;
+        this.records[i + 2] = lock_ns;
+        this.records[i + 3] = draw_ns;
+        this.records[i + 4] = post_ns;
+        this.records[i + 5] = this.level;
+        this.head = (this.head + 1) % CAPACITY;
+        if (this.count < CAPACITY)
+            this.count++;
+
+        if (update_ns + lock_ns + draw_ns + post_ns > SLOW_FRAME_NS && !this.dump_pending && SystemClock.uptimeMillis() - this.last_dump > MIN_DUMP_INTERVAL) {
+            this.snapshot_count = copyRecords(this.snapshot);
+            this.dump_pending = true;
+            this.last_dump = SystemClock.uptimeMillis();
+            Concurrency.executeAsync("FrameRecorder.write", this.write_snapshot);
+        }
+    }
+
+    /**
+     * Writes the buffer to a file on the current thread. Used when the app crashes
+     * @param reason Reason that is part of the file name
+     * @since 1.1
+     */
+    public void dumpNow(String reason) {
+        long[] copy = new long[CAPACITY * FIELDS];
+        int copied;
+        synchronized (this) {
+            copied = copyRecords(copy);
+        }
+        write(copy, copied, reason);
+    }
+
+    /**
+     * Copies the records oldest first into target
+     * @return Number of copied records
+     * @since 1.1
+     */
+    private int copyRecords(long[] target) {
+        int oldest = (this.head - this.count + CAPACITY) % CAPACITY;
+        for (int n = 0; n < this.count; n++)
+            System.arraycopy(this.records, ((oldest + n) % CAPACITY) * FIELDS, target, n * FIELDS, FIELDS);
+        return this.count;
+    }
+
+    /**
+     * Writes the snapshot of a slow frame. Runs on the background thread
+     * @since 1.1
+     */
+    private void writeSnapshot() {
+        write(this.snapshot, this.snapshot_count, "slow");
+        synchronized (this) {
+            this.dump_pending = false;
+        }
+    }
+
+    /**
+     * Writes records as CSV file. Times are in microseconds, start is relative to the first record
+     * @since 1.1
+     */
+    private void write(long[] records, int count, String reason) {
+        if (count == 0)
+            return;
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + this.directory);
+            return;
+        }
+
+        File file = new File(this.directory, "frames_" + System.currentTimeMillis() + "_" + reason + ".csv");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("frame,level,start_us,update_us,lock_us,draw_us,post_us");
+            long first = records[0];
+            for (int n = 0; n < count; n++) {
+                int i = n * FIELDS;
+                writer.print(n);
+                writer.print(',');
+                writer.print(records[i + 5]);
+                writer.print(',');
+                writer.print((records[i] - first) / 1000);
+                for (int f = 1; f < 5; f++) {
+                    writer.print(',');
+                    writer.print(records[i + f] / 1000);
+                }
+                writer.println();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write " + file, e);
+            return;
+        }
+        Log.w(TAG, "Frame timings written to " + file);
+        deleteOldDumps();
+    }
+
+    /**
+     * Deletes the oldest dumps so at most MAX_FILES are kept
+     * @since 1.1
+     */
+    private void deleteOldDumps() {
+        File[] files = this.directory.listFiles();
+        if (files == null || files.length <= MAX_FILES)
+            return;
+        //file names start with the time of the dump, so sorting by name sorts by age
+        Arrays.sort(files);
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            if (!files[i].delete())
+                Log.w(TAG, "Could not delete " + files[i]);
+        }
+    }
+}
@@ -15,23 +15,51 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Bundle;
+import android.os.Trace;
+import android.util.Log;
 import android.view.MotionEvent;
 
 
 import androidx.core.app.ActivityOptionsCompat;
 import androidx.core.content.res.ResourcesCompat;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
+import at.ac.tuwien.mmue_sb10.persistence.Ghost;
+import at.ac.tuwien.mmue_sb10.persistence.GhostDao;
+import at.ac.tuwien.mmue_sb10.persistence.Heatmap;
+import at.ac.tuwien.mmue_sb10.persistence.HeatmapDao;
 import at.ac.tuwien.mmue_sb10.persistence.Highscore;
+import at.ac.tuwien.mmue_sb10.persistence.HighscoreRepository;
+import at.ac.tuwien.mmue_sb10.persistence.PersonalBest;
+import at.ac.tuwien.mmue_sb10.persistence.PersonalBestDao;
+import at.ac.tuwien.mmue_sb10.persistence.Run;
+import at.ac.tuwien.mmue_sb10.persistence.Split;
+import at.ac.tuwien.mmue_sb10.persistence.Stats;
+import at.ac.tuwien.mmue_sb10.persistence.StatsDao;
 import at.ac.tuwien.mmue_sb10.persistence.User;
+import at.ac.tuwien.mmue_sb10.simulation.DeathHeatmap;
+import at.ac.tuwien.mmue_sb10.simulation.LevelStats;
+import at.ac.tuwien.mmue_sb10.simulation.PhysicsListener;
+import at.ac.tuwien.mmue_sb10.simulation.PlayerBatch;
+import at.ac.tuwien.mmue_sb10.simulation.PlayerPhysics;
+import at.ac.tuwien.mmue_sb10.simulation.PlayerState;
+import at.ac.tuwien.mmue_sb10.simulation.RewindBuffer;
+import at.ac.tuwien.mmue_sb10.simulation.RunTimer;
+import at.ac.tuwien.mmue_sb10.simulation.Trajectory;
 import at.ac.tuwien.mmue_sb10.util.Concurrency;
 
 /**
@@ -39,51 +67,118 @@ import at.ac.tuwien.mmue_sb10.util.Concurrency;
  * @since 0.1
  * @author Lukas Lidauer & Jan König
  */
-public class GameState {
+public class GameState implements PhysicsListener {
+    private static final String TAG = GameState.class.getSimpleName();
+
     public static final boolean SKIP_FINISH_SPLASH_SCREEN = false;
+    public static final boolean NATIVE_RESOLUTION_RENDERING = true; //draws the world at native tile resolution and upscales it once with nearest-neighbour
+    public static final int RACE_RIVALS = 50; //number of rivals in race mode
+    public static final boolean SHOW_DEATH_HEATMAP = false; //tints the tiles where players died most often, so unfair spots of a stage stand out
+    public static final boolean SHOW_PERFORMANCE_OVERLAY = false; //shows the performance overlay from the start. can also be toggled by tapping the death counter while paused
 
-    private static final int PLAYER_WIDTH = 18; //player width in pixels
-    private static final int PLAYER_HEIGTH = 24; //player heigth in pixel (24 is maximum because of collision)
+    private static final int PLAYER_WIDTH = PlayerPhysics.PLAYER_WIDTH; //player width in pixels
+    private static final int PLAYER_HEIGTH = PlayerPhysics.PLAYER_HEIGTH; //player heigth in pixel (24 is maximum because of collision)
     private static final float FRAME_TIME = 83f; //player animation. 83f is default for 12fps
+    private static final int TIMER_MAX_SPLITS = 64; //splits of an attempt that are kept. stages have far fewer checkpoints
+    private static final int PAUSE_FADE_TIME = 200; //time in ms for the pause screen to fade in
+    private static final int PAUSE_POSTED_FRAMES = 3; //frames of the finished pause screen to post before drawing stops (covers all surface buffers)
+    private static final int REWIND_CAPACITY = 900; //snapshots kept for rewinding (15 seconds at 60 fps)
+    private static final long REWIND_TIME = 3000; //time in ms one rewind goes back
+    private static final int REWIND_SPEED = 4; //rewinding plays the snapshots backwards this many times faster than real time
+    private static final long TOUCH_UNDO_TIME = 150; //time in ms after a tap in which a second finger takes back its jump or gravity change
+    private static final int TRAJECTORY_CAPACITY = (int) (10 * 60 * 1000 / PlayerPhysics.TICK); //samples recorded per run (10 minutes)
+    private static final int GHOST_ALPHA = 90; //opacity of the ghost
+    private static final int FRAME_MIRRORED = 1 << 6; //flag of a recorded frame: player runs to the left
+    private static final int FRAME_FLIPPED = 1 << 7; //flag of a recorded frame: player is upside down
+    private static final int HEATMAP_SAVE_DEATHS = 10; //deaths are written to the database in batches of this size
+    private static final int HEATMAP_MAX_ALPHA = 170; //opacity of the tint of the tile with the most deaths
 
     /*
-     * PLAYER: POSITION, VELOCITY, ACCELERATION
+     * PLAYER
      */
-    private float player_pos_x;
-    private float player_pos_y;
-    private float player_velocity_x;
-    private float player_boost_x;
-    private float player_velocity_y;
-    private float player_acceleration_y;
-
-    private float player_move_y;
-    private float player_move_x;
-
-    /*
-     * PLAYER: STATE
-     */
-    private byte gravity; //gravity can either be regular or inverted (or top or bottom)
-    private boolean player_inAir; //player is in air?
-    private boolean player_onBoost; //player touches booster?
-    private boolean player_inInverter; //player touches inverter?
-    private boolean player_onJumper; //player touches jumper?
-    private boolean player_first_gravity_inAir; //player is allowed to do only one gravity change in the air until he hits the ground again. This variable keeps track of that.
-    private boolean player_dead; //player died
-    private boolean player_no_input; //game doesnt accept input for player until stage is finished. starts screen fade out
+    private PlayerPhysics physics; //position, velocity, gravity and collision state of the player
+    private RewindBuffer rewind_buffer; //snapshots of the player of the last seconds
+    private long rewind_remaining; //time in ms that is still to be rewound. 0 if not rewinding
+    private boolean retry_pending; //player tapped the death screen. retry when the finger is lifted, unless a second finger starts a rewind
+    private float[] touch_undo; //snapshot of the player before the last tap jumped or changed gravity
+    private long touch_undo_run_time = -1; //run_time of that tap. -1 if there is nothing to take back
+    private float[] checkpoint; //snapshot of the player at the last checkpoint. retry restores it instead of starting over
+    private boolean has_checkpoint; //a checkpoint of the current stage has been reached
+    private boolean checkpoint_reached; //player touched a checkpoint during the current step
+    private float[] checkpoint_unsaved; //copy of the checkpoint for the database thread. also the lock for checkpoint_unsaved_user and checkpoint_queued
+    private User checkpoint_unsaved_user; //user of checkpoint_unsaved. only its checkpoint is changed on the database thread, like in clearCheckpoint
+    private boolean checkpoint_queued; //save_checkpoint_task is queued and has not taken checkpoint_unsaved yet
+    private Concurrency.Task save_checkpoint_task; //writes checkpoint_unsaved to the save file. created once, so queueing it does not allocate
     private float current_fade_out_time; //current timer to fade out
+    private int fade_alpha; //alpha of the last drawn fadeout. 255 means the screen is completely black
 
-    private PlayerState player_state; //current state of the player. used for animations
-    private PlayerState player_last_state; //last state of player. used for animations
     private Bitmap[] player_frames; //all frames of the player animations
     private float player_anim_time; //time counter used for animations
     private int player_current_frame; //current frame of the player to be drawn
     private Matrix player_draw_matrix; //transformation of player
+    private int player_current_flags; //FRAME_MIRRORED and FRAME_FLIPPED of the current player frame
     private float player_draw_scale; //factor to scale the player bitmap
 
+    /*
+     * GHOST
+     */
+    private Trajectory recording; //path of the current run
+    private boolean recording_valid; //current run started at the beginning of the stage in this session, so it can become the ghost
+    private long run_time; //play time of the current run in ms
+    private long checkpoint_run_time; //run_time when the checkpoint was reached. -1 if the checkpoint is from an earlier session
+    private int checkpoint_splits; //number of splits of the timer when the checkpoint was reached
+    private int checkpoint_ticks; //time of the timer in ticks when the checkpoint was reached
+    private long checkpoint_rivals_time; //rivals_time when the checkpoint was reached
+    private volatile Trajectory ghost; //fastest run of the stage. null if there is none. loaded in the background
+    private Matrix ghost_draw_matrix; //transformation of the ghost
+    private Paint ghost_paint; //translucent paint of the ghost
+
+    /*
+     * TIMER
+     */
+    private RunTimer timer; //play time of the current attempt in ticks, with the splits at the checkpoints
+    private boolean timer_valid; //current run started at the beginning of the stage in this session, so its time counts as personal best. Stays valid when the recording is full
+    private int timer_split_column; //tile column of the last split, so passing a checkpoint again after rewinding is no new split
+    private char[] timer_chars; //formatted time of the timer
+
+    /*
+     * RACE MODE
+     */
+    private PlayerBatch rivals; //simulated rivals. null if not in race mode
+    private long rivals_time; //play time in ms the rivals have to catch up with
+
+    /*
+     * DEATH HEATMAP
+     */
+    private DeathHeatmap heatmap; //deaths per tile of the current stage, from the database and of this session
+    private volatile Heatmap heatmap_stored; //heatmap of the database, loaded in the background. merged in the next update
+    private int[] heatmap_unsaved; //tile indices of the deaths that are not in the database yet
+    private int heatmap_unsaved_count; //number of entries in heatmap_unsaved
+    private Paint heatmap_paint; //tint of the tiles with deaths
+
+    /*
+     * STATS
+     */
+    private LevelStats stats_unsaved; //attempts, finishes and deaths of the current stage that are not in the database yet
+    private LevelStats stats_pending; //stats handed to the database thread. also the lock for the other stats_pending fields
+    private String stats_pending_name; //user of stats_pending
+    private int stats_pending_level; //stage of stats_pending
+    private boolean stats_queued; //save_stats_task is queued and has not taken stats_pending yet
+    private Concurrency.Task save_stats_task; //writes stats_pending to the database. created once, so queueing it does not allocate
+    private long attempt_time; //play time of the current attempt in ms, for the time to death
+
     /*
      * CURRENT STAGE
      */
     private Stage stage; //current stage
+    private int level; //ID of the current stage
+    private boolean endless; //endless mode: the stage is generated ahead of the player, see Stage.loadEndless
+    private long endless_seed; //seed of the endless mode
+    private boolean marathon; //marathon: all stages are played in one run without leaving the game, see Stage.preload
+    private long marathon_time; //play time of the marathon in ms
+    private int marathon_deaths; //deaths of the marathon
+    private boolean marathon_swap; //stage is finished and the next stage replaces it as soon as it has been prepared
+    private char[] marathon_chars; //formatted play time of the marathon
     public boolean finished; //stage is finished
     private boolean started; //stage is started
     public boolean running; //game is running
@@ -97,6 +192,12 @@ public class GameState {
     private RectF mute_pause_touch_zone; //rectangle of the mute button
 
     private RectF controls_zone; //rectangle of the controls zone
+    private RectF death_counter_touch_zone; //rectangle of the death counter. toggles the performance overlay while paused
+    private Bitmap pause_layer_bmp; //retained pause screen including the dimmed background. only rendered again when it changes
+    private Canvas pause_layer_canvas; //canvas to draw on pause_layer_bmp
+    private int pause_layer_muted; //mute state pause_layer_bmp was rendered with. -1 if it has not been rendered yet
+    private Paint pause_layer_paint; //paint to fade in pause_layer_bmp
+    private int pause_posted_frames; //frames posted since the pause screen is complete and unchanged
 
     /*
      * MISC
@@ -107,6 +208,8 @@ public class GameState {
     private boolean update_user; //indicates wheter the user needs to be updated
     private float screenWidth; //screen width of the smartphone in px
     private float screenHeight; //screen heigth of the smartphone in px
+    private PerformanceOverlay performance_overlay; //frame times, garbage collections and memory usage for developers
+    private boolean performance_overlay_visible; //draw the performance overlay or not
 
     /*
      * DRAW
@@ -118,9 +221,12 @@ public class GameState {
     private float trans_y_unscaled = 0; //draw-translation on y axis unscaled
     private Rect draw_src; //source rectangle for the region of the map to draw
     private RectF draw_tar; //target rectangle on the screen (full screen)
+    private Bitmap frame_bmp; //low resolution framebuffer the world is drawn into (1px = 1 tile pixel)
+    private Canvas frame_canvas; //canvas to draw on frame_bmp
+    private Rect frame_src; //region of frame_bmp that is upscaled onto the screen
+    private RectF frame_tar; //target rectangle of the upscaled framebuffer on the screen
     private float start_circle_radius; //interpolates between 0 and 1
-    private Bitmap start_circle_bmp; //bitmap for the expanding circle at the start
-    private Canvas start_circle_canvas; //canvas to draw on start_circle_bmp
+    private Path start_circle_path; //expanding circle at the start. inverse filled, so clipping to it covers everything outside the circle
     private boolean player_invisible; //draw player or not
     private Bitmap death_counter_icon; //icon for the death counter
     private Bitmap icon_mute; //icon for the mute button
@@ -133,7 +239,6 @@ public class GameState {
      * PAINT
      */
     private Paint text_paint; //paint for text
-    private Paint trans_paint; //paint for transparency
     private Paint button_paint; //paint for buttons
     private Paint button_text_paint; //paint for text on buttons
     private Paint death_counter_paint; //paint for the death counter
@@ -141,6 +246,7 @@ public class GameState {
     private Paint controls_header_paint; //paint for drawing the header of the controls
     private Paint controls_text_paint; //paint for drawing the controls explanation
     private Paint mapPaint; //used for efficient drawing map
+    private Paint frame_paint; //paint for upscaling the framebuffer without filtering (nearest-neighbour)
 
     /*
      * STRINGS
@@ -149,13 +255,21 @@ public class GameState {
     private String finished_next_level; //message to display when level is finished
 
     /*
-     * COLLISION
+     * HUD TEXT
      */
-    private RectF player_collision_px; //contains player corner coordinates in px after next step
-    private Rect player_collision_tiles; //contains player corner coordinates in tiles after next step
-    private int[] collision_corners; //0=TopLeft, 1=TopRight, 2=BottomRight, 3=BottomLeft
-    private float col_time_x; //collision time on x-axis
-    private float col_time_y; //collision time on y-axis
+    private GlyphAtlas hud_atlas; //pre-rendered labels and digits of the HUD
+    private int font_death_counter; //digits of the death counter
+    private int font_distance; //digits of the distance in the endless mode and of the timer
+    private int label_died; //you_died_retry
+    private int label_finished; //finished_next_level
+    private int label_death_overflow; //shown instead of the death counter above 999 deaths
+    private int label_pause; //title of the pause screen
+    private int label_continue; //text of the continue button
+    private int label_exit; //text of the exit button
+    private int label_controls; //header of the controls
+    private int label_control_gravity; //explanation of the gravity control
+    private int label_control_jump; //explanation of the jump control
+    private int label_control_rewind; //hint how to rewind, shown when the player died
 
     /**
      * Creates a new GameState instance
@@ -168,18 +282,25 @@ public class GameState {
      */
     public GameState(Context context, float density, float screenWidth, float screenHeight) {
         this.context = context;
-        this.stage = new Stage(context, density);
+        this.stage = new Stage(context, density, NATIVE_RESOLUTION_RENDERING); //integer scale so every tile pixel becomes an equally sized block on the screen
         this.density = density;
         this.screenWidth = screenWidth;
         this.screenHeight = screenHeight;
 
-        this.player_collision_px = new RectF();
-        this.player_collision_tiles = new Rect();
-        this.collision_corners = new int[4];
+        this.physics = new PlayerPhysics(this);
+        this.rewind_buffer = new RewindBuffer(REWIND_CAPACITY);
+        this.checkpoint = new float[PlayerPhysics.STATE_SIZE];
+        this.touch_undo = new float[PlayerPhysics.STATE_SIZE];
+        this.checkpoint_unsaved = new float[PlayerPhysics.STATE_SIZE];
+        this.save_checkpoint_task = new Concurrency.Task("GameState.saveCheckpoint", this::writeCheckpoint);
+        this.timer = new RunTimer(TIMER_MAX_SPLITS);
+        this.timer_chars = new char[16];
 
+        Trace.beginSection("GameState.decodeSprites");
         loadPlayerFrames();
         loadDeathCounter();
         loadControlIcons();
+        Trace.endSection();
 
         Typeface font_joystix = ResourcesCompat.getFont(this.context, R.font.joystix_monospace);
 
@@ -210,12 +331,16 @@ public class GameState {
         this.controls_text_paint.setTextAlign(Paint.Align.CENTER);
         this.controls_text_paint.setTextSize(14 * this.density);
 
-        this.trans_paint = new Paint();
-        this.trans_paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
-
         this.mapPaint = new Paint();
         this.mapPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
 
+        this.pause_layer_paint = new Paint();
+        this.pause_layer_muted = -1;
+
+        this.frame_paint = new Paint();
+        this.frame_paint.setFilterBitmap(false); //turned on in draw when the surface resolution has been lowered to a non-integer pixel size
+        this.frame_paint.setDither(false);
+
         this.button_paint = new Paint();
         this.button_paint.setColor(this.context.getResources().getColor(R.color.android_gray));
 
@@ -233,23 +358,41 @@ public class GameState {
 
         this.you_died_retry = context.getResources().getString(R.string.player_died);
         this.finished_next_level = context.getResources().getString(R.string.splashscreen_executedrun);
+        loadHudAtlas();
 
-        this.start_circle_bmp = Bitmap.createBitmap((int) (this.screenWidth), (int) this.screenHeight, Bitmap.Config.ARGB_8888);
-        this.start_circle_canvas = new Canvas(this.start_circle_bmp);
+        this.start_circle_path = new Path();
+        this.start_circle_path.setFillType(Path.FillType.INVERSE_EVEN_ODD);
 
         this.draw_src = new Rect();
         this.draw_tar = new RectF();
+        this.frame_src = new Rect();
+        this.frame_tar = new RectF();
 
         this.mute_pause_touch_zone = new RectF(16 * this.density, 16 * this.density, 66 * this.density, 66 * this.density);
         this.controls_zone = new RectF(this.screenWidth - 0.3f * this.screenWidth, 0, this.screenWidth, this.screenHeight);
         this.continue_touch_zone = new RectF((this.screenWidth - this.controls_zone.width()) * 0.25f, this.screenHeight / 2, (this.screenWidth - this.controls_zone.width()) * 0.75f, this.screenHeight / 2 + 40 * this.density);
         this.exit_touch_zone = new RectF((this.screenWidth - this.controls_zone.width()) * 0.25f, this.screenHeight / 2 + 80 * this.density, (this.screenWidth - this.controls_zone.width()) * 0.75f, this.screenHeight / 2 + 120 * this.density);
+        this.death_counter_touch_zone = new RectF(16 * this.density, this.screenHeight - this.death_counter_icon.getHeight() - 16 * this.density, 16 * this.density + this.death_counter_icon.getWidth() * 2, this.screenHeight - 16 * this.density);
+        Trace.beginSection("GameState.decodeIcons");
         loadMuteIcons();
         loadPauseIcon();
+        Trace.endSection();
+
+        this.performance_overlay = new PerformanceOverlay(this.density);
+        this.performance_overlay_visible = SHOW_PERFORMANCE_OVERLAY;
 
-        this.player_state = PlayerState.IDLE;
         this.player_anim_time = 0;
         this.player_draw_matrix = new Matrix();
+        this.recording = new Trajectory(TRAJECTORY_CAPACITY);
+        this.ghost_draw_matrix = new Matrix();
+        this.ghost_paint = new Paint();
+        this.ghost_paint.setAlpha(GHOST_ALPHA);
+        this.heatmap_unsaved = new int[HEATMAP_SAVE_DEATHS];
+        this.heatmap_paint = new Paint();
+        this.heatmap_paint.setColor(Color.RED);
+        this.stats_unsaved = new LevelStats();
+        this.stats_pending = new LevelStats();
+        this.save_stats_task = new Concurrency.Task("GameState.saveStats", this::writeStats);
         this.player_draw_scale = (float) PLAYER_WIDTH / this.player_frames[0].getWidth();
 
         this.running = false;
@@ -336,6 +479,44 @@ public class GameState {
         );
     }
 
+    /**
+     * Renders all texts of the HUD into the glyph atlas, so they do not have to be laid out again every frame
+     * @since 1.1
+     */
+    private void loadHudAtlas() {
+        float control_line_height = this.controls_text_paint.getTextSize() + 2 * this.density;
+        this.hud_atlas = new GlyphAtlas();
+        this.font_death_counter = this.hud_atlas.addFont(this.death_counter_paint);
+        this.font_distance = this.hud_atlas.addFont(this.text_paint);
+        this.label_death_overflow = this.hud_atlas.addLabel("oof", this.death_counter_paint, 0);
+        this.label_died = this.hud_atlas.addLabel(this.you_died_retry, this.text_paint, 0);
+        this.label_finished = this.hud_atlas.addLabel(this.finished_next_level, this.text_paint, 0);
+        this.label_pause = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.pause_game), this.pause_paint, 0);
+        this.label_continue = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.continue_game), this.button_text_paint, 0);
+        this.label_exit = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.backtomain), this.button_text_paint, 0);
+        this.label_controls = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.controls), this.controls_header_paint, 0);
+        this.label_control_gravity = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.control_gravity), this.controls_text_paint, control_line_height);
+        this.label_control_jump = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.control_jump), this.controls_text_paint, control_line_height);
+        this.label_control_rewind = this.hud_atlas.addLabel(this.context.getResources().getString(R.string.control_rewind), this.controls_text_paint, control_line_height);
+        this.hud_atlas.build();
+    }
+
+    /**
+     * Creates the low resolution framebuffer for the current stage scale. The framebuffer covers the whole screen
+     * in tile pixels, so it only has to be upscaled once by the integer stage scale. Reuses the old framebuffer if the size did not change
+     * @since 1.1
+     */
+    private void loadFramebuffer() {
+        int width = (int) Math.ceil(this.screenWidth / this.stage.stage_scale);
+        int height = (int) Math.ceil(this.screenHeight / this.stage.stage_scale);
+        if (this.frame_bmp == null || this.frame_bmp.getWidth() != width || this.frame_bmp.getHeight() != height) {
+            this.frame_bmp = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            this.frame_canvas = new Canvas(this.frame_bmp);
+        }
+        this.frame_src.set(0, 0, width, height);
+        this.frame_tar.set(0, 0, width * this.stage.stage_scale, height * this.stage.stage_scale);
+    }
+
     /**
      * Updates the state of the game depending on the deltaFrameTime. Handles collision detection, gravity, movement, ...
      *
@@ -343,8 +524,14 @@ public class GameState {
      * @since 0.1
      */
     public void update(long deltaFrameTime) {
-        if (this.player_dead || this.finished || !this.started) {
-            //Game over. Proceed to next stage or retry
+        //the timer runs in every frame the player moves, also while rewinding and while the stage fades out before the finish line
+        this.timer.update(System.nanoTime(), this.started && !this.finished && this.start_circle_radius >= 1 && !this.paused && !this.physics.dead);
+        if (this.heatmap_stored != null)
+            mergeHeatmap();
+        if (this.finished || !this.started) {
+            //Game over. Proceed to next stage
+            if (this.marathon_swap)
+                swapStage();
             return;
         } else if (this.start_circle_radius < 1) {
             //Black circle at start of level is expanding. After 1 second the screen is fully visible
@@ -352,251 +539,247 @@ public class GameState {
             return;
         } else if (this.paused) {
             return;
+        } else if (this.rewind_remaining > 0) {
+            rewindStep(deltaFrameTime);
+            return;
+        } else if (this.physics.dead) {
+            //Game over. Retry or rewind
+            return;
         }
 
-        this.player_velocity_y += ((float) deltaFrameTime / 1000) * this.player_acceleration_y * this.gravity;
-        this.player_move_y = Math.min(this.player_velocity_y * ((float) deltaFrameTime / 1000), 12);
-        this.player_move_x = Math.min( this.player_velocity_x * this.player_boost_x * ((float) deltaFrameTime / 1000), 23);
-
-        //Player position after this deltatime-step
-        this.player_collision_px.set(this.player_pos_x + this.player_move_x, this.player_pos_y + this.player_move_y, this.player_pos_x + this.player_move_x + PLAYER_WIDTH, this.player_pos_y + this.player_move_y + PLAYER_HEIGTH);
-        this.player_collision_tiles.set((int) (this.player_collision_px.left / 24), (int) (this.player_collision_px.top / 24), (int) (this.player_collision_px.right / 24), (int) (this.player_collision_px.bottom / 24));
-
-        if (this.player_collision_tiles.left >= 0 && this.player_collision_tiles.top >= 0 && this.player_collision_tiles.right < this.stage.stage_collision.length && this.player_collision_tiles.bottom < this.stage.stage_collision[0].length) {
-            //Player is inside bounds => CHECK COLLISION!
-            this.collision_corners[0] = this.stage.stage_collision[this.player_collision_tiles.left][this.player_collision_tiles.top]; //TopLeft
-            this.collision_corners[1] = this.stage.stage_collision[this.player_collision_tiles.right][this.player_collision_tiles.top]; //TopRight
-            this.collision_corners[2] = this.stage.stage_collision[this.player_collision_tiles.right][this.player_collision_tiles.bottom]; //BottomRight
-            this.collision_corners[3] = this.stage.stage_collision[this.player_collision_tiles.left][this.player_collision_tiles.bottom]; //BottomLeft
-            if (this.collision_corners[0] != 0 || this.collision_corners[1] != 0 || this.collision_corners[2] != 0 || this.collision_corners[3] != 0) {
-                //At least one of the player corners collides with a tile with behavior (solid, die, ...)
-                if ((this.collision_corners[0] == 1 && this.collision_corners[1] == 1) || (this.collision_corners[2] == 1 && this.collision_corners[3] == 1)) {
-                    //Y Solid Collision => Position adjustment
-                    adjustPositionY();
-                    //X Collision can still happen
-                    checkCollisionX();
-                    if (this.player_onBoost)
-                        this.player_onBoost = false;
-                    if (this.player_onJumper)
-                        this.player_onJumper = false;
-                } else if ((this.collision_corners[0] == 4 && this.collision_corners[1] == 4) || (this.collision_corners[2] == 4 && this.collision_corners[3] == 4)) {
-                    adjustPositionY();
-                    checkCollisionX();
-                    boostPlayerRight();
-                } else if ((this.collision_corners[0] == 5 && this.collision_corners[1] == 5) || (this.collision_corners[2] == 5 && this.collision_corners[3] == 5)) {
-                    adjustPositionY();
-                    checkCollisionX();
-                    boostPlayerLeft();
-                } else if ((this.collision_corners[0] == 8 && this.collision_corners[1] == 8) || (this.collision_corners[2] == 8 && this.collision_corners[3] == 8)) {
-                    adjustPositionY();
-                    if (!this.player_onJumper)
-                        this.player_onJumper = true;
-                } else if ((collision_corners[0] != 0 && collision_corners[3] != 0) || (collision_corners[1] != 0 && collision_corners[2] != 0)) {
-                    //X Collision
-                    checkCollisionX();
-                } else {
-                    //Only one corner collided, can be either X or Y first
-                    calcCollisionTimeX();
-                    calcCollisionTimeY();
-                    if (this.col_time_y < 0 && this.col_time_x > 0) {
-                        //no valid collision on Y, collision on X
-                        killPlayer();
-                        this.player_pos_y = this.player_collision_px.top;
-                    } else {
-                        //Y before X => Y Solid Collosion => Position adjustment
-                        adjustPositionY();
-                        if (collision_corners[0] == 4 || collision_corners[3] == 4 || collision_corners[1] == 4 || collision_corners[2] == 4) {
-                            boostPlayerRight();
-                        } else if (collision_corners[0] == 5 || collision_corners[3] == 5 || collision_corners[1] == 5 || collision_corners[2] == 5) {
-                            boostPlayerLeft();
-                        } else if (collision_corners[0] == 8 || collision_corners[3] == 8 || collision_corners[1] == 8 || collision_corners[2] == 8) {
-                            if (!this.player_onJumper)
-                                this.player_onJumper = true;
-                        } else {
-                            if (this.player_onBoost)
-                                this.player_onBoost = false;
-                            if (this.player_onJumper)
-                                this.player_onJumper = false;
-                        }
-                    }
-                }
-
-                if (collision_corners[0] == 3 || collision_corners[1] == 3 || collision_corners[2] == 3 || collision_corners[3] == 3) {
-                    //X Inverter Collision
-                    if (!this.player_inInverter) {
-                        this.player_velocity_x *= -1;
-                        this.player_inInverter = true;
-                    }
-                    this.player_pos_y = this.player_collision_px.top;
-                } else if (collision_corners[0] == 6 || collision_corners[1] == 6 || collision_corners[2] == 6 || collision_corners[3] == 6) {
-                    //X Finish Collision
-                    finishStage();
-                    this.player_pos_y = this.player_collision_px.top;
-                } else if (collision_corners[0] == 7 || collision_corners[1] == 7 || collision_corners[2] == 7 || collision_corners[3] == 7) {
-                    //X Collision with no-input tile
-                    //happens before finish line for running out of screen effect
-                    setNoPlayerInput();
-                    this.player_pos_y = this.player_collision_px.top;
-                } else if (collision_corners[0] == 2 || collision_corners[1] == 2 || collision_corners[2] == 2 || collision_corners[3] == 2) {
-                    //X Death Collision (spikes)
-                    killPlayer();
-                    this.player_pos_y = this.player_collision_px.top;
-                } else {
-                    if (this.player_inInverter)
-                        this.player_inInverter = false;
-                }
-
-                if (this.player_inAir)
-                    this.player_inAir = false;
-                if (this.player_first_gravity_inAir)
-                    this.player_first_gravity_inAir = false;
-            } else {
-                //None of the player corners collides with anything
-                this.player_pos_y = this.player_collision_px.top;
-                if (!this.player_inAir)
-                    this.player_inAir = true;
-                if (this.player_onBoost)
-                    this.player_onBoost = false;
-                if (this.player_onJumper)
-                    this.player_onJumper = false;
-
-                EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+        this.physics.step(deltaFrameTime);
+        this.run_time += deltaFrameTime;
+        this.attempt_time += deltaFrameTime;
+        this.marathon_time += deltaFrameTime;
+        if (this.endless) {
+            float distance = this.stage.scroll(this.physics.pos_x);
+            if (distance > 0) {
+                //stage has moved under the player, everything that is stored in stage coordinates moves with it
+                this.physics.pos_x -= distance;
+                this.rewind_buffer.shift(distance);
+                this.touch_undo[0] -= distance;
             }
-            this.player_pos_x = this.player_collision_px.left;
-        } else {
-            //Player is out of bounds => DIE!
-            killPlayer();
-            this.player_pos_x = this.player_collision_px.left;
-            this.player_pos_y = this.player_collision_px.top;
         }
+        recordTrajectory();
+        if (this.rivals != null) {
+            //rivals move in fixed ticks, so they behave the same at every frame rate
+            this.rivals_time += deltaFrameTime;
+            while (this.rivals.getTime() + PlayerPhysics.TICK <= this.rivals_time)
+                this.rivals.step();
+        }
+        if (this.checkpoint_reached) {
+            this.checkpoint_reached = false;
+            if (!this.physics.dead)
+                saveCheckpoint();
+        }
+        this.rewind_buffer.record(this.physics, deltaFrameTime);
     }
 
     /**
-     * Boosts the player speed by a factor of 1.5 if going right, otherwise slows down by factor of 0.66
-     * Only works once per boost platform
-     *
-     * @since 0.1
+     * Adds a sample of the player to the recording of the run for every tick that has passed since the last sample
+     * @since 1.1
      */
-    private void boostPlayerRight() {
-        if (this.player_velocity_x > 0 && !this.player_onBoost) {
-            this.player_boost_x *= 1.5;
-            this.player_onBoost = true;
-        } else if (this.player_velocity_x < 0 && !this.player_onBoost) {
-            this.player_boost_x *= (2f / 3);
-            this.player_onBoost = true;
+    private void recordTrajectory() {
+        if (!this.recording_valid)
+            return;
+        long ticks = this.run_time / PlayerPhysics.TICK;
+        while (this.recording.size() < ticks) {
+            if (!this.recording.add(this.physics.pos_x, this.physics.pos_y, this.player_current_frame | this.player_current_flags)) {
+                //run is too long to be kept as ghost
+                this.recording_valid = false;
+                return;
+            }
         }
     }
 
     /**
-     * Boosts the player speed by a factor of 1.5 if going left, otherwise slows down by factor of 0.66
-     * Only works once per boost platform
-     *
-     * @since 0.1
+     * Keeps the current state of the player as checkpoint for retrying and writes it to the save file, so the stage continues there next time
+     * @since 1.1
      */
-    private void boostPlayerLeft() {
-        if (this.player_velocity_x < 0 && !this.player_onBoost) {
-            this.player_boost_x *= 1.5;
-            this.player_onBoost = true;
-        } else if (this.player_velocity_x > 0 && !this.player_onBoost) {
-            this.player_boost_x *= (2f / 3);
-            this.player_onBoost = true;
+    private void saveCheckpoint() {
+        this.physics.save(this.checkpoint, 0);
+        this.has_checkpoint = true;
+        this.checkpoint_run_time = this.timer_valid ? this.run_time : -1;
+        saveStats();
+        int column = (int) (this.physics.pos_x / 24);
+        if (column != this.timer_split_column) {
+            this.timer_split_column = column;
+            this.timer.split();
+        }
+        //the same checkpoint can be reached again after a rewind and splits are capped, so the last split is not necessarily the checkpoint
+        this.checkpoint_splits = this.timer.getSplitCount();
+        this.checkpoint_ticks = this.timer.getTicks();
+        this.checkpoint_rivals_time = this.rivals_time;
+
+        if (this.update_user && !this.marathon && this.user.currentLevel == this.level) { //marathons do not count for the save file
+            //only the copy is made here, encoding and writing happen on the database thread
+            synchronized (this.checkpoint_unsaved) {
+                System.arraycopy(this.checkpoint, 0, this.checkpoint_unsaved, 0, this.checkpoint.length);
+                this.checkpoint_unsaved_user = this.user;
+                if (this.checkpoint_queued)
+                    return; //the queued task takes the newer copy
+                this.checkpoint_queued = true;
+            }
+            Concurrency.execute(this.save_checkpoint_task);
         }
     }
 
     /**
-     * When player object collides with tiles on Y axis (basically when it is walking on the ground), adjust Y position to be exactly
-     *
-     * @since 0.1
+     * Writes the last checkpoint that has been copied by saveCheckpoint to the save file. Runs on the database thread and only uses
+     * the values saveCheckpoint has copied. Tasks run one after another, so a checkpoint that is cleared by finishing the stage later
+     * is not written back afterwards
+     * @since 1.1
      */
-    private void adjustPositionY() {
-        if (this.player_velocity_y > 0)
-            this.player_pos_y = this.player_collision_px.bottom - this.player_collision_px.bottom % 24 - PLAYER_HEIGTH;
-        else
-            this.player_pos_y = this.player_collision_px.top + (24 - this.player_collision_px.top % 24);
-
-        this.player_velocity_y = 0;
-
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.RUNNING;
-
-        EscapeSoundManager.getInstance(this.context).playSoundLoop(EscapeSoundManager.getInstance(this.context).snd_steps);
+    private void writeCheckpoint() {
+        ByteBuffer bytes = ByteBuffer.allocate(PlayerPhysics.STATE_SIZE * 4);
+        User user;
+        synchronized (this.checkpoint_unsaved) {
+            bytes.asFloatBuffer().put(this.checkpoint_unsaved);
+            user = this.checkpoint_unsaved_user;
+            this.checkpoint_queued = false;
+        }
+        user.checkpoint = bytes.array(); //later updates of the whole user keep the checkpoint
+        EscapeDatabase.getInstance(context).userDao().updateCheckpoint(user.id, user.checkpoint);
     }
 
     /**
-     * When player object collides with a wall horizontally, player dies
-     *
-     * @since 0.1
+     * Reads the checkpoint of the save file into the checkpoint snapshot
+     * @param bytes Checkpoint as stored in the user. May be null
+     * @return true if the save file has a valid checkpoint
+     * @since 1.1
      */
-    private void checkCollisionX() {
-        if ((this.collision_corners[0] == 1 && this.collision_corners[3] == 1) || (this.collision_corners[1] == 1 && this.collision_corners[2] == 1)) {
-            killPlayer();
-            this.player_pos_x = this.player_collision_px.left;
-            this.player_pos_y = this.player_collision_px.top;
-        }
+    private boolean loadCheckpoint(byte[] bytes) {
+        if (bytes == null || bytes.length != PlayerPhysics.STATE_SIZE * 4)
+            return false;
+        FloatBuffer floats = ByteBuffer.wrap(bytes).asFloatBuffer();
+        floats.get(this.checkpoint);
+        return true;
     }
 
     /**
-     * Calculates the exact time it took the player object to collide with the tile object on x axis
-     * Player object might overlap the collided object, this calculates exact time it takes to collide without overlap
+     * Starts rewinding the last REWIND_TIME ms. Also works after the player died, which brings the player back to life
+     * Does nothing if there is nothing to rewind or the stage is already being finished
      *
-     * @since 0.1
+     * @since 1.1
      */
-    private void calcCollisionTimeX() {
-        if (this.player_velocity_x < 0)
-            this.col_time_x = (this.player_collision_tiles.right * 24 - this.player_pos_x) / (this.player_velocity_x * this.player_boost_x);
-        else
-            this.col_time_x = (this.player_collision_tiles.left * 24 + (24 - PLAYER_WIDTH) - this.player_pos_x) / (this.player_velocity_x * this.player_boost_x); //TODO: (24 - PLAYER_WIDTH) only works with PLAYER_WIDTH < 24
+    private void rewind() {
+        if (!this.started || this.finished || this.paused || this.physics.no_input || this.start_circle_radius < 1 || this.rewind_buffer.size() < 2)
+            return;
+
+        if (this.physics.dead) {
+            this.player_invisible = false;
+            this.current_fade_out_time = 0;
+            this.fade_alpha = 0;
+            this.update_user = true;
+            EscapeSoundManager.getInstance(this.context).resumeMediaPlayer();
+        }
+        EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+        this.retry_pending = false;
+        this.rewind_remaining = REWIND_TIME;
     }
 
     /**
-     * Calculates the exact time it took the player object to collide with the tile object on y axis
-     * Player object might overlap the collided object, this calculates exact time it takes to collide without overlap
+     * Plays the recorded snapshots backwards. Stops when REWIND_TIME has been rewound or the buffer has no older snapshots
      *
-     * @since 0.1
+     * @param deltaFrameTime The passed time since the last updated frame
+     * @since 1.1
      */
-    private void calcCollisionTimeY() {
-        if (this.player_velocity_y < 0)
-            this.col_time_y = (this.player_collision_tiles.bottom * 24 - this.player_pos_y) / this.player_velocity_y;
-        else
-            this.col_time_y = (this.player_collision_tiles.top * 24 - this.player_pos_y) / this.player_velocity_y;
+    private void rewindStep(long deltaFrameTime) {
+        long time = Math.min(deltaFrameTime * REWIND_SPEED, this.rewind_remaining);
+        long rewound = this.rewind_buffer.rewind(this.physics, time);
+        this.run_time = Math.max(this.run_time - rewound, 0);
+        this.recording.truncate((int) (this.run_time / PlayerPhysics.TICK));
+        this.rewind_remaining -= time;
+        if (rewound < time)
+            this.rewind_remaining = 0;
+        if (this.rewind_remaining == 0)
+            this.player_anim_time = 0;
     }
 
     /**
      * Draws the current state of the game onto c
+     * The surface might be smaller than the view if the resolution has been lowered. Everything is still drawn in view coordinates
+     * and scaled down to the canvas by one uniform factor, so the touch zones stay valid
      *
      * @param c              The Canvas that is drawn onto
      * @param deltaFrameTime The passed time since the last frame
      * @since 0.1
      */
     public void draw(Canvas c, float deltaFrameTime) {
-        if (!this.player_no_input) {
-            translateX(c);
-            translateY(c);
+        float canvas_scale = c.getWidth() / this.screenWidth;
+        boolean scaled = c.getWidth() != (int) this.screenWidth;
+        if (scaled) {
+            c.save();
+            c.scale(canvas_scale, canvas_scale);
+        }
+        if (NATIVE_RESOLUTION_RENDERING) {
+            //nearest-neighbour only keeps tile pixels equally sized if one tile pixel covers a whole number of surface pixels
+            float pixel_size = this.stage.stage_scale * canvas_scale;
+            this.frame_paint.setFilterBitmap(Math.abs(pixel_size - Math.round(pixel_size)) > 0.01f);
         }
 
-        drawMap(c);
+        if (!this.physics.no_input) {
+            translateX();
+            translateY();
+        }
 
-        if (!this.player_invisible)
-            drawPlayer(c, deltaFrameTime);
+        if (this.fade_alpha == 255) {
+            //fadeout covers the whole screen, the world would not be visible
+            c.drawColor(Color.BLACK);
+        } else if (NATIVE_RESOLUTION_RENDERING) {
+            drawWorldNative(c, deltaFrameTime);
+        } else {
+            drawMap(c);
+            drawHeatmap(c, this.stage.stage_scale, this.trans_x_unscaled, this.trans_y_unscaled);
+            drawRivals(c, this.stage.stage_scale, this.trans_x_unscaled, this.trans_y_unscaled);
+            drawGhost(c, this.stage.stage_scale, this.trans_x_unscaled, this.trans_y_unscaled);
+
+            if (!this.player_invisible)
+                drawPlayer(c, deltaFrameTime, this.stage.stage_scale, this.trans_x_unscaled, this.trans_y_unscaled);
+        }
 
         drawHUD(c, deltaFrameTime);
+
+        if (scaled)
+            c.restore();
+    }
+
+    /**
+     * Draws the level and the player at native tile resolution into the framebuffer and upscales it onto c in a single draw call.
+     * The camera is snapped to whole tile pixels so the upscaled pixels stay sharp
+     *
+     * @param c              Canvas to draw the upscaled framebuffer onto
+     * @param deltaFrameTime The passed time since the last frame
+     * @since 1.1
+     */
+    private void drawWorldNative(Canvas c, float deltaFrameTime) {
+        float origin_x = (int) this.trans_x_unscaled;
+        float origin_y = (int) this.trans_y_unscaled;
+
+        this.stage.drawForeground(this.frame_canvas, -origin_x, -origin_y);
+        drawHeatmap(this.frame_canvas, 1, origin_x, origin_y);
+        drawRivals(this.frame_canvas, 1, origin_x, origin_y);
+        drawGhost(this.frame_canvas, 1, origin_x, origin_y);
+        if (!this.player_invisible)
+            drawPlayer(this.frame_canvas, deltaFrameTime, 1, origin_x, origin_y);
+
+        c.drawBitmap(this.frame_bmp, this.frame_src, this.frame_tar, this.frame_paint);
     }
 
     /**
      * Translates the X drawing area to fit the current player position
      *
-     * @param c Canvas that needs to be translated (needed for width and height)
      * @since 1.0
      */
-    private void translateX(Canvas c) {
-        if (this.player_velocity_x > 0) {
-            this.trans_x = this.player_pos_x * this.stage.stage_scale - 96 * this.stage.stage_scale;
+    private void translateX() {
+        if (this.physics.velocity_x > 0) {
+            this.trans_x = this.physics.pos_x * this.stage.stage_scale - 96 * this.stage.stage_scale;
         } else {
-            this.trans_x = this.player_pos_x * this.stage.stage_scale - (c.getWidth() - 120 * this.stage.stage_scale);
+            this.trans_x = this.physics.pos_x * this.stage.stage_scale - (this.screenWidth - 120 * this.stage.stage_scale);
         }
         if (this.trans_x < 0) this.trans_x = 0;
-        else if (this.trans_x > this.stage.stage_foreground.getWidth() * this.stage.stage_scale - c.getWidth())
-            this.trans_x = this.stage.stage_foreground.getWidth() * this.stage.stage_scale - c.getWidth();
+        else if (this.trans_x > this.stage.getWidth() * this.stage.stage_scale - this.screenWidth)
+            this.trans_x = this.stage.getWidth() * this.stage.stage_scale - this.screenWidth;
 
         this.trans_x_unscaled = this.trans_x / this.stage.stage_scale;
     }
@@ -604,17 +787,16 @@ public class GameState {
     /**
      * Translates the Y drawing area to fit the current player position
      *
-     * @param c Canvas that needs to be translated (needed for width and height)
      * @since 1.0
      */
-    private void translateY(Canvas c) {
-        if (this.player_pos_y * this.stage.stage_scale + PLAYER_HEIGTH * this.stage.stage_scale > this.trans_y + c.getHeight() - (48 + PLAYER_HEIGTH) * this.stage.stage_scale)
-            this.trans_y = this.player_pos_y * this.stage.stage_scale + PLAYER_HEIGTH * this.stage.stage_scale - c.getHeight() + (48 + PLAYER_HEIGTH) * this.stage.stage_scale;
-        else if (this.player_pos_y * this.stage.stage_scale < this.trans_y + 48 * this.stage.stage_scale)
-            this.trans_y = this.player_pos_y * this.stage.stage_scale - 48 * this.stage.stage_scale;
+    private void translateY() {
+        if (this.physics.pos_y * this.stage.stage_scale + PLAYER_HEIGTH * this.stage.stage_scale > this.trans_y + this.screenHeight - (48 + PLAYER_HEIGTH) * this.stage.stage_scale)
+            this.trans_y = this.physics.pos_y * this.stage.stage_scale + PLAYER_HEIGTH * this.stage.stage_scale - this.screenHeight + (48 + PLAYER_HEIGTH) * this.stage.stage_scale;
+        else if (this.physics.pos_y * this.stage.stage_scale < this.trans_y + 48 * this.stage.stage_scale)
+            this.trans_y = this.physics.pos_y * this.stage.stage_scale - 48 * this.stage.stage_scale;
         if (this.trans_y < 0) this.trans_y = 0;
-        else if (this.trans_y > this.stage.stage_foreground.getHeight() * this.stage.stage_scale - c.getHeight())
-            this.trans_y = this.stage.stage_foreground.getHeight() * this.stage.stage_scale - c.getHeight();
+        else if (this.trans_y > this.stage.getHeight() * this.stage.stage_scale - this.screenHeight)
+            this.trans_y = this.stage.getHeight() * this.stage.stage_scale - this.screenHeight;
 
         this.trans_y_unscaled = this.trans_y / this.stage.stage_scale;
     }
@@ -672,7 +854,7 @@ public class GameState {
         );*/
 
         c.scale(this.stage.stage_scale, this.stage.stage_scale);
-        c.drawBitmap(this.stage.stage_foreground, -this.trans_x_unscaled, -this.trans_y_unscaled, null);
+        this.stage.drawForeground(c, -this.trans_x_unscaled, -this.trans_y_unscaled);
         //c.drawBitmap(this.stage.stage_foreground, this.draw_src, this.draw_tar, null);
         c.scale(1 / this.stage.stage_scale, 1 / this.stage.stage_scale);
     }
@@ -717,26 +899,31 @@ public class GameState {
      *
      * @param c              Canvas to draw the player frame onto
      * @param deltaFrameTime The passed time since the last frame
+     * @param scale          Factor to scale the stage coordinates with (1 when drawing into the framebuffer)
+     * @param origin_x       Left edge of the visible stage region in unscaled px
+     * @param origin_y       Top edge of the visible stage region in unscaled px
      * @since 1.0
      */
-    private void drawPlayer(Canvas c, float deltaFrameTime) {
+    private void drawPlayer(Canvas c, float deltaFrameTime, float scale, float origin_x, float origin_y) {
         this.player_draw_matrix.reset();
-        if (this.player_velocity_x > 0) {
-            this.player_draw_matrix.setTranslate(this.player_pos_x * this.stage.stage_scale - this.trans_x, this.player_pos_y * this.stage.stage_scale - this.trans_y);
-            this.player_draw_matrix.preScale(this.player_draw_scale * this.stage.stage_scale, this.player_draw_scale * this.stage.stage_scale);
+        if (this.physics.velocity_x > 0) {
+            this.player_draw_matrix.setTranslate((this.physics.pos_x - origin_x) * scale, (this.physics.pos_y - origin_y) * scale);
+            this.player_draw_matrix.preScale(this.player_draw_scale * scale, this.player_draw_scale * scale);
+            this.player_current_flags = 0;
         } else {
-            this.player_draw_matrix.setTranslate((this.player_pos_x + PLAYER_WIDTH) * this.stage.stage_scale - this.trans_x, this.player_pos_y * this.stage.stage_scale - this.trans_y);
-            this.player_draw_matrix.preScale(-this.player_draw_scale * this.stage.stage_scale, this.player_draw_scale * this.stage.stage_scale);
+            this.player_draw_matrix.setTranslate((this.physics.pos_x + PLAYER_WIDTH - origin_x) * scale, (this.physics.pos_y - origin_y) * scale);
+            this.player_draw_matrix.preScale(-this.player_draw_scale * scale, this.player_draw_scale * scale);
+            this.player_current_flags = FRAME_MIRRORED;
         }
 
-        if (this.player_last_state == PlayerState.JUMPING && this.player_state == PlayerState.RUNNING) {
+        if (this.physics.last_state == PlayerState.JUMPING && this.physics.state == PlayerState.RUNNING) {
             //LANDING
-            this.player_state = PlayerState.START_END_JUMP;
+            this.physics.state = PlayerState.START_END_JUMP;
             this.player_anim_time = 0;
         }
 
         this.player_anim_time = (this.player_anim_time + deltaFrameTime) % 1000;
-        switch (this.player_state) {
+        switch (this.physics.state) {
             case IDLE:
                 this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 11) + 8;
                 break;
@@ -745,43 +932,44 @@ public class GameState {
                 break;
             case RUNNING:
                 this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 6) + 42;
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * this.stage.stage_scale);
+                if (this.physics.gravity < 0) {
+                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * scale);
                     this.player_draw_matrix.preScale(1, -1);
+                    this.player_current_flags |= FRAME_FLIPPED;
                 }
                 break;
             case JUMPING:
-                if (this.player_velocity_y < 0 && this.gravity > 0 || this.player_velocity_y > 0 && this.gravity < 0) {
+                if (this.physics.velocity_y < 0 && this.physics.gravity > 0 || this.physics.velocity_y > 0 && this.physics.gravity < 0) {
                     //JUMP UP
                     this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 3 + 39;
-                } else if (this.player_velocity_y < 0 && this.gravity < 0 || this.player_velocity_y > 0 && this.gravity > 0) {
+                } else if (this.physics.velocity_y < 0 && this.physics.gravity < 0 || this.physics.velocity_y > 0 && this.physics.gravity > 0) {
                     //JUMP DOWN
                     this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 2 + 34;
                 }
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, 24 * this.stage.stage_scale);
+                if (this.physics.gravity < 0) {
+                    this.player_draw_matrix.postTranslate(0, 24 * scale);
                     this.player_draw_matrix.preScale(1, -1);
+                    this.player_current_flags |= FRAME_FLIPPED;
                 }
                 break;
             case START_END_JUMP:
                 if (this.player_anim_time > FRAME_TIME * 2) {
-                    if (this.player_last_state == PlayerState.JUMPING) {
-                        this.player_last_state = this.player_state;
-                        this.player_state = PlayerState.RUNNING;
-                    } else if (this.player_last_state == PlayerState.RUNNING) {
-                        this.player_last_state = this.player_state;
-                        this.player_state = PlayerState.JUMPING;
+                    if (this.physics.last_state == PlayerState.JUMPING) {
+                        this.physics.setState(PlayerState.RUNNING);
+                    } else if (this.physics.last_state == PlayerState.RUNNING) {
+                        this.physics.setState(PlayerState.JUMPING);
                     }
                     this.player_anim_time = 0;
                 }
                 this.player_current_frame = (int) ((this.player_anim_time) / FRAME_TIME) % 3 + 36;
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * this.stage.stage_scale);
+                if (this.physics.gravity < 0) {
+                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * scale);
                     this.player_draw_matrix.preScale(1, -1);
+                    this.player_current_flags |= FRAME_FLIPPED;
                 }
                 break;
             case GRAVITY:
-                if (this.gravity < 0) {
+                if (this.physics.gravity < 0) {
                     this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 3 + 31;
                 } else {
                     this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 3 + 28;
@@ -793,9 +981,10 @@ public class GameState {
                 } else {
                     this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 8);
                 }
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * this.stage.stage_scale);
+                if (this.physics.gravity < 0) {
+                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * scale);
                     this.player_draw_matrix.preScale(1, -1);
+                    this.player_current_flags |= FRAME_FLIPPED;
                 }
                 break;
         }
@@ -803,6 +992,131 @@ public class GameState {
         c.drawBitmap(this.player_frames[this.player_current_frame], player_draw_matrix, null);
     }
 
+    /**
+     * Draws the rivals of the race mode that are still racing and visible. Uses the running and jumping frames of the player
+     *
+     * @param c        Canvas to draw the rivals onto
+     * @param scale    Factor to scale the stage coordinates with (1 when drawing into the framebuffer)
+     * @param origin_x Left edge of the visible stage region in unscaled px
+     * @param origin_y Top edge of the visible stage region in unscaled px
+     * @since 1.1
+     */
+    private void drawRivals(Canvas c, float scale, float origin_x, float origin_y) {
+        if (this.rivals == null || !this.started)
+            return;
+        float visible_width = this.screenWidth / this.stage.stage_scale;
+        float visible_height = this.screenHeight / this.stage.stage_scale;
+        int run_frame = (int) (this.rivals.getTime() / FRAME_TIME) % 6;
+        for (int i = 0; i < this.rivals.size(); i++) {
+            float x = this.rivals.pos_x[i];
+            float y = this.rivals.pos_y[i];
+            if (!this.rivals.isActive(i) || x + PLAYER_WIDTH < origin_x || x > origin_x + visible_width || y + PLAYER_HEIGTH < origin_y || y > origin_y + visible_height)
+                continue;
+
+            int frame;
+            boolean flipped = this.rivals.gravity[i] < 0; //gravity frames are already drawn for both directions
+            switch (this.rivals.getState(i)) {
+                case JUMPING:
+                case START_END_JUMP:
+                    frame = 39;
+                    break;
+                case GRAVITY:
+                    frame = this.rivals.gravity[i] < 0 ? 31 : 28;
+                    flipped = false;
+                    break;
+                default:
+                    frame = 42 + run_frame;
+                    break;
+            }
+
+            drawTranslucentPlayer(c, frame, this.rivals.velocity_x[i] <= 0, flipped, x, y, scale, origin_x, origin_y);
+        }
+    }
+
+    /**
+     * Tints the visible tiles with deaths. The more deaths a tile has compared to the deadliest tile of the stage, the stronger the tint
+     *
+     * @param c        Canvas to draw the tint onto
+     * @param scale    Factor to scale the stage coordinates with (1 when drawing into the framebuffer)
+     * @param origin_x Left edge of the visible stage region in unscaled px
+     * @param origin_y Top edge of the visible stage region in unscaled px
+     * @since 1.1
+     */
+    private void drawHeatmap(Canvas c, float scale, float origin_x, float origin_y) {
+        if (!SHOW_DEATH_HEATMAP || this.heatmap == null || this.heatmap.getMax() == 0)
+            return;
+        int max = this.heatmap.getMax();
+        int start_x = Math.max(0, (int) (origin_x / 24));
+        int start_y = Math.max(0, (int) (origin_y / 24));
+        int end_x = Math.min(this.heatmap.getWidth() - 1, (int) ((origin_x + c.getWidth() / scale) / 24));
+        int end_y = Math.min(this.heatmap.getHeight() - 1, (int) ((origin_y + c.getHeight() / scale) / 24));
+        for (int y = start_y; y <= end_y; y++) {
+            for (int x = start_x; x <= end_x; x++) {
+                int count = this.heatmap.get(x, y);
+                if (count == 0)
+                    continue;
+                this.heatmap_paint.setAlpha(HEATMAP_MAX_ALPHA * count / max);
+                c.drawRect((x * 24 - origin_x) * scale, (y * 24 - origin_y) * scale, ((x + 1) * 24 - origin_x) * scale, ((y + 1) * 24 - origin_y) * scale, this.heatmap_paint);
+            }
+        }
+    }
+
+    /**
+     * Draws the fastest run of the stage as translucent player at the same play time as the current run
+     *
+     * @param c        Canvas to draw the ghost onto
+     * @param scale    Factor to scale the stage coordinates with (1 when drawing into the framebuffer)
+     * @param origin_x Left edge of the visible stage region in unscaled px
+     * @param origin_y Top edge of the visible stage region in unscaled px
+     * @since 1.1
+     */
+    private void drawGhost(Canvas c, float scale, float origin_x, float origin_y) {
+        Trajectory ghost = this.ghost;
+        if (ghost == null || !this.recording_valid || !this.started || this.finished)
+            return;
+        int index = (int) (this.run_time / PlayerPhysics.TICK);
+        if (index >= ghost.size())
+            return; //ghost has already finished
+
+        //sample index is taken at the end of its tick, so the position is interpolated from the previous sample
+        int previous = Math.max(index - 1, 0);
+        float fraction = (float) (this.run_time % PlayerPhysics.TICK) / PlayerPhysics.TICK;
+        float x = ghost.getX(previous) + (ghost.getX(index) - ghost.getX(previous)) * fraction;
+        float y = ghost.getY(previous) + (ghost.getY(index) - ghost.getY(previous)) * fraction;
+        int frame = ghost.getFrame(index);
+        drawTranslucentPlayer(c, frame & ~(FRAME_MIRRORED | FRAME_FLIPPED), (frame & FRAME_MIRRORED) != 0, (frame & FRAME_FLIPPED) != 0, x, y, scale, origin_x, origin_y);
+    }
+
+    /**
+     * Draws a frame of the player with the opacity of the ghost. Used for the ghost and the rivals
+     *
+     * @param c        Canvas to draw onto
+     * @param frame    Index in player_frames
+     * @param mirrored Player runs to the left
+     * @param flipped  Player is upside down
+     * @param x        Position X in unscaled px
+     * @param y        Position Y in unscaled px
+     * @param scale    Factor to scale the stage coordinates with (1 when drawing into the framebuffer)
+     * @param origin_x Left edge of the visible stage region in unscaled px
+     * @param origin_y Top edge of the visible stage region in unscaled px
+     * @since 1.1
+     */
+    private void drawTranslucentPlayer(Canvas c, int frame, boolean mirrored, boolean flipped, float x, float y, float scale, float origin_x, float origin_y) {
+        this.ghost_draw_matrix.reset();
+        if (!mirrored) {
+            this.ghost_draw_matrix.setTranslate((x - origin_x) * scale, (y - origin_y) * scale);
+            this.ghost_draw_matrix.preScale(this.player_draw_scale * scale, this.player_draw_scale * scale);
+        } else {
+            this.ghost_draw_matrix.setTranslate((x + PLAYER_WIDTH - origin_x) * scale, (y - origin_y) * scale);
+            this.ghost_draw_matrix.preScale(-this.player_draw_scale * scale, this.player_draw_scale * scale);
+        }
+        if (flipped) {
+            this.ghost_draw_matrix.postTranslate(0, PLAYER_HEIGTH * scale);
+            this.ghost_draw_matrix.preScale(1, -1);
+        }
+        c.drawBitmap(this.player_frames[frame], this.ghost_draw_matrix, this.ghost_paint);
+    }
+
     /**
      * Draws the HUD on the canvas
      * HUD includes pausescreen, deathscreen, finishedscreen, fadeins, fadeouts, deathcounter, ...
@@ -812,30 +1126,77 @@ public class GameState {
      * @since 1.0
      */
     private void drawHUD(Canvas c, float deltaFrameTime) {
-        drawDeathCounter(c);
+        if (this.endless)
+            drawDistance(c);
+        else if (this.marathon)
+            drawMarathon(c);
+        else
+            drawDeathCounter(c);
+        drawTimer(c);
 
         if (this.paused) {
-            drawFadeout(c, deltaFrameTime, 200, 128);
-            drawPauseScreen(c);
+            drawPauseLayer(c, deltaFrameTime);
         } else {
             c.drawBitmap(this.icon_pause, this.mute_pause_touch_zone.left, this.mute_pause_touch_zone.top, null);
         }
 
-        if (this.player_dead) {
+        if (this.physics.dead) {
             //Player is dead. Draw retry message
             drawFadeout(c, deltaFrameTime, 1000, 255, 300);
-            c.drawText(this.you_died_retry, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
-        } else if (this.finished) {
+            this.hud_atlas.drawLabel(c, this.label_died, this.screenWidth / 2, this.screenHeight / 2);
+            if (this.rewind_buffer.size() > 1)
+                this.hud_atlas.drawLabel(c, this.label_control_rewind, this.screenWidth / 2, this.screenHeight / 2 + 32 * this.density);
+        } else if (this.finished && !this.marathon_swap) {
             drawFadeout(c, deltaFrameTime, 2500, 255);
-            c.drawText(finished_next_level, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
+            this.hud_atlas.drawLabel(c, this.label_finished, this.screenWidth / 2, this.screenHeight / 2);
         } else if (this.start_circle_radius < 1) {
             //Stage has started. Draw expanding circle first second
-            this.start_circle_canvas.drawCircle((this.player_pos_x + PLAYER_WIDTH / 2f - this.trans_x_unscaled) * this.stage.stage_scale, (this.player_pos_y + PLAYER_HEIGTH / 2f - this.trans_y_unscaled) * this.stage.stage_scale, this.start_circle_radius * this.screenWidth, trans_paint);
-            c.drawBitmap(start_circle_bmp, 0, 0, null);
-        } else if (this.player_no_input) {
+            drawStartCircle(c);
+        } else if (this.physics.no_input) {
             drawFadeout(c, deltaFrameTime, 2500, 255);
             EscapeSoundManager.getInstance(this.context).fadeSoundLoop(this.current_fade_out_time, 3500, 0f);
         }
+
+        if (this.performance_overlay_visible) {
+            int tile_size = 24;
+            this.performance_overlay.setCamera(
+                    (int) (this.trans_x_unscaled / tile_size),
+                    (int) (this.trans_y_unscaled / tile_size),
+                    (int) ((this.trans_x_unscaled + this.screenWidth / this.stage.stage_scale) / tile_size),
+                    (int) ((this.trans_y_unscaled + this.screenHeight / this.stage.stage_scale) / tile_size)
+            );
+            this.performance_overlay.draw(c, this.screenWidth - 16 * this.density, 16 * this.density);
+        }
+    }
+
+    /**
+     * Passes the times of the last drawn frame to the performance overlay
+     *
+     * @param frame_ns  Time in ns since the frame before
+     * @param update_ns Time in ns update took
+     * @param draw_ns   Time in ns draw took
+     * @since 1.1
+     */
+    public void recordFrame(long frame_ns, long update_ns, long draw_ns) {
+        if (this.performance_overlay_visible)
+            this.performance_overlay.onFrame(frame_ns, update_ns, draw_ns);
+    }
+
+    /**
+     * Draws the expanding circle at the start of a stage. Everything outside of the circle is black and shows the name of the stage.
+     * The circle is cut out by clipping to an inverse filled path, so no offscreen bitmap is needed
+     *
+     * @param c Canvas to draw the circle onto
+     * @since 1.1
+     */
+    private void drawStartCircle(Canvas c) {
+        this.start_circle_path.rewind();
+        this.start_circle_path.addCircle((this.physics.pos_x + PLAYER_WIDTH / 2f - this.trans_x_unscaled) * this.stage.stage_scale, (this.physics.pos_y + PLAYER_HEIGTH / 2f - this.trans_y_unscaled) * this.stage.stage_scale, this.start_circle_radius * this.screenWidth, Path.Direction.CW);
+        c.save();
+        c.clipPath(this.start_circle_path);
+        c.drawColor(Color.BLACK);
+        c.drawText(this.stage.stage_name, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
+        c.restore();
     }
 
     /**
@@ -845,11 +1206,110 @@ public class GameState {
      * @since 1.0
      */
     private void drawDeathCounter(Canvas c) {
-        c.drawBitmap(this.death_counter_icon, 16 * this.density, c.getHeight() - this.death_counter_icon.getHeight() - 16 * this.density, null);
+        c.drawBitmap(this.death_counter_icon, 16 * this.density, this.screenHeight - this.death_counter_icon.getHeight() - 16 * this.density, null);
         if(this.user.deathsCurrentLevel < 1000)
-            c.drawText("" + this.user.deathsCurrentLevel, 54 * this.density, c.getHeight() - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2, this.death_counter_paint);
+            this.hud_atlas.drawNumber(c, this.font_death_counter, this.user.deathsCurrentLevel, 54 * this.density, this.screenHeight - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2);
         else
-            c.drawText("oof", 54 * this.density, c.getHeight() - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2, this.death_counter_paint);
+            this.hud_atlas.drawLabel(c, this.label_death_overflow, 54 * this.density, this.screenHeight - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2);
+    }
+
+    /**
+     * Draws the distance in tiles the player has run in the endless mode instead of the death counter
+     *
+     * @param c Canvas to draw the distance onto
+     * @since 1.1
+     */
+    private void drawDistance(Canvas c) {
+        long distance = Math.max(0, this.stage.getEndlessDistance(this.physics.pos_x));
+        this.hud_atlas.drawNumber(c, this.font_distance, distance, 16 * this.density, this.screenHeight - 16 * this.density);
+    }
+
+    /**
+     * Draws the time of the current attempt in the top left corner
+     *
+     * @param c Canvas to draw the timer onto
+     * @since 1.1
+     */
+    private void drawTimer(Canvas c) {
+        int length = RunTimer.format(this.timer.getTicks(), this.timer_chars, 0);
+        this.hud_atlas.drawChars(c, this.font_distance, this.timer_chars, length, 16 * this.density, 16 * this.density - this.text_paint.ascent());
+    }
+
+    /**
+     * Draws the deaths and the play time of the marathon instead of the death counter of the user
+     *
+     * @param c Canvas to draw onto
+     * @since 1.1
+     */
+    private void drawMarathon(Canvas c) {
+        c.drawBitmap(this.death_counter_icon, 16 * this.density, this.screenHeight - this.death_counter_icon.getHeight() - 16 * this.density, null);
+        float baseline = this.screenHeight - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2;
+        float x = this.hud_atlas.drawNumber(c, this.font_death_counter, this.marathon_deaths, 54 * this.density, baseline);
+
+        //m:ss.t
+        long tenths = this.marathon_time / 100;
+        int length = GlyphAtlas.formatNumber(tenths / 600, this.marathon_chars, 0);
+        this.marathon_chars[length++] = ':';
+        this.marathon_chars[length++] = (char) ('0' + tenths / 100 % 6);
+        this.marathon_chars[length++] = (char) ('0' + tenths / 10 % 10);
+        this.marathon_chars[length++] = '.';
+        this.marathon_chars[length++] = (char) ('0' + tenths % 10);
+        this.hud_atlas.drawChars(c, this.font_death_counter, this.marathon_chars, length, x + 24 * this.density, baseline);
+    }
+
+    /**
+     * Composites the retained pause screen onto the canvas in one draw call and fades it in
+     * The pause screen is only rendered again if it has changed (e.g. the mute button)
+     *
+     * @param c              Canvas to draw the pause screen onto
+     * @param deltaFrameTime The passed time since the last frame
+     * @since 1.1
+     */
+    private void drawPauseLayer(Canvas c, float deltaFrameTime) {
+        int muted = EscapeSoundManager.getInstance(this.context).isMuted() ? 1 : 0;
+        if (this.pause_layer_bmp == null) {
+            this.pause_layer_bmp = Bitmap.createBitmap((int) this.screenWidth, (int) this.screenHeight, Bitmap.Config.ARGB_8888);
+            this.pause_layer_canvas = new Canvas(this.pause_layer_bmp);
+        }
+        if (this.pause_layer_muted != muted) {
+            this.pause_layer_canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            this.pause_layer_canvas.drawARGB(128, 0, 0, 0);
+            drawPauseScreen(this.pause_layer_canvas);
+            this.pause_layer_muted = muted;
+            this.pause_posted_frames = 0;
+        }
+
+        this.current_fade_out_time += deltaFrameTime;
+        if (this.current_fade_out_time < PAUSE_FADE_TIME) {
+            this.pause_layer_paint.setAlpha((int) (this.current_fade_out_time / PAUSE_FADE_TIME * 255));
+        } else {
+            this.pause_layer_paint.setAlpha(255);
+            this.pause_posted_frames++;
+        }
+        c.drawBitmap(this.pause_layer_bmp, 0, 0, this.pause_layer_paint);
+    }
+
+    /**
+     * Returns whether the player has died and the stage waits for a retry
+     * @since 1.1
+     */
+    public boolean isPlayerDead() {
+        return this.physics.dead;
+    }
+
+    /**
+     * Checks whether the next frame differs from what is already on the screen.
+     * While the game is paused, the world is frozen and the pause screen is static, so nothing has to be drawn
+     * once the finished pause screen has been posted to every buffer of the surface
+     *
+     * @return false if drawing the next frame can be skipped
+     * @since 1.1
+     */
+    public boolean needsRedraw() {
+        if (!this.paused || this.performance_overlay_visible)
+            return true;
+        int muted = EscapeSoundManager.getInstance(this.context).isMuted() ? 1 : 0;
+        return this.pause_layer_muted != muted || this.pause_posted_frames < PAUSE_POSTED_FRAMES;
     }
 
     /**
@@ -859,16 +1319,16 @@ public class GameState {
      * @since 1.0
      */
     private void drawPauseScreen(Canvas c) {
-        c.drawText(context.getResources().getText(R.string.pause_game).toString(), (this.screenWidth - this.controls_zone.width()) / 2, this.screenHeight / 2 - 40 * this.density, this.pause_paint);
+        this.hud_atlas.drawLabel(c, this.label_pause, (this.screenWidth - this.controls_zone.width()) / 2, this.screenHeight / 2 - 40 * this.density);
         c.drawRect(this.continue_touch_zone, this.button_paint);
         c.drawRect(this.exit_touch_zone, this.button_paint);
-        c.drawText(context.getResources().getText(R.string.continue_game).toString(), this.continue_touch_zone.centerX(), this.continue_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density, this.button_text_paint);
-        c.drawText(context.getResources().getText(R.string.backtomain).toString(), this.exit_touch_zone.centerX(), this.exit_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density, this.button_text_paint);
+        this.hud_atlas.drawLabel(c, this.label_continue, this.continue_touch_zone.centerX(), this.continue_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density);
+        this.hud_atlas.drawLabel(c, this.label_exit, this.exit_touch_zone.centerX(), this.exit_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density);
 
         c.drawRect(this.controls_zone, this.button_paint);
-        c.drawText(this.context.getResources().getText(R.string.controls).toString(), this.controls_zone.centerX(), this.screenHeight * 0.2f, this.controls_header_paint);
-        drawMultiLineText(c, this.context.getResources().getText(R.string.control_gravity).toString(), this.controls_zone.centerX(), this.controls_zone.centerY() - 0.05f * this.screenHeight + this.button_text_paint.getTextSize(), this.controls_text_paint);
-        drawMultiLineText(c, this.context.getResources().getText(R.string.control_jump).toString(), this.controls_zone.centerX(), this.controls_zone.centerY() + this.icon_control_jump.getHeight() + 0.2f * this.screenHeight + this.button_text_paint.getTextSize(), this.controls_text_paint);
+        this.hud_atlas.drawLabel(c, this.label_controls, this.controls_zone.centerX(), this.screenHeight * 0.2f);
+        this.hud_atlas.drawLabel(c, this.label_control_gravity, this.controls_zone.centerX(), this.controls_zone.centerY() - 0.05f * this.screenHeight + this.button_text_paint.getTextSize());
+        this.hud_atlas.drawLabel(c, this.label_control_jump, this.controls_zone.centerX(), this.controls_zone.centerY() + this.icon_control_jump.getHeight() + 0.2f * this.screenHeight + this.button_text_paint.getTextSize());
 
         c.drawBitmap(this.icon_control_gravity, this.controls_zone.centerX() - this.icon_control_gravity.getWidth() / 2f, this.controls_zone.centerY() - 0.05f * this.screenHeight - this.icon_control_gravity.getHeight(), null);
         c.drawBitmap(this.icon_control_jump, this.controls_zone.centerX() - this.icon_control_jump.getWidth() / 2f, this.controls_zone.centerY() + 0.2f * this.screenHeight, null);
@@ -880,22 +1340,6 @@ public class GameState {
         }
     }
 
-    /**
-     * Helper method to draw a string with line-breaks onto the canvas with proper styling
-     * @param c Canvas to draw the text onto
-     * @param text Text to draw
-     * @param x Position X on the canvas to draw
-     * @param y Position Y on the canvas to draw
-     * @param paint Paint to use for drawing the text
-     * @since 1.0
-     */
-    private void drawMultiLineText(Canvas c, String text, float x, float y, Paint paint) {
-        String[] lines = text.split("\n");
-        for(int i = 0; i < lines.length; i++, y += paint.getTextSize() + 2 * this.density) {
-            c.drawText(lines[i], x, y, paint);
-        }
-    }
-
     /**
      * Draws the fadeout animation on the canvas
      *
@@ -907,7 +1351,8 @@ public class GameState {
      */
     private void drawFadeout(Canvas c, float deltaFrameTime, int fade_out_time, int max_alpha) {
         this.current_fade_out_time += deltaFrameTime;
-        c.drawARGB(Math.min((int) ((this.current_fade_out_time / fade_out_time) * max_alpha), max_alpha), 0, 0, 0);
+        this.fade_alpha = Math.min((int) ((this.current_fade_out_time / fade_out_time) * max_alpha), max_alpha);
+        c.drawARGB(this.fade_alpha, 0, 0, 0);
     }
 
     /**
@@ -923,36 +1368,82 @@ public class GameState {
     private void drawFadeout(Canvas c, float deltaFrameTime, int fade_out_time, int max_alpha, int wait_time) {
         this.current_fade_out_time += deltaFrameTime;
         if (this.current_fade_out_time > wait_time) {
-            c.drawARGB(Math.min((int) (((this.current_fade_out_time - wait_time) / fade_out_time) * max_alpha), max_alpha), 0, 0, 0);
+            this.fade_alpha = Math.min((int) (((this.current_fade_out_time - wait_time) / fade_out_time) * max_alpha), max_alpha);
+            c.drawARGB(this.fade_alpha, 0, 0, 0);
         }
     }
 
     /**
-     * Sets the stage to finished
+     * Plays the steps while the player runs on the ground
+     * @since 1.1
+     */
+    @Override
+    public void onLanded() {
+        EscapeSoundManager.getInstance(this.context).playSoundLoop(EscapeSoundManager.getInstance(this.context).snd_steps);
+    }
+
+    /**
+     * Stops the steps while the player is in the air
+     * @since 1.1
+     */
+    @Override
+    public void onAirborne() {
+        EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+    }
+
+    /**
+     * Sets the stage to finished and saves the progress of the user
      * @since 1.0
      */
-    private void finishStage() {
+    @Override
+    public void onFinished() {
         this.finished = true;
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.DYING; //Same animation as dying is played
         this.player_anim_time = 0;
 
         if (this.update_user) {
             EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+            saveHeatmap();
+            this.stats_unsaved.addFinish();
+            saveStats();
+
+            this.timer.split(); //finish line
+            if (this.recording_valid) {
+                Ghost run = new Ghost(this.user.name, this.level, this.run_time, this.recording.encode());
+                Concurrency.executeAsync("GameState.saveGhost", () -> saveGhost(run));
+            }
+            if (this.timer_valid) {
+                PersonalBest attempt = new PersonalBest(this.user.name, this.level, this.timer.getTicks(), this.timer.encodeSplits());
+                List<Split> splits = new ArrayList<>(this.timer.getSplitCount());
+                long timestamp = System.currentTimeMillis();
+                for (int i = 0; i < this.timer.getSplitCount(); i++)
+                    splits.add(new Split(this.user.name, this.level, i, this.timer.getSplit(i), timestamp));
+                Concurrency.executeAsync("GameState.savePersonalBest", () -> savePersonalBest(attempt, splits));
+            }
+
+            if (this.marathon) {
+                //marathons do not count for the save file. the last stage ends the marathon
+                this.marathon_swap = this.level < HighscoreActivity.TOTAL_LEVELS;
+                this.update_user = false;
+                return;
+            }
 
             if(this.user.currentLevel > 0) {
                 Highscore highscore = new Highscore(this.user.name, this.user.currentLevel, this.user.deathsCurrentLevel);
-                Concurrency.executeAsync(() -> insertHighscore(highscore));
+                Concurrency.executeAsync("GameState.insertHighscore", () -> insertHighscore(highscore));
+                if (this.timer_valid) {
+                    Run run = new Run(this.user.name, this.user.currentLevel, this.timer.getTicks(), this.user.deathsCurrentLevel, System.currentTimeMillis(), this.recording_valid ? this.run_time : null);
+                    Concurrency.executeAsync("GameState.insertRun", () -> insertRun(run));
+                }
 
                 this.current_deaths = this.user.deathsCurrentLevel;
 
                 this.user.currentLevel++;
                 this.user.deathsCurrentLevel = 0;
-                Concurrency.executeAsync(() -> updateUser(this.user));
+                Concurrency.executeAsync("GameState.updateUser", () -> clearCheckpoint(this.user));
 
                 if (this.user.currentLevel > HighscoreActivity.TOTAL_LEVELS) {
                     Highscore finalscore = new Highscore(this.user.name, 0, this.user.deathsTotal);
-                    Concurrency.executeAsync(() -> insertHighscore(finalscore));
+                    Concurrency.executeAsync("GameState.insertHighscore", () -> insertHighscore(finalscore));
                 }
             } else {
                 this.current_deaths = this.user.deathsCurrentLevel;
@@ -961,68 +1452,73 @@ public class GameState {
                     this.user.currentLevel++; //two times to skip level 0
                 this.user.deathsCurrentLevel = 0;
                 this.user.deathsTotal = 0; //tutorial deaths dont count
-                Concurrency.executeAsync(() -> updateUser(this.user));
+                Concurrency.executeAsync("GameState.updateUser", () -> clearCheckpoint(this.user));
             }
         }
         this.update_user = false;
     }
 
     /**
-     * Prepares finishing a stage by not allowing any more input
-     * @since 1.0
+     * Marks the checkpoint to be saved after the step, when the position of the player is final
+     * @since 1.1
      */
-    private void setNoPlayerInput() {
-        if (!this.player_no_input) {
-            EscapeSoundManager.getInstance(this.context).pauseMediaPlayer();
-            EscapeSoundManager.getInstance(this.context).playLevelBeatMusic();
-            this.player_no_input = true;
-            this.gravity = 1;
-            this.player_boost_x = 1.0f;
-            if (this.player_velocity_y < 0)
-                this.player_velocity_y = 0;
-        }
+    @Override
+    public void onCheckpoint() {
+        this.checkpoint_reached = true;
     }
 
     /**
-     * Sets the player to dead and applies the dying animation. Can be called multiple times
+     * Prepares finishing a stage by playing the level beat music
      * @since 1.0
      */
-    private void killPlayer() {
-        if (!this.player_dead)
-            this.player_dead = true;
+    @Override
+    public void onNoInput() {
+        EscapeSoundManager.getInstance(this.context).pauseMediaPlayer();
+        EscapeSoundManager.getInstance(this.context).playLevelBeatMusic();
+    }
 
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.DYING;
+    /**
+     * Applies the dying animation and counts the death. Can be called multiple times
+     * @since 1.0
+     */
+    @Override
+    public void onKilled() {
         this.player_anim_time = 0;
 
         if (this.update_user) {
             EscapeSoundManager.getInstance(this.context).pauseMediaPlayer();
             EscapeSoundManager.getInstance(this.context).stopSoundLoop();
             EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_death);
-            this.user.deathsCurrentLevel++;
-            this.user.deathsTotal++;
-            Concurrency.executeAsync(() -> updateUser(this.user));
             this.update_user = false;
+            if (this.endless)
+                return; //runs of the endless mode do not count for the save file
+            this.stats_unsaved.addDeath(this.physics.pos_x + PLAYER_WIDTH / 2f, this.stage.stage_collision.length * 24, this.attempt_time);
+
+            if (this.marathon) {
+                this.marathon_deaths++; //marathons do not count for the save file
+            } else {
+                this.user.deathsCurrentLevel++;
+                this.user.deathsTotal++;
+                Concurrency.executeAsync("GameState.updateUser", () -> updateUser(this.user));
+            }
+
+            this.heatmap_unsaved[this.heatmap_unsaved_count++] = this.heatmap.addAt(this.physics.pos_x + PLAYER_WIDTH / 2f, this.physics.pos_y + PLAYER_HEIGTH / 2f);
+            if (this.heatmap_unsaved_count == HEATMAP_SAVE_DEATHS)
+                saveHeatmap();
         }
     }
 
     /**
-     * Inverts the gravity of the game to face upside down. Also marks the player to be in air
+     * Inverts the gravity of the game to face upside down
      * Only works if player is not in air when method call happens
      *
      * @since 0.1
      */
     private void invertGravity() {
-        if (!this.player_inAir || !this.player_first_gravity_inAir) {
-            this.gravity *= -1;
-            this.player_inAir = true;
-            this.player_first_gravity_inAir = true;
-
-            this.player_last_state = this.player_state;
-            this.player_state = PlayerState.GRAVITY;
+        if (this.physics.invertGravity()) {
             this.player_anim_time = 0;
 
-            if (this.gravity < 0)
+            if (this.physics.gravity < 0)
                 EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_gravity_up);
             else
                 EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_gravity_down);
@@ -1030,21 +1526,13 @@ public class GameState {
     }
 
     /**
-     * Sets the vertical velocity of the player to make a small jump. Also marks the player to be in air
+     * Lets the player make a small jump
      * Only works if player is not in air when method call happens
      *
      * @since 0.1
      */
     private void jump() {
-        if (!this.player_inAir) {
-            if(this.player_onJumper)
-                this.player_velocity_y = -360 * gravity;
-            else
-                this.player_velocity_y = -240 * gravity;
-            this.player_inAir = true;
-
-            this.player_last_state = this.player_state;
-            this.player_state = PlayerState.START_END_JUMP;
+        if (this.physics.jump()) {
             this.player_anim_time = 0;
 
             EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_jump);
@@ -1058,69 +1546,133 @@ public class GameState {
      * @since 0.1
      */
     public void onTouchEvent(MotionEvent event) {
-        if (event.getAction() == MotionEvent.ACTION_DOWN) {
-            if (this.paused) {
-                if (this.continue_touch_zone.contains(event.getX(), event.getY())) {
-                    this.paused = false;
-                    this.current_fade_out_time = 0;
-                    EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-                } else if (this.exit_touch_zone.contains(event.getX(), event.getY())) {
-                    this.running = false;
-                    EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-                } else if (this.mute_pause_touch_zone.contains(event.getX(), event.getY())) {
-                    EscapeSoundManager.getInstance(this.context).toggleMute(this.stage.current_music_id);
-                    EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                onTouchDown(event);
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                //second finger rewinds. the first finger was not meant as a jump
+                if (event.getPointerCount() == 2) {
+                    undoTouchAction(event);
+                    rewind();
                 }
-            } else if (this.mute_pause_touch_zone.contains(event.getX(), event.getY()) && !this.player_no_input && !this.player_dead && !this.finished && this.started) {
-                this.paused = true;
-                EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+                break;
+            case MotionEvent.ACTION_UP:
+                if (this.retry_pending && this.physics.dead && this.rewind_remaining == 0)
+                    retry();
+                this.retry_pending = false;
+                break;
+        }
+    }
+
+    /**
+     * Handles the first finger touching the screen
+     *
+     * @param event Incoming MotionEvent
+     * @since 0.1
+     */
+    private void onTouchDown(MotionEvent event) {
+        if (this.paused) {
+            if (this.continue_touch_zone.contains(event.getX(), event.getY())) {
+                this.paused = false;
+                this.pause_posted_frames = 0;
+                this.current_fade_out_time = 0;
+                this.fade_alpha = 0;
                 EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-            } else if (this.player_dead) {
-                retry();
-            } else if (this.finished) {
-                if (SKIP_FINISH_SPLASH_SCREEN) {
-                    load(this.user.currentLevel);
-                } else {
+            } else if (this.exit_touch_zone.contains(event.getX(), event.getY())) {
+                this.running = false;
+                EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+            } else if (this.mute_pause_touch_zone.contains(event.getX(), event.getY())) {
+                EscapeSoundManager.getInstance(this.context).toggleMute(this.stage.current_music_id);
+                EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+            } else if (this.death_counter_touch_zone.contains(event.getX(), event.getY())) {
+                //hidden gesture for developers
+                this.performance_overlay_visible = !this.performance_overlay_visible;
+                this.performance_overlay.reset();
+                this.pause_posted_frames = 0;
+            }
+        } else if (this.mute_pause_touch_zone.contains(event.getX(), event.getY()) && !this.physics.no_input && !this.physics.dead && !this.finished && this.started) {
+            this.paused = true;
+            EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+        } else if (this.physics.dead) {
+            this.retry_pending = true;
+        } else if (this.finished) {
+            if (this.marathon) {
+                if (!this.marathon_swap) {
+                    //marathon is over, the result screen shows the totals
                     this.running = false;
                     Bundle bundle = ActivityOptionsCompat.makeCustomAnimation(this.context, android.R.anim.fade_in, android.R.anim.fade_out).toBundle();
-                    Intent intent = new Intent(this.context, FinishStageActivity.class);
-                    intent.putExtra("current_deaths", this.current_deaths);
-                    intent.putExtra("next_level", this.user.currentLevel); //user has already been updated with next level
-                    intent.putExtra("screen_width", this.screenWidth);
+                    Intent intent = new Intent(this.context, MarathonResultActivity.class);
+                    intent.putExtra("marathon_deaths", this.marathon_deaths);
+                    intent.putExtra("marathon_time", this.marathon_time);
                     this.context.startActivity(intent, bundle);
                 }
-            } else if (!this.started) {
-                this.started = true;
-                this.player_last_state = this.player_state;
-                this.player_state = PlayerState.WAKEUP;
-                this.player_anim_time = 0;
-                EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-            } else if (!this.player_no_input) {
-                if (event.getX() < this.screenWidth / 2) {
-                    invertGravity();
-                } else {
-                    jump();
-                }
+            } else if (SKIP_FINISH_SPLASH_SCREEN) {
+                load(this.user.currentLevel);
+            } else {
+                this.running = false;
+                Bundle bundle = ActivityOptionsCompat.makeCustomAnimation(this.context, android.R.anim.fade_in, android.R.anim.fade_out).toBundle();
+                Intent intent = new Intent(this.context, FinishStageActivity.class);
+                intent.putExtra("current_deaths", this.current_deaths);
+                intent.putExtra("next_level", this.user.currentLevel); //user has already been updated with next level
+                intent.putExtra("screen_width", this.screenWidth);
+                this.context.startActivity(intent, bundle);
+            }
+        } else if (!this.started) {
+            this.started = true;
+            this.physics.setState(PlayerState.WAKEUP);
+            this.player_anim_time = 0;
+            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+        } else if (!this.physics.no_input) {
+            this.physics.save(this.touch_undo, 0);
+            this.touch_undo_run_time = this.run_time;
+            if (event.getX() < this.screenWidth / 2) {
+                invertGravity();
+            } else {
+                jump();
             }
         }
     }
 
+    /**
+     * Takes back the jump or gravity change of the first finger when the second finger follows within TOUCH_UNDO_TIME.
+     * Drops the snapshots recorded since the tap and restores the player to the moment before it
+     *
+     * @param event MotionEvent of the second finger
+     * @since 1.1
+     */
+    private void undoTouchAction(MotionEvent event) {
+        long run_time_tap = this.touch_undo_run_time;
+        this.touch_undo_run_time = -1;
+        if (run_time_tap < 0 || event.getEventTime() - event.getDownTime() > TOUCH_UNDO_TIME || this.physics.dead || this.paused || this.finished || this.rewind_remaining > 0)
+            return;
+
+        this.rewind_buffer.rewind(this.physics, this.run_time - run_time_tap);
+        this.physics.restore(this.touch_undo, 0);
+        this.run_time = run_time_tap;
+        this.recording.truncate((int) (this.run_time / PlayerPhysics.TICK));
+        this.player_anim_time = 0;
+    }
+
     /**
      * Is forwarded from activity. Called when the "back" button is pressed on the device
      * @since 1.0
      */
     public void onBackPressed() {
-        if(this.player_no_input)
+        if(this.physics.no_input)
             return;
 
-        if (!this.paused && this.started && !this.player_dead) {
+        if (!this.paused && this.started && !this.physics.dead) {
             this.paused = true;
             EscapeSoundManager.getInstance(this.context).stopSoundLoop();
             EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
         } else {
-            this.user.deathsCurrentLevel++;
-            this.user.deathsTotal++;
-            Concurrency.executeAsync(() -> updateUser(this.user));
+            if (!this.endless && !this.marathon) {
+                this.user.deathsCurrentLevel++;
+                this.user.deathsTotal++;
+                Concurrency.executeAsync("GameState.updateUser", () -> updateUser(this.user));
+            }
             this.running = false;
             EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
         }
@@ -1135,36 +1687,105 @@ public class GameState {
     public void load(int level) {
         this.started = false;
         this.paused = false;
-        this.finished = false;
 
-        this.stage.load(level);
+        saveHeatmap(); //remaining deaths of the previous stage
+        saveStats();
+        if (this.endless)
+            this.stage.loadEndless(this.endless_seed);
+        else
+            this.stage.load(level);
+        this.performance_overlay.reset();
 
         EscapeSoundManager.getInstance(this.context).releaseMediaPlayer();
         EscapeSoundManager.getInstance(this.context).initMediaPlayer(this.stage.current_music_id, true);
 
-        this.player_pos_x = stage.player_start_x * 24;
-        this.player_pos_y = stage.player_start_y * 24 + 24 - PLAYER_HEIGTH;
-        this.player_velocity_x = stage.player_velocity_x;
-        this.player_boost_x = 1.0f;
-        this.player_velocity_y = 0;
-        this.player_acceleration_y = 450;
-        this.player_dead = false;
-        this.player_inAir = true;
-        this.player_onBoost = false;
-        this.player_onJumper = false;
-        this.player_first_gravity_inAir = false;
-        this.gravity = 1;
-
+        startStage(level);
         this.start_circle_radius = 0.1f;
-        this.start_circle_canvas.drawColor(Color.BLACK);
-        this.start_circle_canvas.drawText(this.stage.stage_name, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
+        this.physics.setState(PlayerState.IDLE);
+    }
+
+    /**
+     * Replaces the finished stage of the marathon by the next stage once it has been prepared in the background.
+     * The player continues right away, without the start circle
+     * @since 1.1
+     */
+    private void swapStage() {
+        int music_id = this.stage.current_music_id;
+        if (!this.stage.swapPreloaded(this.level + 1))
+            return; //not ready yet. try again in the next frame
+        Trace.beginSection("GameState.swapStage");
+        this.marathon_swap = false;
+        if (this.stage.current_music_id != music_id) {
+            EscapeSoundManager.getInstance(this.context).releaseMediaPlayer();
+            EscapeSoundManager.getInstance(this.context).initMediaPlayer(this.stage.current_music_id, true);
+        } else {
+            EscapeSoundManager.getInstance(this.context).resumeMediaPlayer();
+        }
+        startStage(this.level + 1);
+        this.physics.setState(PlayerState.WAKEUP);
+        Trace.endSection();
+    }
+
+    /**
+     * Puts the player at the start of the stage that has just been loaded and resets everything that belongs to the previous stage
+     *
+     * @param level The ID of the stage
+     * @since 1.1
+     */
+    private void startStage(int level) {
+        this.finished = false;
+        this.level = level;
+        this.rewind_buffer.clear();
+        this.rewind_remaining = 0;
+        this.touch_undo_run_time = -1;
+        FrameRecorder.getInstance(this.context).setLevel(level);
+        if (NATIVE_RESOLUTION_RENDERING)
+            loadFramebuffer();
+
+        this.physics.setCollision(this.stage.stage_collision);
+        this.physics.reset(stage.player_start_x * 24, stage.player_start_y * 24 + 24 - PLAYER_HEIGTH, stage.player_velocity_x);
+        this.checkpoint_reached = false;
+        this.has_checkpoint = !this.endless && !this.marathon && this.user != null && this.user.currentLevel == level && loadCheckpoint(this.user.checkpoint);
+        if (this.has_checkpoint)
+            this.physics.restore(this.checkpoint, 0); //continue at the checkpoint of the last session
+        this.checkpoint_run_time = -1;
+        this.checkpoint_splits = 0;
+        this.checkpoint_ticks = 0;
+        this.checkpoint_rivals_time = 0;
+
+        this.run_time = 0;
+        this.timer.reset();
+        this.timer_split_column = -1;
+        this.attempt_time = 0;
+        if (!this.endless)
+            this.stats_unsaved.addAttempt();
+        this.recording.clear();
+        this.recording_valid = !this.has_checkpoint && !this.endless;
+        this.timer_valid = this.recording_valid;
+        this.ghost = null;
+        this.heatmap = null;
+        this.heatmap_stored = null;
+        if (this.rivals != null) {
+            this.rivals.setCollision(this.stage.stage_collision);
+            if (!this.endless)
+                startRivals();
+        }
+        if (!this.endless) {
+            //ghosts and heatmaps need positions in a stage that stays the same
+            if (this.user != null) {
+                String name = this.user.name;
+                Concurrency.executeAsync("GameState.loadGhost", () -> loadGhost(name, level));
+            }
+            this.heatmap = new DeathHeatmap(this.stage.stage_collision.length, this.stage.stage_collision[0].length);
+            Concurrency.executeAsync("GameState.loadHeatmap", () -> loadHeatmap(level));
+        }
+        if (this.marathon && level < HighscoreActivity.TOTAL_LEVELS)
+            this.stage.preload(level + 1); //prepared while this stage is played
 
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.IDLE;
         this.player_anim_time = 0;
         this.player_invisible = false;
-        this.player_no_input = false;
         this.current_fade_out_time = 0;
+        this.fade_alpha = 0;
 
         this.update_user = true;
     }
@@ -1177,23 +1798,45 @@ public class GameState {
     private void retry() {
         this.trans_x = 0;
         this.trans_y = 0;
-        this.player_pos_x = stage.player_start_x * 24;
-        this.player_pos_y = stage.player_start_y * 24;
-        this.player_velocity_x = stage.player_velocity_x;
-        this.player_boost_x = 1.0f;
-        this.player_velocity_y = 0;
-        this.player_dead = false;
-        this.player_inAir = true;
-        this.player_onBoost = false;
-        this.player_onJumper = false;
-        this.player_first_gravity_inAir = false;
-        this.gravity = 1;
-
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.WAKEUP;
+        if (this.has_checkpoint) {
+            this.physics.restore(this.checkpoint, 0);
+            this.run_time = Math.max(this.checkpoint_run_time, 0);
+            this.timer_valid = this.checkpoint_run_time >= 0;
+            this.recording_valid = this.timer_valid; //a full recording gives up again when it is continued
+            this.timer.restoreSplit(this.timer_valid ? this.checkpoint_splits : 0, this.timer_valid ? this.checkpoint_ticks : 0); //continues with the time at the checkpoint
+            if (this.rivals != null) {
+                //rivals are deterministic, so they are started again and catch up with the time of the checkpoint in the next update
+                startRivals();
+                this.rivals_time = this.checkpoint_rivals_time;
+            }
+        } else if (this.endless) {
+            this.stage.restartEndless();
+            this.physics.reset(stage.player_start_x * 24, stage.player_start_y * 24 + 24 - PLAYER_HEIGTH, stage.player_velocity_x);
+            this.run_time = 0;
+            this.timer.reset();
+        } else {
+            this.physics.reset(stage.player_start_x * 24, stage.player_start_y * 24 + 24 - PLAYER_HEIGTH, stage.player_velocity_x);
+            this.run_time = 0;
+            this.timer.reset();
+            this.timer_split_column = -1;
+            this.recording_valid = true;
+            this.timer_valid = true;
+            if (this.rivals != null)
+                startRivals();
+        }
+        this.recording.truncate((int) (this.run_time / PlayerPhysics.TICK));
+        this.checkpoint_reached = false;
+        this.attempt_time = 0;
+        if (!this.endless)
+            this.stats_unsaved.addAttempt();
+
+        this.physics.setState(PlayerState.WAKEUP);
+        this.rewind_buffer.clear();
+        this.touch_undo_run_time = -1;
         this.player_anim_time = 0;
         this.player_invisible = false;
         this.current_fade_out_time = 0;
+        this.fade_alpha = 0;
 
         this.paused = false;
         this.finished = false;
@@ -1203,6 +1846,54 @@ public class GameState {
         EscapeSoundManager.getInstance(this.context).resumeMediaPlayer();
     }
 
+    /**
+     * Puts all rivals at the start of the stage. Every rival decides on its own, the seeds depend on the stage so a race is the same every time
+     * @since 1.1
+     */
+    private void startRivals() {
+        this.rivals.clear();
+        this.rivals_time = 0;
+        for (int i = 0; i < RACE_RIVALS; i++)
+            this.rivals.addGenerated(stage.player_start_x * 24, stage.player_start_y * 24 + 24 - PLAYER_HEIGTH, stage.player_velocity_x, this.level * 1000L + i + 1);
+    }
+
+    /**
+     * Plays the endless mode instead of the current level of the user. Has to be called before setUser
+     * @param seed Seed of the generated stage
+     * @since 1.1
+     */
+    public void setEndless(long seed) {
+        this.endless = true;
+        this.endless_seed = seed;
+    }
+
+    /**
+     * Lets RACE_RIVALS simulated rivals run through the stages together with the player. Has to be called before setUser
+     * @since 1.1
+     */
+    public void setRace() {
+        this.rivals = new PlayerBatch(RACE_RIVALS);
+    }
+
+    /**
+     * Plays all stages from the first one in one run instead of the current level of the user. Has to be called before setUser
+     * @since 1.1
+     */
+    public void setMarathon() {
+        this.marathon = true;
+        this.marathon_time = 0;
+        this.marathon_deaths = 0;
+        this.marathon_chars = new char[GlyphAtlas.MAX_NUMBER_CHARS + 5]; //minutes and :ss.t
+    }
+
+    /**
+     * Returns whether all stages are played in one run
+     * @since 1.1
+     */
+    public boolean isMarathon() {
+        return this.marathon;
+    }
+
     /**
      * Sets the user of the GameState. This is used as save file
      * After the user is set, it will laod the current level of the User
@@ -1211,7 +1902,7 @@ public class GameState {
      */
     public void setUser(User user) {
         this.user = user;
-        load(this.user.currentLevel);
+        load(this.marathon ? 1 : this.user.currentLevel);
     }
 
     /**
@@ -1223,12 +1914,221 @@ public class GameState {
         EscapeDatabase.getInstance(context).userDao().update(user);
     }
 
+    /**
+     * Removes the checkpoint from the User and updates it in the database. Runs on the database thread like writeCheckpoint,
+     * so a checkpoint that is still queued cannot be written after it has been cleared
+     * @param user User to be updated
+     * @since 1.1
+     */
+    private void clearCheckpoint(User user) {
+        user.checkpoint = null;
+        updateUser(user);
+    }
+
+    /**
+     * Loads the ghost of a stage from the database. Tasks run one after another, so the ghost of the last loaded stage is set last
+     * @param name Name of the user
+     * @param level ID of the stage
+     * @since 1.1
+     */
+    private void loadGhost(String name, int level) {
+        Ghost ghost = EscapeDatabase.getInstance(context).ghostDao().getGhost(name, level);
+        Trajectory trajectory = null;
+        if (ghost != null && ghost.trajectory != null) {
+            try {
+                trajectory = Trajectory.decode(ghost.trajectory);
+            } catch (IOException e) {
+                Log.e(TAG, "ghost of level " + level + " is not shown", e);
+            }
+        }
+        this.ghost = trajectory;
+    }
+
+    /**
+     * Saves a finished run as ghost if it is faster than the ghost of the stage
+     * @param run Finished run
+     * @since 1.1
+     */
+    private void saveGhost(Ghost run) {
+        GhostDao dao = EscapeDatabase.getInstance(context).ghostDao();
+        Long best = dao.getGhostTime(run.name, run.level);
+        if (best == null || run.time < best)
+            dao.insert(run);
+    }
+
+    /**
+     * Adds the splits of a finished attempt to the history and keeps the attempt as personal best if it is faster than the personal best of the stage
+     * @param attempt Finished attempt
+     * @param splits Splits of the attempt
+     * @since 1.1
+     */
+    private void savePersonalBest(PersonalBest attempt, List<Split> splits) {
+        PersonalBestDao dao = EscapeDatabase.getInstance(context).personalBestDao();
+        dao.insertSplits(splits);
+        Integer best = dao.getPersonalBestTicks(attempt.name, attempt.level);
+        if (best == null || attempt.ticks < best)
+            dao.insert(attempt);
+    }
+
+    /**
+     * Loads the heatmap of a stage from the database. It is merged into the heatmap of the session in the next update
+     * @param level ID of the stage
+     * @since 1.1
+     */
+    private void loadHeatmap(int level) {
+        Heatmap heatmap = EscapeDatabase.getInstance(context).heatmapDao().getHeatmap(level);
+        if (heatmap != null)
+            this.heatmap_stored = heatmap;
+    }
+
+    /**
+     * Adds the heatmap of the database to the deaths of this session
+     * @since 1.1
+     */
+    private void mergeHeatmap() {
+        Heatmap stored = this.heatmap_stored;
+        this.heatmap_stored = null;
+        if (this.heatmap == null || stored.level != this.level || stored.counts == null)
+            return; //loaded for a stage that is not played anymore
+        try {
+            this.heatmap.merge(DeathHeatmap.decode(stored.width, stored.height, stored.counts));
+        } catch (IOException e) {
+            Log.e(TAG, "heatmap of level " + stored.level + " is not shown", e);
+        }
+    }
+
+    /**
+     * Writes the deaths that are not in the database yet. Does nothing if there are none
+     * Public so the GameThread can save the last deaths when the game ends
+     * @since 1.1
+     */
+    public void saveHeatmap() {
+        if (this.heatmap_unsaved_count == 0 || this.heatmap == null)
+            return;
+        int level = this.level;
+        int width = this.heatmap.getWidth();
+        int height = this.heatmap.getHeight();
+        int[] tiles = Arrays.copyOf(this.heatmap_unsaved, this.heatmap_unsaved_count);
+        this.heatmap_unsaved_count = 0;
+        Concurrency.executeAsync("GameState.saveHeatmap", () -> saveHeatmap(level, width, height, tiles));
+    }
+
+    /**
+     * Adds deaths to the heatmap of a stage in the database. Tasks run one after another, so reading and writing the heatmap does not race.
+     * A stored heatmap that can not be decoded is kept and the deaths are dropped, so the deaths counted so far are not overwritten
+     * @param level ID of the stage
+     * @param width Width of the stage in tiles
+     * @param height Height of the stage in tiles
+     * @param tiles Tile indices of the deaths
+     * @since 1.1
+     */
+    private void saveHeatmap(int level, int width, int height, int[] tiles) {
+        HeatmapDao dao = EscapeDatabase.getInstance(context).heatmapDao();
+        Heatmap stored = dao.getHeatmap(level);
+        DeathHeatmap heatmap = new DeathHeatmap(width, height);
+        if (stored != null && stored.counts != null && stored.width == width && stored.height == height) {
+            try {
+                heatmap = DeathHeatmap.decode(width, height, stored.counts);
+            } catch (IOException e) {
+                Log.e(TAG, "heatmap of level " + level + " is not updated", e);
+                return;
+            }
+        }
+        for (int tile : tiles)
+            heatmap.add(tile % width, tile / width);
+        dao.insert(new Heatmap(level, width, height, heatmap.encode()));
+    }
+
+    /**
+     * Writes the stats of the current stage that are not in the database yet. Does nothing if there are none
+     * Public so the GameThread can save the last stats when the game ends
+     * @since 1.1
+     */
+    public void saveStats() {
+        if (this.stats_unsaved.isEmpty() || this.user == null)
+            return;
+        synchronized (this.stats_pending) {
+            if (!this.stats_queued || (this.stats_pending_level == this.level && this.stats_pending_name.equals(this.user.name))) {
+                this.stats_pending.add(this.stats_unsaved);
+                this.stats_unsaved.clear();
+                this.stats_pending_name = this.user.name;
+                this.stats_pending_level = this.level;
+                if (this.stats_queued)
+                    return; //the queued task takes these stats as well
+                this.stats_queued = true;
+            } else {
+                //stats of the previous stage are still waiting. only happens right after a stage change, so a copy is fine
+                LevelStats stats = new LevelStats();
+                stats.add(this.stats_unsaved);
+                this.stats_unsaved.clear();
+                String name = this.user.name;
+                int level = this.level;
+                Concurrency.executeAsync("GameState.saveStats", () -> saveStats(name, level, stats));
+                return;
+            }
+        }
+        Concurrency.execute(this.save_stats_task);
+    }
+
+    /**
+     * Takes the stats that have been handed over by saveStats and adds them to the database. Runs on the database thread
+     * @since 1.1
+     */
+    private void writeStats() {
+        LevelStats stats = new LevelStats();
+        String name;
+        int level;
+        synchronized (this.stats_pending) {
+            stats.add(this.stats_pending);
+            this.stats_pending.clear();
+            name = this.stats_pending_name;
+            level = this.stats_pending_level;
+            this.stats_queued = false;
+        }
+        saveStats(name, level, stats);
+    }
+
+    /**
+     * Adds stats to the stats of a user in a stage in the database. Tasks run one after another, so reading and writing the stats does not race.
+     * Stored stats that cannot be read are kept as they are, so they are not replaced by the few counts that are added
+     * @param name Name of the user
+     * @param level ID of the stage
+     * @param stats Stats to be added
+     * @since 1.1
+     */
+    private void saveStats(String name, int level, LevelStats stats) {
+        StatsDao dao = EscapeDatabase.getInstance(context).statsDao();
+        Stats stored = dao.getStats(name, level);
+        if (stored != null) {
+            try {
+                if (stored.histograms == null)
+                    throw new IOException("stats of level " + level + " have no histograms");
+                LevelStats total = LevelStats.decode(stored.attempts, stored.finishes, stored.deaths, stored.histograms);
+                total.add(stats);
+                stats = total;
+            } catch (IOException e) {
+                Log.e(TAG, "stats of level " + level + " are not updated", e);
+                return;
+            }
+        }
+        dao.insert(new Stats(name, level, stats.getAttempts(), stats.getFinishes(), stats.getDeaths(), stats.encodeHistograms()));
+    }
+
     /**
      * Inserts a new Highscore into the database
      * @param highscore Highscore to be inserted
      * @since 1.0
      */
     private void insertHighscore(Highscore highscore) {
-        EscapeDatabase.getInstance(context).highscoreDao().insert(highscore);
+        HighscoreRepository.getInstance(context).insert(highscore);
+    }
+
+    /**
+     * Inserts a finished run into the database for the time attack leaderboard
+     * @param run Run to be inserted
+     * @since 1.1
+     */
+    private void insertRun(Run run) {
+        EscapeDatabase.getInstance(context).runDao().insert(run);
     }
 }
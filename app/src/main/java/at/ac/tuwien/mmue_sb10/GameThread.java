@@ -15,6 +15,8 @@ import android.content.Intent;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Debug;
+import android.os.Trace;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
@@ -28,6 +30,8 @@ import androidx.core.app.ActivityOptionsCompat;
 public class GameThread extends Thread {
 
     private static final String TAG = GameThread.class.getSimpleName();
+    private static final long IDLE_SLEEP_TIME = 16; //time in ms to wait before checking again if a frame has to be drawn
+    public static final boolean ALLOCATION_GUARD = false; //counts the objects update and draw allocate and logs every frame that allocates
 
     private GameState state;
     private SurfaceHolder holder;
@@ -35,17 +39,30 @@ public class GameThread extends Thread {
 
     private Canvas canvas;
 
+    private ResolutionController resolution; //lowers the surface resolution if frames take too long
+    private FrameRecorder recorder; //keeps the timings of the last frames for diagnosing jank
+    private int screenWidth; //width of the SurfaceView in px
+    private int screenHeight; //height of the SurfaceView in px
+
     /**
      * Creates a new GameThread instance
      *
-     * @param state  GameState instance that will be updated and rendered
-     * @param holder SurfaceHolder of the SurfaceView
+     * @param state        GameState instance that will be updated and rendered
+     * @param holder       SurfaceHolder of the SurfaceView
+     * @param context      Context of the app
+     * @param refresh_rate Refresh rate of the display in Hz. Used as frame budget
+     * @param screenWidth  Width of the SurfaceView in px
+     * @param screenHeight Height of the SurfaceView in px
      * @since 0.1
      */
-    public GameThread(GameState state, SurfaceHolder holder, Context context) {
+    public GameThread(GameState state, SurfaceHolder holder, Context context, float refresh_rate, int screenWidth, int screenHeight) {
         this.state = state;
         this.holder = holder;
         this.context = context;
+        this.resolution = new ResolutionController(refresh_rate);
+        this.recorder = FrameRecorder.getInstance(context);
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
     }
 
     /**
@@ -67,32 +84,130 @@ public class GameThread extends Thread {
     @Override
     public void run() {
         long currentFrameTime, deltaFrameTime, lastFrameTime = System.currentTimeMillis();
+        long updateTime, drawStartTime, workTime, drawTime = 0, lockTime = 0, postTime = 0, postStartTime;
+        long updateEndTime, lastDrawnUpdateEndTime = System.nanoTime();
+        int allocations = 0;
+        if (ALLOCATION_GUARD) {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+        }
         try {
             while (this.state.running) {
                 currentFrameTime = System.currentTimeMillis();
                 deltaFrameTime = currentFrameTime - lastFrameTime;
 
-                state.update(deltaFrameTime);
+                if (ALLOCATION_GUARD)
+                    allocations = Debug.getThreadAllocCount();
+                updateTime = System.nanoTime();
+                Trace.beginSection("GameThread.update");
+                try {
+                    state.update(deltaFrameTime);
+                } finally {
+                    Trace.endSection();
+                }
+                updateEndTime = System.nanoTime();
+                workTime = updateEndTime - updateTime;
+
+                if (!state.needsRedraw()) {
+                    //screen is static (pause screen). keep the posted frame instead of drawing the same frame again
+                    idle();
+                    lastFrameTime = currentFrameTime;
+                    continue;
+                }
 
                 try {
-                    canvas = holder.lockCanvas();
+                    Trace.beginSection("GameThread.lockCanvas");
+                    try {
+                        canvas = holder.lockCanvas();
+                    } finally {
+                        Trace.endSection();
+                    }
                     synchronized (holder) {
-                        state.draw(canvas, deltaFrameTime);
+                        drawStartTime = System.nanoTime();
+                        lockTime = drawStartTime - updateEndTime;
+                        Trace.beginSection("GameThread.draw");
+                        try {
+                            state.draw(canvas, deltaFrameTime);
+                        } finally {
+                            Trace.endSection();
+                        }
+                        drawTime = System.nanoTime() - drawStartTime;
                     }
                 } finally {
                     if (canvas != null) {
-                        holder.unlockCanvasAndPost(canvas);
+                        postStartTime = System.nanoTime();
+                        Trace.beginSection("GameThread.unlockCanvasAndPost");
+                        try {
+                            holder.unlockCanvasAndPost(canvas);
+                        } finally {
+                            Trace.endSection();
+                        }
+                        postTime = System.nanoTime() - postStartTime;
                     }
                 }
 
+                if (ALLOCATION_GUARD)
+                    checkAllocations(allocations);
+
+                state.recordFrame(updateEndTime - lastDrawnUpdateEndTime, workTime, drawTime);
+                this.recorder.record(updateTime, workTime, lockTime, drawTime, postTime);
+                lastDrawnUpdateEndTime = updateEndTime;
+                workTime += drawTime;
+
+                if (this.resolution.onFrame(workTime))
+                    resizeSurface(this.resolution.getScale());
+
                 lastFrameTime = currentFrameTime;
             }
         } catch (NullPointerException npe) {
             npe.printStackTrace();
         }
+        if (ALLOCATION_GUARD)
+            Debug.stopAllocCounting();
+
+        this.state.saveHeatmap(); //deaths of the last unfinished batch
+        this.state.saveStats(); //attempts and deaths since the last checkpoint
+        if (!this.state.finished || this.state.isMarathon())
+            end(); //a finished stage continues with the splash screen, a finished marathon returns to the menu
+    }
+
+    /**
+     * Logs the frame if update or draw allocated objects since the frame started.
+     * Saving the savefile after dying or finishing a stage hands a task to the database thread and is expected to allocate
+     *
+     * @param allocations Allocation count of this thread at the start of the frame
+     * @since 1.1
+     */
+    private void checkAllocations(int allocations) {
+        int allocated = Debug.getThreadAllocCount() - allocations;
+        if (allocated > 0)
+            Log.w(TAG, "Frame allocated " + allocated + " objects (" + Debug.getThreadAllocSize() + " bytes since start)");
+    }
+
+    /**
+     * Waits a bit while no frame has to be drawn
+     * @since 1.1
+     */
+    private void idle() {
+        try {
+            Thread.sleep(IDLE_SLEEP_TIME);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
 
-        if (!this.state.finished)
-            end();
+    /**
+     * Changes the size of the surface buffer. The SurfaceView stays the same size and the compositor scales the buffer up,
+     * so touch events keep arriving in view coordinates. Both sides use the scale of the rounded width, so the buffer keeps the aspect ratio of the view
+     *
+     * @param scale Render scale, 1 is full resolution
+     * @since 1.1
+     */
+    private void resizeSurface(float scale) {
+        final int width = Math.max(1, Math.round(this.screenWidth * scale));
+        final int height = Math.max(1, Math.round((float) this.screenHeight * width / this.screenWidth));
+        Log.d(TAG, "Render scale changed to " + scale);
+        ((Activity) context).runOnUiThread(() -> this.holder.setFixedSize(width, height));
     }
 
     /**
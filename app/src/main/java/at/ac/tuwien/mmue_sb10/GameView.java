@@ -2,6 +2,7 @@ package at.ac.tuwien.mmue_sb10;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
@@ -15,8 +16,6 @@ import android.view.WindowManager;
 
 import androidx.annotation.NonNull;
 
-import java.util.List;
-
 import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
 import at.ac.tuwien.mmue_sb10.persistence.OnUserLoadedListener;
 import at.ac.tuwien.mmue_sb10.persistence.User;
@@ -85,9 +84,9 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
         this.screenHeigth = r.height();
 
         this.state = new GameState(getContext(), this.density, this.screenWidth, this.screenHeigth);
-        this.thread = new GameThread(state, holder, getContext());
+        this.thread = new GameThread(state, holder, getContext(), this.fps, this.screenWidth, this.screenHeigth);
 
-        Concurrency.executeAsync(() -> {
+        Concurrency.executeAsync("GameView.loadUser", () -> {
             User user = loadUser();
             ((Activity)getContext()).runOnUiThread(() -> onUserLoadedListener.onUserLoaded(user));
         });
@@ -105,8 +104,13 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if(event.getAction() == MotionEvent.ACTION_DOWN) {
-            this.state.onTouchEvent(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_UP:
+                this.state.onTouchEvent(event);
+                //consume the gesture, otherwise the view does not receive the following pointers
+                return true;
         }
         return super.onTouchEvent(event);
     }
@@ -119,11 +123,18 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
     private void onUserLoaded(User user) {
         if(user.currentLevel > HighscoreActivity.TOTAL_LEVELS) {
 
-            Concurrency.executeAsync(this::deleteUser);
+            Concurrency.executeAsync("GameView.deleteUser", () -> deleteUser(user));
 
             ((Activity) getContext()).finish();
             return;
         }
+        Intent intent = ((Activity) getContext()).getIntent();
+        if (intent.hasExtra("endless_seed"))
+            this.state.setEndless(intent.getLongExtra("endless_seed", 0));
+        else if (intent.getBooleanExtra("marathon", false))
+            this.state.setMarathon();
+        else if (intent.getBooleanExtra("race", false))
+            this.state.setRace();
         this.state.setUser(user);
         startgame();
     }
@@ -159,25 +170,20 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
     }
 
     /**
-     * Loads the current user from the database
+     * Loads the active profile from the database
      * @return User or null, if it does not exist
      * @since 1.0
      */
     private User loadUser() {
-        List<User> users = EscapeDatabase.getInstance(getContext()).userDao().selectAllUsers();
-        User user;
-        if(users.size() > 0)
-            user = users.get(0);
-        else
-            user = null;
-        return user;
+        return EscapeDatabase.getInstance(getContext()).userDao().getActiveUser();
     }
 
     /**
-     * Deletes the current User from the database
+     * Deletes a User and its progress from the database
+     * @param user User to be deleted
      * @since 1.0
      */
-    private void deleteUser() {
-        EscapeDatabase.getInstance(getContext()).userDao().deleteAllUsers();
+    private void deleteUser(User user) {
+        EscapeDatabase.getInstance(getContext()).userDao().deleteWithProgress(user);
     }
 }
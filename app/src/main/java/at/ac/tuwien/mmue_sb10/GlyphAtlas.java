@@ -0,0 +1,274 @@
+/**
+ * Pre-renders HUD texts and digits into a single bitmap, so the HUD can be drawn every frame without creating Strings.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+
+/**
+ * This class holds a glyph atlas for the HUD. Static labels (also multi-line ones) and the glyphs needed to print numbers are added first
+ * and then rendered into one bitmap with build(). Drawing a label or a number afterwards only copies regions of the atlas onto the canvas
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class GlyphAtlas {
+    public static final String GLYPHS = "0123456789:.-"; //characters that can be drawn with drawChars
+    public static final int MAX_NUMBER_CHARS = 20; //characters of the longest number formatNumber writes (sign and 19 digits of Long.MIN_VALUE)
+    private static final int PADDING = 2; //empty pixels between two entries of the atlas
+
+    private Bitmap atlas; //all labels and glyphs
+    private final Rect src; //reused source rectangle for drawing from the atlas
+    private final RectF dst; //reused target rectangle for drawing from the atlas
+    private final char[] scratch; //reused buffer to convert numbers into characters
+
+    /*
+     * LABELS: one entry per label. Positions are set by build()
+     */
+    private final ArrayList<String> label_texts;
+    private final ArrayList<Paint> label_paints;
+    private final ArrayList<Float> label_line_heights;
+    private int[] label_rects; //left, top, right, bottom per label
+    private float[] label_ascents; //distance from the top of the label to the baseline of the first line
+
+    /*
+     * FONTS: one entry per paint that is used for drawChars
+     */
+    private final ArrayList<Paint> font_paints;
+    private int[][] glyph_rects; //left, top, right, bottom per glyph and font
+    private float[] font_ascents; //distance from the top of the glyphs to the baseline
+
+    /**
+     * Creates an empty GlyphAtlas
+     * @since 1.1
+     */
+    public GlyphAtlas() {
+        this.src = new Rect();
+        this.dst = new RectF();
+        this.scratch = new char[MAX_NUMBER_CHARS];
+        this.label_texts = new ArrayList<>();
+        this.label_paints = new ArrayList<>();
+        this.label_line_heights = new ArrayList<>();
+        this.font_paints = new ArrayList<>();
+    }
+
+    /**
+     * Adds a label to the atlas. Line breaks are kept
+     *
+     * @param text        Text of the label
+     * @param paint       Paint the label is rendered with. Its text alignment is used when the label is drawn
+     * @param line_height Distance between the baselines of two lines
+     * @return id of the label to be used with drawLabel
+     * @since 1.1
+     */
+    public int addLabel(String text, Paint paint, float line_height) {
+        this.label_texts.add(text);
+        this.label_paints.add(new Paint(paint));
+        this.label_line_heights.add(line_height);
+        return this.label_texts.size() - 1;
+    }
+
+    /**
+     * Adds all GLYPHS rendered with paint to the atlas
+     *
+     * @param paint Paint the glyphs are rendered with
+     * @return id of the font to be used with drawChars and drawNumber
+     * @since 1.1
+     */
+    public int addFont(Paint paint) {
+        this.font_paints.add(new Paint(paint));
+        return this.font_paints.size() - 1;
+    }
+
+    /**
+     * Renders all labels and fonts into the atlas bitmap. Has to be called once after everything has been added
+     * @since 1.1
+     */
+    public void build() {
+        int width = 1;
+        int height = 0;
+
+        this.label_rects = new int[this.label_texts.size() * 4];
+        this.label_ascents = new float[this.label_texts.size()];
+        for (int i = 0; i < this.label_texts.size(); i++) {
+            Paint paint = this.label_paints.get(i);
+            String[] lines = this.label_texts.get(i).split("\n");
+            float line_width = 0;
+            for (String line : lines)
+                line_width = Math.max(line_width, paint.measureText(line));
+            int label_height = (int) Math.ceil((lines.length - 1) * this.label_line_heights.get(i) - paint.ascent() + paint.descent());
+
+            this.label_rects[i * 4] = 0;
+            this.label_rects[i * 4 + 1] = height;
+            this.label_rects[i * 4 + 2] = (int) Math.ceil(line_width);
+            this.label_rects[i * 4 + 3] = height + label_height;
+            this.label_ascents[i] = -paint.ascent();
+            width = Math.max(width, (int) Math.ceil(line_width));
+            height += label_height + PADDING;
+        }
+
+        this.glyph_rects = new int[this.font_paints.size()][GLYPHS.length() * 4];
+        this.font_ascents = new float[this.font_paints.size()];
+        for (int f = 0; f < this.font_paints.size(); f++) {
+            Paint paint = this.font_paints.get(f);
+            int glyph_height = (int) Math.ceil(paint.descent() - paint.ascent());
+            int x = 0;
+            for (int g = 0; g < GLYPHS.length(); g++) {
+                int glyph_width = (int) Math.ceil(paint.measureText(GLYPHS, g, g + 1));
+                this.glyph_rects[f][g * 4] = x;
+                this.glyph_rects[f][g * 4 + 1] = height;
+                this.glyph_rects[f][g * 4 + 2] = x + glyph_width;
+                this.glyph_rects[f][g * 4 + 3] = height + glyph_height;
+                x += glyph_width + PADDING;
+            }
+            this.font_ascents[f] = -paint.ascent();
+            width = Math.max(width, x);
+            height += glyph_height + PADDING;
+        }
+
+        this.atlas = Bitmap.createBitmap(width, Math.max(1, height), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(this.atlas);
+
+        for (int i = 0; i < this.label_texts.size(); i++) {
+            Paint paint = this.label_paints.get(i);
+            String[] lines = this.label_texts.get(i).split("\n");
+            float x = alignedOffset(paint.getTextAlign(), this.label_rects[i * 4 + 2]);
+            float y = this.label_rects[i * 4 + 1] + this.label_ascents[i];
+            for (String line : lines) {
+                canvas.drawText(line, x, y, paint);
+                y += this.label_line_heights.get(i);
+            }
+        }
+
+        for (int f = 0; f < this.font_paints.size(); f++) {
+            Paint paint = this.font_paints.get(f);
+            paint.setTextAlign(Paint.Align.LEFT);
+            for (int g = 0; g < GLYPHS.length(); g++) {
+                canvas.drawText(GLYPHS, g, g + 1, this.glyph_rects[f][g * 4], this.glyph_rects[f][g * 4 + 1] + this.font_ascents[f], paint);
+            }
+        }
+    }
+
+    /**
+     * Draws a label onto the canvas the same way Canvas.drawText would draw it with the paint of the label
+     *
+     * @param c     Canvas to draw the label onto
+     * @param label id of the label as returned by addLabel
+     * @param x     Position X of the label, interpreted with the text alignment of the label paint
+     * @param y     Position Y of the baseline of the first line
+     * @since 1.1
+     */
+    public void drawLabel(Canvas c, int label, float x, float y) {
+        int width = this.label_rects[label * 4 + 2] - this.label_rects[label * 4];
+        float left = x - alignedOffset(this.label_paints.get(label).getTextAlign(), width);
+        float top = y - this.label_ascents[label];
+        this.src.set(this.label_rects[label * 4], this.label_rects[label * 4 + 1], this.label_rects[label * 4 + 2], this.label_rects[label * 4 + 3]);
+        this.dst.set(left, top, left + width, top + this.src.height());
+        c.drawBitmap(this.atlas, this.src, this.dst, null);
+    }
+
+    /**
+     * Draws characters left aligned onto the canvas. Only characters of GLYPHS are drawn, all other characters are skipped
+     *
+     * @param c     Canvas to draw the characters onto
+     * @param font  id of the font as returned by addFont
+     * @param chars Characters to draw
+     * @param count Number of characters to draw from the start of chars
+     * @param x     Position X of the left edge
+     * @param y     Position Y of the baseline
+     * @return Position X right after the last drawn character
+     * @since 1.1
+     */
+    public float drawChars(Canvas c, int font, char[] chars, int count, float x, float y) {
+        float top = y - this.font_ascents[font];
+        for (int i = 0; i < count; i++) {
+            int g = glyphIndex(chars[i]);
+            if (g < 0)
+                continue;
+            int[] rects = this.glyph_rects[font];
+            this.src.set(rects[g * 4], rects[g * 4 + 1], rects[g * 4 + 2], rects[g * 4 + 3]);
+            this.dst.set(x, top, x + this.src.width(), top + this.src.height());
+            c.drawBitmap(this.atlas, this.src, this.dst, null);
+            x += this.src.width();
+        }
+        return x;
+    }
+
+    /**
+     * Draws a number left aligned onto the canvas without allocating a String
+     *
+     * @param c      Canvas to draw the number onto
+     * @param font   id of the font as returned by addFont
+     * @param number Number to draw
+     * @param x      Position X of the left edge
+     * @param y      Position Y of the baseline
+     * @return Position X right after the last drawn digit
+     * @since 1.1
+     */
+    public float drawNumber(Canvas c, int font, long number, float x, float y) {
+        return drawChars(c, font, this.scratch, formatNumber(number, this.scratch, 0), x, y);
+    }
+
+    /**
+     * Writes the decimal digits of a number into a char array
+     *
+     * @param number Number to write
+     * @param buffer Array to write into. Needs space for up to MAX_NUMBER_CHARS characters
+     * @param offset Index of the first character to write
+     * @return Number of written characters
+     * @since 1.1
+     */
+    public static int formatNumber(long number, char[] buffer, int offset) {
+        int start = offset;
+        if (number < 0)
+            buffer[offset++] = '-';
+        int digits = 1;
+        for (long rest = number / 10; rest != 0; rest /= 10)
+            digits++;
+        //digits are taken from the number with its sign, because Long.MIN_VALUE can not be negated
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + Math.abs(number % 10));
+            number /= 10;
+        }
+        return offset + digits - start;
+    }
+
+    /**
+     * Returns the index of a character in GLYPHS or -1 if it is not part of the atlas
+     * @since 1.1
+     */
+    private static int glyphIndex(char ch) {
+        if (ch >= '0' && ch <= '9')
+            return ch - '0';
+        switch (ch) {
+            case ':':
+                return 10;
+            case '.':
+                return 11;
+            case '-':
+                return 12;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the distance from the left edge of a text of the given width to the anchor of the text alignment
+     * @since 1.1
+     */
+    private static float alignedOffset(Paint.Align align, float width) {
+        if (align == Paint.Align.CENTER)
+            return width / 2f;
+        else if (align == Paint.Align.RIGHT)
+            return width;
+        return 0;
+    }
+}
@@ -2,31 +2,22 @@ package at.ac.tuwien.mmue_sb10;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.widget.FrameLayout;
-import android.widget.TableLayout;
-import android.widget.TableRow;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
 import android.widget.TextView;
 
-import androidx.core.app.ActivityOptionsCompat;
-import androidx.fragment.app.Fragment;
-import androidx.fragment.app.ListFragment;
-
-import com.google.android.material.tabs.TabLayout;
-
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
-import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
 import at.ac.tuwien.mmue_sb10.persistence.Highscore;
+import at.ac.tuwien.mmue_sb10.persistence.HighscoreRepository;
 import at.ac.tuwien.mmue_sb10.persistence.OnHighscoresLoadedListener;
-import at.ac.tuwien.mmue_sb10.util.Concurrency;
 
 /**
  * This class handles the highscore submenu and the presentation of highscores
@@ -38,11 +29,16 @@ public class HighscoreActivity extends Activity {
     public static final int TOTAL_LEVELS = 8; //TODO
 
     private final OnHighscoresLoadedListener onHighscoresLoadedListener = this::onHighscoresLoaded;
+    private final ArrayList<Item> items = new ArrayList<>(); //headers and highscores of all levels in the order of the list
+    private HighscoreAdapter adapter; //shows the items in the list
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_highscore);
+        this.adapter = new HighscoreAdapter();
+        ListView list = findViewById(R.id.list_highscores);
+        list.setAdapter(this.adapter);
     }
 
     @Override
@@ -54,10 +50,14 @@ public class HighscoreActivity extends Activity {
                 | View.SYSTEM_UI_FLAG_FULLSCREEN;
         decorView.setSystemUiVisibility(uiOptions);
 
-        Concurrency.executeAsync(() -> {
-            List<Highscore> highscores = loadHighscores();
-            runOnUiThread(() -> onHighscoresLoadedListener.onHighscoresLoaded(highscores));
-        });
+        //highscores are kept in memory, so they are shown without reading the database
+        HighscoreRepository.getInstance(this).addObserver(this.onHighscoresLoadedListener);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        HighscoreRepository.getInstance(this).removeObserver(this.onHighscoresLoadedListener);
     }
 
     @Override
@@ -90,113 +90,151 @@ public class HighscoreActivity extends Activity {
     }
 
     /**
-     * When highscores have been loaded from the db.
-     * Displays highscores TableView as TableRows
-     * @param highscores Highscores that have been loaded
+     * When the time attack button is clicked. Goes to the LeaderboardActivity
+     * @param v Button View that has been clicked
+     * @since 1.1
+     */
+    public void onClickLeaderboard(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        startActivity(new Intent(this, LeaderboardActivity.class));
+    }
+
+    /**
+     * When highscores have been loaded or have changed (see HighscoreRepository).
+     * Creates a section with a header for every level and shows the sections in the list. Rows are only created for the visible part of the list
+     * @param highscores Highscores that have been loaded, ordered by level
      * @since 1.0
      */
     private void onHighscoresLoaded(List<Highscore> highscores) {
+        this.items.clear();
+        int i = 0;
         for (int level = 0; level <= TOTAL_LEVELS; level++) {
-            ArrayList<Highscore> filtered = new ArrayList<>();
-            for (Highscore highscore : highscores) {
-                if(highscore.level == level)
-                    filtered.add(highscore);
-            }
+            int first = i;
+            while (i < highscores.size() && highscores.get(i).level == level)
+                i++;
+
+            if (level == 0 || i > first)
+                this.items.add(new Item(level, null));
+            if (level == 0 && i == first)
+                this.items.add(new Item(level, null)); //"-" row if nobody has beaten the game yet
+            for (int j = first; j < i; j++)
+                this.items.add(new Item(level, highscores.get(j)));
+        }
+        this.adapter.notifyDataSetChanged();
+    }
 
-            if (level == 0) {
-                final TableLayout table_highscores = findViewById(R.id.table_highscores);
-                final TableRow tableRow = (TableRow) getLayoutInflater().inflate(R.layout.tablerow_header, null);
-                TextView text;
+    /**
+     * Entry of the list. Either the header of a level or a highscore of the level
+     * @since 1.1
+     */
+    private static final class Item {
+        final int level; //level of the section
+        final Highscore highscore; //null for a header and for the "-" row
 
-                //Game beat
-                text = tableRow.findViewById(R.id.aaah);
-                text.setText(R.string.game_beat);
+        Item(int level, Highscore highscore) {
+            this.level = level;
+            this.highscore = highscore;
+        }
+    }
 
-                //Deaths
-                text = tableRow.findViewById(R.id.bbbh);
-                text.setText(R.string.deaths_total);
+    /**
+     * Creates the rows of the list from the items. Rows that are scrolled out are reused for rows of the same type
+     * @since 1.1
+     */
+    private class HighscoreAdapter extends BaseAdapter {
+        private static final int TYPE_HEADER = 0;
+        private static final int TYPE_HIGHSCORE = 1;
 
-                //Player
-                text = tableRow.findViewById(R.id.ccch);
-                text.setText(R.string.player);
+        @Override
+        public int getCount() {
+            return items.size();
+        }
 
-                table_highscores.addView(tableRow);
+        @Override
+        public Object getItem(int position) {
+            return items.get(position);
+        }
 
-                if (filtered.isEmpty()) {
-                    final TableRow minusRow = (TableRow) getLayoutInflater().inflate(R.layout.tablerow_highscore, null);
-                    TextView minusText;
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
 
-                    //Level
-                    minusText = minusRow.findViewById(R.id.aaa);
-                    minusText.setText("-");
+        @Override
+        public int getViewTypeCount() {
+            return 2;
+        }
 
-                    //Deaths
-                    minusText = minusRow.findViewById(R.id.bbb);
-                    minusText.setText("-");
+        @Override
+        public int getItemViewType(int position) {
+            return isHeader(position) ? TYPE_HEADER : TYPE_HIGHSCORE;
+        }
 
-                    //Name
-                    minusText = minusRow.findViewById(R.id.ccc);
-                    minusText.setText("-");
+        @Override
+        public boolean isEnabled(int position) {
+            return false;
+        }
 
-                    table_highscores.addView(minusRow);
-                }
+        /**
+         * Returns whether an item is the header of its level (the first item of the section)
+         * @since 1.1
+         */
+        private boolean isHeader(int position) {
+            return position == 0 || items.get(position - 1).level != items.get(position).level;
+        }
 
-            } else if (level > 0 && !filtered.isEmpty()) {
-                final TableLayout table_highscores = findViewById(R.id.table_highscores);
-                final TableRow tableRow = (TableRow) getLayoutInflater().inflate(R.layout.tablerow_header, null);
-                tableRow.setPadding(0, 50, 0, 0);
-                TextView text;
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            Item item = items.get(position);
+            TextView text;
+            if (isHeader(position)) {
+                View tableRow = convertView != null ? convertView : getLayoutInflater().inflate(R.layout.tablerow_header, parent, false);
+                if (item.level == 0) {
+                    //Game beat
+                    text = tableRow.findViewById(R.id.aaah);
+                    text.setText(R.string.game_beat);
 
-                //Level
-                text = tableRow.findViewById(R.id.aaah);
-                text.setText("Level");
+                    //Deaths
+                    text = tableRow.findViewById(R.id.bbbh);
+                    text.setText(R.string.deaths_total);
+                    tableRow.setPadding(0, 0, 0, 0);
+                } else {
+                    //Level
+                    text = tableRow.findViewById(R.id.aaah);
+                    text.setText("Level");
 
-                //Deaths
-                text = tableRow.findViewById(R.id.bbbh);
-                text.setText(R.string.deaths_level);
+                    //Deaths
+                    text = tableRow.findViewById(R.id.bbbh);
+                    text.setText(R.string.deaths_level);
+                    tableRow.setPadding(0, 50, 0, 0);
+                }
 
                 //Player
                 text = tableRow.findViewById(R.id.ccch);
                 text.setText(R.string.player);
-
-                table_highscores.addView(tableRow);
+                return tableRow;
             }
 
-            for (int i = 0, num_scores = Math.min(5, filtered.size()); i < num_scores; i++) {
-                final TableLayout table_highscores = findViewById(R.id.table_highscores);
-                final TableRow tableRow = (TableRow) getLayoutInflater().inflate(R.layout.tablerow_highscore, null);
-                TextView text;
-
-                if(level > 0) {
-                    //Level
-                    text = tableRow.findViewById(R.id.aaa);
-                    text.setText("Level " + filtered.get(i).level);
-                } else {
-                    text = tableRow.findViewById(R.id.aaa);
-                    text.setText("Ja");
-                }
-
-                //Deaths
-                text = tableRow.findViewById(R.id.bbb);
-                text.setText("" + filtered.get(i).deaths);
-
-                //Name
-                text = tableRow.findViewById(R.id.ccc);
-                text.setText(filtered.get(i).name);
-
-                table_highscores.addView(tableRow);
-            }
+            View tableRow = convertView != null ? convertView : getLayoutInflater().inflate(R.layout.tablerow_highscore, parent, false);
+            Highscore highscore = item.highscore;
+
+            //Level
+            text = tableRow.findViewById(R.id.aaa);
+            if (highscore == null)
+                text.setText("-");
+            else if (item.level > 0)
+                text.setText("Level " + highscore.level);
+            else
+                text.setText("Ja");
+
+            //Deaths
+            text = tableRow.findViewById(R.id.bbb);
+            text.setText(highscore == null ? "-" : "" + highscore.deaths);
+
+            //Name
+            text = tableRow.findViewById(R.id.ccc);
+            text.setText(highscore == null ? "-" : highscore.name);
+            return tableRow;
         }
     }
-
-    /**
-     * Loads the highscores from the database
-     *
-     * @return Highscores List
-     * @since 1.0
-     */
-    private List<Highscore> loadHighscores() {
-        List<Highscore> highscores = EscapeDatabase.getInstance(this).highscoreDao().getHighscores();
-        return highscores;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * This class draws a histogram as bars of the same width. The highest bar fills the height of the view
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class HistogramView extends View {
+
+    private final Paint bar_paint = new Paint(); //paint for the bars
+    private int[] counts = new int[0]; //height of the bars
+
+    public HistogramView(Context context) {
+        super(context);
+        this.bar_paint.setColor(context.getResources().getColor(R.color.orange));
+    }
+
+    public HistogramView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        this.bar_paint.setColor(context.getResources().getColor(R.color.orange));
+    }
+
+    public HistogramView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        this.bar_paint.setColor(context.getResources().getColor(R.color.orange));
+    }
+
+    /**
+     * Sets the bars and draws them again
+     * @param counts Height of the bars from left to right
+     * @since 1.1
+     */
+    public void setCounts(int[] counts) {
+        this.counts = counts;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int max = 0;
+        for (int count : this.counts)
+            max = Math.max(max, count);
+        if (max == 0)
+            return;
+        float width = (float) getWidth() / this.counts.length;
+        float gap = width / 8;
+        for (int i = 0; i < this.counts.length; i++) {
+            float top = getHeight() * (1 - (float) this.counts[i] / max);
+            canvas.drawRect(i * width + gap, top, (i + 1) * width - gap, getHeight(), this.bar_paint);
+        }
+    }
+}
@@ -10,6 +10,8 @@ import android.widget.TextView;
 
 import androidx.core.content.res.ResourcesCompat;
 
+import at.ac.tuwien.mmue_sb10.persistence.HighscoreRepository;
+
 /**
  * This class handles the intro video with skip function
  * @since 1.0
@@ -25,6 +27,7 @@ public class IntroActivity extends Activity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_intro);
+        HighscoreRepository.getInstance(this); //starts loading the highscores while the intro is playing
     }
 
     @Override
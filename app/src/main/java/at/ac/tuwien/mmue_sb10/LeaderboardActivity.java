@@ -0,0 +1,221 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
+import at.ac.tuwien.mmue_sb10.persistence.Run;
+import at.ac.tuwien.mmue_sb10.simulation.RunTimer;
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class handles the time attack leaderboard. The runs of a level are loaded page by page while the list is scrolled,
+ * so opening the leaderboard takes the same time however many runs have been stored
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class LeaderboardActivity extends Activity {
+
+    private static final int PAGE_SIZE = 50; //runs per query
+    private static final int PREFETCH = 10; //the next page is loaded when a row this close to the end is shown
+
+    private final ArrayList<Run> runs = new ArrayList<>(); //loaded runs of the current level in the order of the leaderboard
+    private RunAdapter adapter; //shows the loaded runs in the list
+    private int level; //level of the leaderboard
+    private int query; //incremented when the level changes, so pages of the previous level are dropped
+    private boolean loading; //a page is being loaded
+    private boolean complete; //all runs of the level have been loaded
+    private TextView level_label; //name of the level
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_leaderboard);
+
+        TextView text;
+        text = findViewById(R.id.aaah);
+        text.setText(R.string.time);
+        text = findViewById(R.id.bbbh);
+        text.setText(R.string.deaths_level);
+        text = findViewById(R.id.ccch);
+        text.setText(R.string.player);
+
+        this.level_label = findViewById(R.id.level_label);
+        this.adapter = new RunAdapter();
+        ListView list = findViewById(R.id.list_runs);
+        list.setAdapter(this.adapter);
+        list.setEmptyView(findViewById(R.id.empty_label));
+        this.level = 1;
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        View decorView = getWindow().getDecorView();
+        int uiOptions = View.SYSTEM_UI_FLAG_HIDE_NAVIGATION
+                | View.SYSTEM_UI_FLAG_FULLSCREEN;
+        decorView.setSystemUiVisibility(uiOptions);
+
+        showLevel(this.level);
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        DisplayMetrics dm = new DisplayMetrics();
+        ((WindowManager) getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRealMetrics(dm);
+        float aspect_rounded = Math.round((float) dm.widthPixels / dm.heightPixels * 10) / 10f;
+        if (aspect_rounded == Math.round(16f / 9 * 10) / 10f) {
+            overridePendingTransition(R.anim.shrink_main_activity_wide, R.anim.fade_out_activity);
+        } else {
+            overridePendingTransition(R.anim.shrink_main_activity_xwide, R.anim.fade_out_activity);
+        }
+    }
+
+    @Override
+    public void onBackPressed() {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+
+    /**
+     * When BackButton is clicked.
+     * @param v BackButton View that has been clicked
+     * @since 1.1
+     */
+    public void onClickBack(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+
+    /**
+     * When the previous level button is clicked. Shows the leaderboard of the previous level
+     * @param v Button View that has been clicked
+     * @since 1.1
+     */
+    public void onClickPreviousLevel(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        showLevel(this.level > 1 ? this.level - 1 : HighscoreActivity.TOTAL_LEVELS);
+    }
+
+    /**
+     * When the next level button is clicked. Shows the leaderboard of the next level
+     * @param v Button View that has been clicked
+     * @since 1.1
+     */
+    public void onClickNextLevel(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        showLevel(this.level < HighscoreActivity.TOTAL_LEVELS ? this.level + 1 : 1);
+    }
+
+    /**
+     * Drops the loaded runs and loads the first page of a level
+     * @param level Level to show
+     * @since 1.1
+     */
+    private void showLevel(int level) {
+        this.level = level;
+        this.level_label.setText(level + " - " + getResources().getString(getResources().getIdentifier("stage" + level, "string", getPackageName())));
+        this.query++;
+        this.runs.clear();
+        this.complete = false;
+        this.loading = false;
+        this.adapter.notifyDataSetChanged();
+        loadPage();
+    }
+
+    /**
+     * Loads the page after the last loaded run on the background thread
+     * @since 1.1
+     */
+    private void loadPage() {
+        if (this.loading || this.complete)
+            return;
+        this.loading = true;
+        int query = this.query;
+        int level = this.level;
+        Run last = this.runs.isEmpty() ? null : this.runs.get(this.runs.size() - 1);
+        Concurrency.executeAsync("LeaderboardActivity.loadPage", () -> {
+            List<Run> page = last == null
+                    ? EscapeDatabase.getInstance(this).runDao().getFastestRuns(level, PAGE_SIZE)
+                    : EscapeDatabase.getInstance(this).runDao().getRunsAfter(level, last.ticks, last.id, PAGE_SIZE);
+            runOnUiThread(() -> onPageLoaded(query, page));
+        });
+    }
+
+    /**
+     * When a page has been loaded from the db. Appends it to the list
+     * @param query Value of query when the page was requested
+     * @param page Runs that have been loaded
+     * @since 1.1
+     */
+    private void onPageLoaded(int query, List<Run> page) {
+        if (query != this.query)
+            return; //level has changed in the meantime
+        this.loading = false;
+        this.complete = page.size() < PAGE_SIZE;
+        this.runs.addAll(page);
+        this.adapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Creates the rows of the list from the loaded runs. Rows that are scrolled out are reused
+     * @since 1.1
+     */
+    private class RunAdapter extends BaseAdapter {
+        private final char[] time_chars = new char[16]; //formatted time of a run
+
+        @Override
+        public int getCount() {
+            return runs.size();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return runs.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return runs.get(position).id;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            if (position >= runs.size() - PREFETCH)
+                loadPage();
+
+            View row = convertView;
+            if (row == null)
+                row = getLayoutInflater().inflate(R.layout.tablerow_highscore, parent, false);
+            Run run = runs.get(position);
+            TextView text;
+
+            //Rank and time
+            text = row.findViewById(R.id.aaa);
+            int length = RunTimer.format(run.ticks, this.time_chars, 0);
+            text.setText((position + 1) + ". " + new String(this.time_chars, 0, length));
+
+            //Deaths
+            text = row.findViewById(R.id.bbb);
+            text.setText("" + run.deaths);
+
+            //Name
+            text = row.findViewById(R.id.ccc);
+            text.setText(run.name);
+            return row;
+        }
+    }
+}
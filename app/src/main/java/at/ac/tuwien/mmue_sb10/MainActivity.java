@@ -10,6 +10,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
 import android.util.DisplayMetrics;
 import android.view.View;
 import android.view.WindowManager;
@@ -18,15 +19,13 @@ import android.widget.TextView;
 import androidx.core.app.ActivityOptionsCompat;
 import androidx.core.content.res.ResourcesCompat;
 
-import java.util.List;
-
 import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
 import at.ac.tuwien.mmue_sb10.persistence.OnUserLoadedListener;
 import at.ac.tuwien.mmue_sb10.persistence.User;
 import at.ac.tuwien.mmue_sb10.util.Concurrency;
 
 /**
- * This class handles the main menu of the game (where you can chose between New Game, Continue, Highscores and Exit)
+ * This class handles the main menu of the game (where you can chose between New Game, Continue, Profiles, Highscores and Exit)
  * @since 0.1
  * @author Lukas Lidauer & Jan König
  */
@@ -37,6 +36,7 @@ public class MainActivity extends Activity {
     private final OnUserLoadedListener onUserLoadedListener = this::onUserLoaded;
 
     public static boolean show_thanks = false;
+    private static boolean compacted = false; //the database has been compacted since the app was started
 
     private User user;
     private TextView mmenu_text;
@@ -78,10 +78,25 @@ public class MainActivity extends Activity {
 
         EscapeSoundManager.getInstance(this).lock();
 
-        Concurrency.executeAsync(() -> {
+        Concurrency.executeAsync("MainActivity.loadUser", () -> {
             User user = loadUser();
             runOnUiThread(() -> onUserLoadedListener.onUserLoaded(user));
         });
+        compactWhenIdle();
+    }
+
+    /**
+     * Compacts the database once per start of the app, as soon as the main menu has nothing else to do (see EscapeDatabase.compact)
+     * @since 1.1
+     */
+    private void compactWhenIdle() {
+        if (compacted)
+            return;
+        compacted = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            Concurrency.executeAsync("MainActivity.compact", () -> EscapeDatabase.getInstance(this).compact());
+            return false; //only once
+        });
     }
 
     @Override
@@ -112,7 +127,6 @@ public class MainActivity extends Activity {
             bundle = ActivityOptionsCompat.makeCustomAnimation(this, R.anim.fade_in_activity, R.anim.enlarge_main_activity_xwide).toBundle();
         }
         Intent intent = new Intent(this, SubNewActivity.class);
-        intent.putExtra("user", user);
         startActivity(intent, bundle);
     }
 
@@ -183,6 +197,31 @@ public class MainActivity extends Activity {
         startActivity(intent, bundle);
     }
 
+    /**
+     * When Profiles Button has been clicked goes to ProfilesActivity
+     * @param v ProfilesButton View that has been clicked
+     * @since 1.1
+     */
+    public void onClickProfiles(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+
+        show_thanks = false;
+
+        mmenu_text.setText(R.string.profiles);
+        mmenu_text.setBackgroundColor(getResources().getColor(R.color.green));
+        DisplayMetrics dm = new DisplayMetrics();
+        ((WindowManager)getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRealMetrics(dm);
+        float aspect_rounded = Math.round((float)dm.widthPixels / dm.heightPixels * 10) / 10f;
+        Bundle bundle;
+        if (aspect_rounded == Math.round(16f/9 * 10) / 10f) {
+            bundle = ActivityOptionsCompat.makeCustomAnimation(this, R.anim.fade_in_activity, R.anim.enlarge_main_activity_wide).toBundle();
+        } else {
+            bundle = ActivityOptionsCompat.makeCustomAnimation(this, R.anim.fade_in_activity, R.anim.enlarge_main_activity_xwide).toBundle();
+        }
+        Intent intent = new Intent(this, ProfilesActivity.class);
+        startActivity(intent, bundle);
+    }
+
     /**
      * Closes the software.
      * @param v the view as used by this method
@@ -197,8 +236,8 @@ public class MainActivity extends Activity {
     }
 
     /**
-     * Callback when all users (in this case only one) have been loaded from the db
-     * @param user User that has been loaded from the db
+     * Callback when the active profile has been loaded from the db
+     * @param user User that has been loaded from the db or null if there is no active profile
      * @since 1.0
      */
     private void onUserLoaded(User user) {
@@ -215,17 +254,11 @@ public class MainActivity extends Activity {
     }
 
     /**
-     * Loads the current user from the database
+     * Loads the active profile from the database
      * @return User or null, if it does not exist
      * @since 1.0
      */
     private User loadUser() {
-        List<User> users = EscapeDatabase.getInstance(this).userDao().selectAllUsers();
-        User user;
-        if (users.size() > 0)
-            user = users.get(0);
-        else
-            user = null;
-        return user;
+        return EscapeDatabase.getInstance(this).userDao().getActiveUser();
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * This class handles the result screen at the end of a marathon. It shows the deaths and the play time of all stages
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class MarathonResultActivity extends Activity {
+
+    private boolean touched; //the screen has been tapped and is about to close
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_marathon_result);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        this.touched = false;
+
+        View decorView = getWindow().getDecorView();
+        int uiOptions = View.SYSTEM_UI_FLAG_HIDE_NAVIGATION
+                | View.SYSTEM_UI_FLAG_FULLSCREEN;
+        decorView.setSystemUiVisibility(uiOptions);
+
+        findViewById(R.id.marathon_tap_label).startAnimation(AnimationUtils.loadAnimation(this, R.anim.endless_fade));
+
+        int deaths = getIntent().getIntExtra("marathon_deaths", 0);
+        long tenths = getIntent().getLongExtra("marathon_time", 0) / 100;
+        ((TextView) findViewById(R.id.marathon_deaths_label)).setText("" + deaths);
+        ((TextView) findViewById(R.id.marathon_time_label)).setText(String.format(Locale.ROOT, "%d:%02d.%d",
+                tenths / 600, tenths / 10 % 60, tenths % 10));
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        endResultScreen();
+        return super.onTouchEvent(event);
+    }
+
+    @Override
+    public void onBackPressed() {
+        endResultScreen();
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
+    }
+
+    /**
+     * Ends the result screen and returns to the main menu. Since onTouchEvent is used, a boolean value makes sure to only fire this once
+     * @since 1.1
+     */
+    private void endResultScreen() {
+        if (this.touched) //only play touch event once
+            return;
+        this.touched = true;
+
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Developer overlay that shows frame times, garbage collections and memory usage while playing.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.os.Debug;
+
+/**
+ * This class collects the frame times of the game loop and draws them together with the garbage collections since the stage started,
+ * the Java heap, the native heap (bitmaps) and the tiles the camera shows. Everything is allocated up front, so drawing the overlay does not
+ * allocate. The garbage collections are counted by watching the used Java heap: every time it shrinks, a collection has happened
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class PerformanceOverlay {
+    private static final int SAMPLES = 120; //frames shown in the sparklines
+    private static final float GRAPH_MAX_MS = 33.3f; //frame time at the top of the sparklines (two frames at 60 fps)
+    private static final float BUDGET_MS = 16.67f; //frame budget at 60 fps, drawn as a line
+    private static final float FPS_SMOOTHING = 0.05f; //weight of the newest frame in the fps average
+    private static final long MB = 1024 * 1024;
+
+    /*
+     * MEASUREMENTS
+     */
+    private final float[] update_ms; //ring buffer of update times
+    private final float[] draw_ms; //ring buffer of draw times
+    private int head; //index of the next sample
+    private int count; //number of valid samples
+    private float fps; //smoothed frames per second
+    private long last_heap_used; //used Java heap at the last frame
+    private int gc_count; //garbage collections since reset
+    private int cam_left, cam_top, cam_right, cam_bottom; //visible tiles
+
+    /*
+     * DRAW
+     */
+    private final float density; //density of the screen
+    private final GlyphAtlas atlas; //labels and digits of the overlay
+    private final int font; //digits of the values
+    private final int label_fps, label_update, label_draw, label_gc, label_heap, label_native, label_cam_x, label_cam_y;
+    private final char[] chars; //reused buffer to format the values
+    private final float[] lines; //reused points for drawLines
+    private final RectF panel; //background of the overlay
+    private final Paint panel_paint;
+    private final Paint update_paint;
+    private final Paint draw_paint;
+    private final Paint budget_paint;
+    private final float line_height;
+    private final float graph_height;
+
+    /**
+     * Creates a new PerformanceOverlay and renders its labels
+     *
+     * @param density Pixel density of the screen
+     * @since 1.1
+     */
+    public PerformanceOverlay(float density) {
+        this.density = density;
+        this.update_ms = new float[SAMPLES];
+        this.draw_ms = new float[SAMPLES];
+        this.chars = new char[2 * GlyphAtlas.MAX_NUMBER_CHARS + 1]; //two numbers and a separator, see drawRange
+        this.lines = new float[(SAMPLES - 1) * 4];
+        this.panel = new RectF();
+
+        Paint text_paint = new Paint();
+        text_paint.setColor(Color.WHITE);
+        text_paint.setAntiAlias(true);
+        text_paint.setTypeface(Typeface.MONOSPACE);
+        text_paint.setTextSize(11 * density);
+        this.line_height = 14 * density;
+        this.graph_height = 40 * density;
+
+        this.atlas = new GlyphAtlas();
+        this.font = this.atlas.addFont(text_paint);
+        this.label_fps = this.atlas.addLabel("FPS", text_paint, 0);
+        this.label_update = this.atlas.addLabel("UPD ms", text_paint, 0);
+        this.label_draw = this.atlas.addLabel("DRW ms", text_paint, 0);
+        this.label_gc = this.atlas.addLabel("GC", text_paint, 0);
+        this.label_heap = this.atlas.addLabel("HEAP MB", text_paint, 0);
+        this.label_native = this.atlas.addLabel("NATIVE MB", text_paint, 0);
+        this.label_cam_x = this.atlas.addLabel("CAM X", text_paint, 0);
+        this.label_cam_y = this.atlas.addLabel("CAM Y", text_paint, 0);
+        this.atlas.build();
+
+        this.panel_paint = new Paint();
+        this.panel_paint.setColor(Color.argb(160, 0, 0, 0));
+
+        this.update_paint = new Paint();
+        this.update_paint.setColor(Color.CYAN);
+        this.update_paint.setStrokeWidth(density);
+
+        this.draw_paint = new Paint();
+        this.draw_paint.setColor(Color.MAGENTA);
+        this.draw_paint.setStrokeWidth(density);
+
+        this.budget_paint = new Paint();
+        this.budget_paint.setColor(Color.RED);
+        this.budget_paint.setStrokeWidth(density);
+    }
+
+    /**
+     * Starts counting the garbage collections from zero. Called when a stage starts
+     * @since 1.1
+     */
+    public void reset() {
+        this.gc_count = 0;
+        this.last_heap_used = heapUsed();
+    }
+
+    /**
+     * Adds the times of a drawn frame
+     *
+     * @param frame_ns  Time in ns since the last drawn frame
+     * @param update_ns Time in ns update took
+     * @param draw_ns   Time in ns draw took
+     * @since 1.1
+     */
+    public void onFrame(long frame_ns, long update_ns, long draw_ns) {
+        this.update_ms[this.head] = update_ns / 1_000_000f;
+        this.draw_ms[this.head] = draw_ns / 1_000_000f;
+        this.head = (this.head + 1) % SAMPLES;
+        if (this.count < SAMPLES)
+            this.count++;
+
+        if (frame_ns > 0) {
+            float current_fps = 1_000_000_000f / frame_ns;
+            this.fps = this.fps == 0 ? current_fps : this.fps + (current_fps - this.fps) * FPS_SMOOTHING;
+        }
+
+        long heap_used = heapUsed();
+        if (heap_used < this.last_heap_used)
+            this.gc_count++;
+        this.last_heap_used = heap_used;
+    }
+
+    /**
+     * Sets the tiles the camera shows
+     *
+     * @param left   First visible tile column
+     * @param top    First visible tile row
+     * @param right  Last visible tile column
+     * @param bottom Last visible tile row
+     * @since 1.1
+     */
+    public void setCamera(int left, int top, int right, int bottom) {
+        this.cam_left = left;
+        this.cam_top = top;
+        this.cam_right = right;
+        this.cam_bottom = bottom;
+    }
+
+    /**
+     * Draws the overlay with its top right corner at the given position
+     *
+     * @param c     Canvas to draw the overlay onto
+     * @param right Position X of the right edge
+     * @param top   Position Y of the top edge
+     * @since 1.1
+     */
+    public void draw(Canvas c, float right, float top) {
+        float padding = 6 * this.density;
+        float width = 150 * this.density;
+        float value_x = right - width + 80 * this.density;
+        this.panel.set(right - width, top, right, top + 8 * this.line_height + this.graph_height + 3 * padding);
+        c.drawRect(this.panel, this.panel_paint);
+
+        float x = this.panel.left + padding;
+        float y = top + padding + this.line_height * 0.8f;
+        Runtime runtime = Runtime.getRuntime();
+
+        this.atlas.drawLabel(c, this.label_fps, x, y);
+        this.atlas.drawNumber(c, this.font, Math.round(this.fps), value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_update, x, y);
+        drawTenths(c, latest(this.update_ms), value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_draw, x, y);
+        drawTenths(c, latest(this.draw_ms), value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_gc, x, y);
+        this.atlas.drawNumber(c, this.font, this.gc_count, value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_heap, x, y);
+        drawRange(c, (runtime.totalMemory() - runtime.freeMemory()) / MB, runtime.maxMemory() / MB, ':', value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_native, x, y);
+        this.atlas.drawNumber(c, this.font, Debug.getNativeHeapAllocatedSize() / MB, value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_cam_x, x, y);
+        drawRange(c, this.cam_left, this.cam_right, '-', value_x, y);
+        y += this.line_height;
+        this.atlas.drawLabel(c, this.label_cam_y, x, y);
+        drawRange(c, this.cam_top, this.cam_bottom, '-', value_x, y);
+
+        float graph_bottom = this.panel.bottom - padding;
+        float graph_width = width - 2 * padding;
+        float budget_y = graph_bottom - BUDGET_MS / GRAPH_MAX_MS * this.graph_height;
+        c.drawLine(x, budget_y, x + graph_width, budget_y, this.budget_paint);
+        drawSparkline(c, this.update_ms, x, graph_bottom, graph_width, this.update_paint);
+        drawSparkline(c, this.draw_ms, x, graph_bottom, graph_width, this.draw_paint);
+    }
+
+    /**
+     * Draws the samples of a ring buffer as connected lines, oldest sample on the left
+     * @since 1.1
+     */
+    private void drawSparkline(Canvas c, float[] samples, float left, float bottom, float width, Paint paint) {
+        if (this.count < 2)
+            return;
+        float step = width / (SAMPLES - 1);
+        int oldest = (this.head - this.count + SAMPLES) % SAMPLES;
+        for (int i = 0; i < this.count - 1; i++) {
+            float from = Math.min(samples[(oldest + i) % SAMPLES], GRAPH_MAX_MS);
+            float to = Math.min(samples[(oldest + i + 1) % SAMPLES], GRAPH_MAX_MS);
+            this.lines[i * 4] = left + i * step;
+            this.lines[i * 4 + 1] = bottom - from / GRAPH_MAX_MS * this.graph_height;
+            this.lines[i * 4 + 2] = left + (i + 1) * step;
+            this.lines[i * 4 + 3] = bottom - to / GRAPH_MAX_MS * this.graph_height;
+        }
+        c.drawLines(this.lines, 0, (this.count - 1) * 4, paint);
+    }
+
+    /**
+     * Draws a number with one decimal place
+     * @since 1.1
+     */
+    private void drawTenths(Canvas c, float value, float x, float y) {
+        long tenths = Math.round(value * 10);
+        int length = GlyphAtlas.formatNumber(tenths / 10, this.chars, 0);
+        this.chars[length++] = '.';
+        this.chars[length++] = (char) ('0' + tenths % 10);
+        this.atlas.drawChars(c, this.font, this.chars, length, x, y);
+    }
+
+    /**
+     * Draws two numbers with a separator in between
+     * @since 1.1
+     */
+    private void drawRange(Canvas c, long from, long to, char separator, float x, float y) {
+        int length = GlyphAtlas.formatNumber(from, this.chars, 0);
+        this.chars[length++] = separator;
+        length += GlyphAtlas.formatNumber(to, this.chars, length);
+        this.atlas.drawChars(c, this.font, this.chars, length, x, y);
+    }
+
+    /**
+     * Returns the newest sample of a ring buffer
+     * @since 1.1
+     */
+    private float latest(float[] samples) {
+        return this.count == 0 ? 0 : samples[(this.head - 1 + SAMPLES) % SAMPLES];
+    }
+
+    /**
+     * Returns the used Java heap in bytes
+     * @since 1.1
+     */
+    private static long heapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,176 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.ac.tuwien.mmue_sb10.persistence.ActiveProfile;
+import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
+import at.ac.tuwien.mmue_sb10.persistence.User;
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class handles the profile screen. It lists all save profiles and makes the clicked one the active profile, which is
+ * continued from the main menu. The profiles are only loaded here, everywhere else only the active profile is read
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class ProfilesActivity extends Activity {
+
+    private final ArrayList<User> users = new ArrayList<>(); //all profiles ordered by name
+    private ProfileAdapter adapter; //shows the profiles in the list
+    private int active_id = -1; //id of the active profile. -1 if there is none
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_profiles);
+
+        TextView text;
+        text = findViewById(R.id.aaah);
+        text.setText(R.string.player);
+        text = findViewById(R.id.bbbh);
+        text.setText(R.string.level);
+        text = findViewById(R.id.ccch);
+        text.setText(R.string.deaths_total);
+
+        this.adapter = new ProfileAdapter();
+        ListView list = findViewById(R.id.list_profiles);
+        list.setAdapter(this.adapter);
+        list.setEmptyView(findViewById(R.id.empty_label));
+        list.setOnItemClickListener(this::onProfileClicked);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        View decorView = getWindow().getDecorView();
+        int uiOptions = View.SYSTEM_UI_FLAG_HIDE_NAVIGATION
+                | View.SYSTEM_UI_FLAG_FULLSCREEN;
+        decorView.setSystemUiVisibility(uiOptions);
+
+        Concurrency.executeAsync("ProfilesActivity.loadUsers", () -> {
+            List<User> users = EscapeDatabase.getInstance(this).userDao().selectAllUsers();
+            User active = EscapeDatabase.getInstance(this).userDao().getActiveUser();
+            runOnUiThread(() -> onUsersLoaded(users, active));
+        });
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        DisplayMetrics dm = new DisplayMetrics();
+        ((WindowManager) getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRealMetrics(dm);
+        float aspect_rounded = Math.round((float) dm.widthPixels / dm.heightPixels * 10) / 10f;
+        if (aspect_rounded == Math.round(16f / 9 * 10) / 10f) {
+            overridePendingTransition(R.anim.shrink_main_activity_wide, R.anim.fade_out_activity);
+        } else {
+            overridePendingTransition(R.anim.shrink_main_activity_xwide, R.anim.fade_out_activity);
+        }
+    }
+
+    @Override
+    public void onBackPressed() {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+
+    /**
+     * When BackButton is clicked.
+     * @param v BackButton View that has been clicked
+     * @since 1.1
+     */
+    public void onClickBack(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+
+    /**
+     * When the profiles have been loaded from the db
+     * @param users All profiles ordered by name
+     * @param active Active profile or null if there is none
+     * @since 1.1
+     */
+    private void onUsersLoaded(List<User> users, User active) {
+        this.users.clear();
+        this.users.addAll(users);
+        this.active_id = active == null ? -1 : active.id;
+        this.adapter.notifyDataSetChanged();
+    }
+
+    /**
+     * When a profile in the list is clicked. Makes it the active profile and goes back to the main menu
+     * @since 1.1
+     */
+    private void onProfileClicked(AdapterView<?> parent, View view, int position, long id) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        ActiveProfile profile = new ActiveProfile(this.users.get(position).id);
+        Concurrency.executeAsync("ProfilesActivity.setActiveProfile", () -> EscapeDatabase.getInstance(this).userDao().setActiveProfile(profile));
+        finish();
+    }
+
+    /**
+     * Creates the rows of the list from the loaded profiles
+     * @since 1.1
+     */
+    private class ProfileAdapter extends BaseAdapter {
+
+        @Override
+        public int getCount() {
+            return users.size();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return users.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return users.get(position).id;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View row = convertView;
+            if (row == null)
+                row = getLayoutInflater().inflate(R.layout.tablerow_highscore, parent, false);
+            User user = users.get(position);
+            int color = getResources().getColor(user.id == active_id ? R.color.orange : R.color.white);
+            TextView text;
+
+            //Name
+            text = row.findViewById(R.id.aaa);
+            text.setText(user.name);
+            text.setTextColor(color);
+
+            //Level
+            text = row.findViewById(R.id.bbb);
+            if (user.currentLevel > 0)
+                text.setText("" + user.currentLevel);
+            else if (user.currentLevel == 0)
+                text.setText("1");
+            else
+                text.setText("Tutorial " + (user.currentLevel + 6)); //there are 5 tutorial level and level 0 is unused
+            text.setTextColor(color);
+
+            //Deaths
+            text = row.findViewById(R.id.ccc);
+            text.setText("" + user.deathsTotal);
+            text.setTextColor(color);
+            return row;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Watches the frame times of the render loop and lowers or raises the resolution of the render surface in steps.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+/**
+ * This class decides which resolution the game is rendered at, depending on how much of the frame budget update and draw use up.
+ * The resolution only changes after the frame time stayed over (or under) the budget for a number of frames in a row,
+ * so it does not jump back and forth between two steps
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class ResolutionController {
+    private static final float[] SCALE_STEPS = {1f, 0.85f, 0.7f, 0.55f}; //render scales from full to lowest resolution
+    private static final float DOWNSCALE_LOAD = 0.9f; //share of the frame budget above which the resolution gets lowered
+    private static final float UPSCALE_LOAD = 0.5f; //share of the frame budget below which the resolution gets raised
+    private static final int DOWNSCALE_FRAMES = 45; //frames in a row over budget until the resolution gets lowered
+    private static final int UPSCALE_FRAMES = 240; //frames in a row under budget until the resolution gets raised
+    private static final float SMOOTHING = 0.1f; //weight of the newest frame time in the average
+
+    private final float frame_budget_ns; //time per frame in ns at the refresh rate of the display
+    private float average_frame_ns; //smoothed time update and draw needed per frame
+    private int step; //current index in SCALE_STEPS
+    private int frames_over; //frames in a row over budget
+    private int frames_under; //frames in a row under budget
+
+    /**
+     * Creates a new ResolutionController starting at full resolution
+     *
+     * @param refresh_rate Refresh rate of the display in Hz
+     * @since 1.1
+     */
+    public ResolutionController(float refresh_rate) {
+        this.frame_budget_ns = 1_000_000_000f / (refresh_rate > 0 ? refresh_rate : 60);
+        this.step = 0;
+    }
+
+    /**
+     * Takes the time a frame needed and changes the render scale if the frame budget is permanently missed or permanently undercut
+     *
+     * @param frame_ns Time in ns the update and draw of the last frame took
+     * @return true if the render scale has changed and the surface needs to be resized
+     * @since 1.1
+     */
+    public boolean onFrame(long frame_ns) {
+        if (this.average_frame_ns == 0)
+            this.average_frame_ns = frame_ns;
+        else
+            this.average_frame_ns += (frame_ns - this.average_frame_ns) * SMOOTHING;
+
+        if (this.average_frame_ns > this.frame_budget_ns * DOWNSCALE_LOAD) {
+            this.frames_over++;
+            this.frames_under = 0;
+        } else if (this.average_frame_ns < this.frame_budget_ns * UPSCALE_LOAD) {
+            this.frames_under++;
+            this.frames_over = 0;
+        } else {
+            this.frames_over = 0;
+            this.frames_under = 0;
+        }
+
+        if (this.frames_over >= DOWNSCALE_FRAMES && this.step < SCALE_STEPS.length - 1) {
+            this.step++;
+            reset();
+            return true;
+        } else if (this.frames_under >= UPSCALE_FRAMES && this.step > 0) {
+            this.step--;
+            reset();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current render scale. 1 is full resolution
+     * @since 1.1
+     */
+    public float getScale() {
+        return SCALE_STEPS[this.step];
+    }
+
+    /**
+     * Forgets the measured frame times, so the new resolution is judged by its own frame times only
+     * @since 1.1
+     */
+    private void reset() {
+        this.average_frame_ns = 0;
+        this.frames_over = 0;
+        this.frames_under = 0;
+    }
+}
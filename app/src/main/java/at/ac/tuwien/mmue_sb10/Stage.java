@@ -11,21 +11,31 @@ import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.Rect;
-import android.graphics.RectF;
 import android.graphics.Shader;
+import android.os.Trace;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
+import at.ac.tuwien.mmue_sb10.simulation.ChunkGenerator;
+import at.ac.tuwien.mmue_sb10.simulation.ChunkRing;
+import at.ac.tuwien.mmue_sb10.simulation.StageData;
+import at.ac.tuwien.mmue_sb10.simulation.StageParser;
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
 /**
  * This class handles stages (levels) and their variables
  * @since 0.1
  * @author Lukas Lidauer
  */
 public class Stage {
+    public static final int ENDLESS_CHUNKS = 6; //chunks in the window of the endless mode: 2 behind the player, the current one and 3 ahead
+    private static final int ENDLESS_SHIFT_CHUNK = 3; //the window moves by a chunk when the player enters this chunk
+    private static final float ENDLESS_SCALE = 1.3f; //scale of the endless mode like in the stage files
+
     public String stage_name; //name of the stage
     public int player_start_x, player_start_y; //starting position of player
     public float player_velocity_x; //how far player moves forward
@@ -41,20 +51,59 @@ public class Stage {
     private int stage_width_tiles; //width in tiles
     private int stage_heigth_tiles; //heigth in tiles
     private float density; //density of the display
+    private boolean integer_scale; //stage_scale is rounded to a whole number, so every tile pixel becomes an equally sized block
 
     private Paint background_paint;
+    private Paint checkpoint_paint; //light beam that marks checkpoint tiles
     private Context context; //context of the app to get resources
 
+    /*
+     * ENDLESS MODE
+     */
+    private boolean endless; //stage is generated chunk by chunk instead of being loaded from a file
+    private long endless_seed; //seed of the current run
+    private ChunkRing endless_ring; //window of generated chunks. kept for the next run
+    private Bitmap[] chunk_bitmaps; //baked chunks of the window in the same order. recycled when the window moves
+    private Canvas chunk_canvas; //canvas to bake a chunk
+    private Matrix background_matrix; //offsets the background of a chunk by its position, so the background continues seamlessly
+
+    /*
+     * PRELOADING
+     */
+    private volatile Prepared preloaded; //next stage, prepared in the background. null until it is ready
+
+    /**
+     * Everything of a stage that is created from its file. A stage is prepared completely before it replaces the current one,
+     * so the next stage can be prepared in the background while the current one is played (double buffering)
+     * @since 1.1
+     */
+    private static final class Prepared {
+        int level; //ID of the stage
+        String name; //name of the stage
+        float scale; //scaling of the stage
+        int music_id; //resource id of the bg music
+        Bitmap background; //background (scaled)
+        Bitmap foreground; //stage tiles put together
+        int[][] collision; //tile behaviors
+        int player_start_x, player_start_y; //starting position of player
+        float player_velocity_x; //how far player moves forward
+        int width, height; //size in tiles
+    }
+
     /**
      * Initializes the stage and loads the tileset from resources
      * @param context Context of the app to get resources
      * @param density Density of the display to scale graphics
+     * @param integer_scale Round stage_scale to a whole number before the graphics are scaled
      */
-    public Stage(Context context, float density) {
+    public Stage(Context context, float density, boolean integer_scale) {
         this.context = context;
         this.density = density;
+        this.integer_scale = integer_scale;
         this.background_paint = new Paint();
         this.background_paint.setAntiAlias(true);
+        this.checkpoint_paint = new Paint();
+        this.checkpoint_paint.setColor(Color.argb(140, 80, 255, 160));
         loadTileset();
     }
 
@@ -62,6 +111,7 @@ public class Stage {
      * Loads the tileset from the resources and splits it in 24x24 tiles
      */
     private void loadTileset() {
+        Trace.beginSection("Stage.loadTileset");
         BitmapFactory.Options o = new BitmapFactory.Options();
         o.inScaled = false;
         Bitmap tileset = BitmapFactory.decodeResource(context.getResources(), R.drawable.tileset24, o);
@@ -78,75 +128,301 @@ public class Stage {
                 tilenumber++;
             }
         }
+        Trace.endSection();
     }
 
     /**
      * Loads stage from the assets folder
+     * The file is parsed by the StageParser of the simulation, this method only creates the graphics of the stage
      * @param level ID of the stage to load
      */
     public void load(int level) {
-        Canvas canvas = null; //draws on terrain bitmap
+        Trace.beginSection("Stage.load");
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open("stage" + level + ".txt")));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                switch (line) {
-                    case "#info":
-                        if(level > 0)
-                            this.stage_name = context.getResources().getString(context.getResources().getIdentifier("stage" + level, "string", context.getPackageName()));
-                        else
-                            this.stage_name = context.getResources().getString(context.getResources().getIdentifier("stage_" + Math.abs(level), "string", context.getPackageName()));
-                        line = reader.readLine();
-                        this.stage_scale = this.density * Float.parseFloat(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.current_music_id = context.getResources().getIdentifier(line.split("=")[1], "raw", context.getPackageName());
-                        line = reader.readLine();
-                        BitmapFactory.Options o = new BitmapFactory.Options();
-                        o.inScaled = false;
-                        this.stage_background = BitmapFactory.decodeResource(context.getResources(), context.getResources().getIdentifier(line.split("=")[1], "drawable", context.getPackageName()), o);
-                        this.stage_background = Bitmap.createScaledBitmap(this.stage_background, (int)(this.stage_background.getWidth() * this.stage_scale), (int)(this.stage_background.getHeight() * this.stage_scale), false);
-                        this.background_paint.setShader(new BitmapShader(this.stage_background, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
-                        break;
-                    case "#player":
-                        line = reader.readLine();
-                        this.player_start_x = Integer.parseInt(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.player_start_y = Integer.parseInt(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.player_velocity_x = Float.parseFloat(line.split("=")[1]);
-                        break;
-                    case "#size":
-                        line = reader.readLine();
-                        this.stage_width_tiles = Integer.parseInt(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.stage_heigth_tiles = Integer.parseInt(line.split("=")[1]);
-                        //this.stage_tiles = new int[this.stage_width_tiles][this.stage_heigth_tiles];
-                        this.stage_foreground = Bitmap.createBitmap(stage_width_tiles * 24, stage_heigth_tiles * 24, Bitmap.Config.ARGB_8888);
-                        canvas = new Canvas(this.stage_foreground);
-                        this.stage_collision = new int[stage_width_tiles][stage_heigth_tiles];
-                        break;
-                    case "#tiles":
-                        canvas.drawRect(0, 0, this.stage_foreground.getWidth(), this.stage_foreground.getHeight(), this.background_paint);
-                        for (int y = 0; y < this.stage_heigth_tiles; y++) {
-                            line = reader.readLine();
-                            String[] tilesInLine = line.split(" ");
-                            for (int x = 0; x < tilesInLine.length; x++) {
-                                if (!tilesInLine[x].equals("--")) {
-                                    int tile_id = Integer.parseInt(tilesInLine[x]);
-                                    canvas.drawBitmap(tiles_textures[tile_id], null, new RectF(x * 24, y * 24, x * 24 + 24, y * 24 + 24), null);
-                                    stage_collision[x][y] = tiles_collision[tile_id];
-                                    //this.stage_tiles[x][y] = tile_id;
-                                } /*else {
-                                    this.stage_tiles[x][y] = -1;
-                                }*/
-                            }
-                        }
-                        break;
-                }
-            }
-            reader.close();
+            Prepared prepared = prepare(level);
+            if (prepared != null)
+                apply(prepared);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Prepares a stage on the background thread, so it can replace the current stage later without loading (see swapPreloaded).
+     * A stage that is still being prepared is replaced by the new one
+     * @param level ID of the stage to prepare
+     * @since 1.1
+     */
+    public void preload(int level) {
+        this.preloaded = null;
+        Concurrency.executeAsync("Stage.preload", () -> this.preloaded = prepare(level));
+    }
+
+    /**
+     * Replaces the current stage by the stage that was prepared by preload
+     * @param level ID of the expected stage
+     * @return false if the stage has not been prepared yet. Nothing is changed then
+     * @since 1.1
+     */
+    public boolean swapPreloaded(int level) {
+        Prepared prepared = this.preloaded;
+        if (prepared == null || prepared.level != level)
+            return false;
+        this.preloaded = null;
+        apply(prepared);
+        return true;
+    }
+
+    /**
+     * Parses the stage file and creates the background, the foreground and the collision of the stage.
+     * Only reads the tileset of this class, so it can run on any thread
+     * @param level ID of the stage to load
+     * @return Prepared stage or null if the file could not be read
+     * @since 1.1
+     */
+    private Prepared prepare(int level) {
+        StageData data;
+        Trace.beginSection("Stage.parse");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open("stage" + level + ".txt")))) {
+            data = StageParser.parse(reader);
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
+        } finally {
+            Trace.endSection();
+        }
+
+        Prepared prepared = new Prepared();
+        prepared.level = level;
+        if(level > 0)
+            prepared.name = context.getResources().getString(context.getResources().getIdentifier("stage" + level, "string", context.getPackageName()));
+        else
+            prepared.name = context.getResources().getString(context.getResources().getIdentifier("stage_" + Math.abs(level), "string", context.getPackageName()));
+        prepared.scale = scaleOf(data.scale);
+        prepared.music_id = context.getResources().getIdentifier(data.music, "raw", context.getPackageName());
+        prepared.background = decodeBackground(data.background, prepared.scale);
+
+        prepared.player_start_x = data.player_start_x;
+        prepared.player_start_y = data.player_start_y;
+        prepared.player_velocity_x = data.player_velocity_x;
+
+        prepared.width = data.width;
+        prepared.height = data.height;
+        Trace.beginSection("Stage.bakeForeground");
+        Paint paint = new Paint(); //background_paint belongs to the current stage
+        paint.setShader(new BitmapShader(prepared.background, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+        prepared.foreground = Bitmap.createBitmap(data.width * 24, data.height * 24, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(prepared.foreground); //draws on terrain bitmap
+        canvas.drawRect(0, 0, prepared.foreground.getWidth(), prepared.foreground.getHeight(), paint);
+        bakeTiles(canvas, data.tiles, 0, data.width);
+        Trace.endSection();
+        prepared.collision = data.buildCollision(tiles_collision);
+        return prepared;
+    }
+
+    /**
+     * Makes a prepared stage the current stage
+     * @param prepared Stage to use
+     * @since 1.1
+     */
+    private void apply(Prepared prepared) {
+        this.stage_name = prepared.name;
+        this.stage_scale = prepared.scale;
+        this.current_music_id = prepared.music_id;
+        this.stage_background = prepared.background;
+        this.background_paint.setShader(new BitmapShader(this.stage_background, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+        this.player_start_x = prepared.player_start_x;
+        this.player_start_y = prepared.player_start_y;
+        this.player_velocity_x = prepared.player_velocity_x;
+        this.stage_width_tiles = prepared.width;
+        this.stage_heigth_tiles = prepared.height;
+        this.stage_foreground = prepared.foreground;
+        this.stage_collision = prepared.collision;
+        this.endless = false;
+    }
+
+    /**
+     * Returns the scale of a stage on this display
+     * @param scale Scale from the stage file
+     * @return Scale times density. Rounded to a whole number of at least 1 if integer_scale is set
+     * @since 1.1
+     */
+    private float scaleOf(float scale) {
+        float stage_scale = this.density * scale;
+        return this.integer_scale ? Math.max(1, Math.round(stage_scale)) : stage_scale;
+    }
+
+    /**
+     * Decodes a background and scales it
+     * @param name Name of the drawable resource
+     * @param scale Scale of the stage
+     * @return Scaled background
+     * @since 1.1
+     */
+    private Bitmap decodeBackground(String name, float scale) {
+        Trace.beginSection("Stage.decodeBackground");
+        BitmapFactory.Options o = new BitmapFactory.Options();
+        o.inScaled = false;
+        Bitmap background = BitmapFactory.decodeResource(context.getResources(), context.getResources().getIdentifier(name, "drawable", context.getPackageName()), o);
+        background = Bitmap.createScaledBitmap(background, (int)(background.getWidth() * scale), (int)(background.getHeight() * scale), false);
+        Trace.endSection();
+        return background;
+    }
+
+    /**
+     * Draws the tiles of the columns from (inclusive) to to (exclusive) onto a canvas. Column from is drawn at x = 0
+     * @param canvas Canvas to draw onto
+     * @param tiles Tile ids [x][y]
+     * @param from First column
+     * @param to Column after the last one
+     * @since 1.1
+     */
+    private void bakeTiles(Canvas canvas, int[][] tiles, int from, int to) {
+        for (int x = from; x < to; x++) {
+            int left = (x - from) * 24;
+            for (int y = 0; y < tiles[x].length; y++) {
+                if (tiles[x][y] == StageData.EMPTY_TILE)
+                    continue;
+                if (tiles_collision[tiles[x][y]] == 9)
+                    canvas.drawRect(left + 10, y * 24, left + 14, y * 24 + 24, this.checkpoint_paint); //checkpoints are drawn as beam, so stacked tiles form a gate
+                else
+                    canvas.drawBitmap(tiles_textures[tiles[x][y]], left, y * 24, null);
+            }
+        }
+    }
+
+    /**
+     * Starts a run of the endless mode. Only the chunks of the window are generated and baked, so loading takes the same time for every run.
+     * The bitmaps of the chunks are allocated once and reused by later runs
+     * @param seed Seed of the run
+     * @since 1.1
+     */
+    public void loadEndless(long seed) {
+        Trace.beginSection("Stage.loadEndless");
+        try {
+            this.stage_name = context.getResources().getString(R.string.endless_mode);
+            this.stage_scale = scaleOf(ENDLESS_SCALE);
+            this.current_music_id = R.raw.techno03;
+            this.stage_background = decodeBackground("backdrop_steel_looped", this.stage_scale); //looped backdrop, so the chunks continue seamlessly
+            this.background_paint.setShader(new BitmapShader(this.stage_background, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+
+            this.player_start_x = ChunkGenerator.START_X;
+            this.player_start_y = ChunkGenerator.START_Y;
+            this.player_velocity_x = ChunkGenerator.VELOCITY_X;
+
+            if (this.endless_ring == null) {
+                this.endless_ring = new ChunkRing(ENDLESS_CHUNKS, tiles_collision);
+                this.chunk_bitmaps = new Bitmap[ENDLESS_CHUNKS];
+                for (int i = 0; i < ENDLESS_CHUNKS; i++)
+                    this.chunk_bitmaps[i] = Bitmap.createBitmap(ChunkRing.CHUNK_WIDTH_PX, this.endless_ring.getHeight() * 24, Bitmap.Config.ARGB_8888);
+                this.chunk_canvas = new Canvas();
+                this.background_matrix = new Matrix();
+            }
+            this.stage_width_tiles = this.endless_ring.getWidth();
+            this.stage_heigth_tiles = this.endless_ring.getHeight();
+            this.stage_collision = this.endless_ring.collision;
+            this.stage_foreground = null;
+            this.endless = true;
+            this.endless_seed = seed;
+            restartEndless();
+        } finally {
+            Trace.endSection();
         }
     }
+
+    /**
+     * Generates the first chunks of the current run of the endless mode again
+     * @since 1.1
+     */
+    public void restartEndless() {
+        this.endless_ring.reset(this.endless_seed);
+        for (int slot = 0; slot < ENDLESS_CHUNKS; slot++)
+            bakeChunk(slot);
+    }
+
+    /**
+     * Moves the window of the endless mode by a chunk when the player has entered ENDLESS_SHIFT_CHUNK.
+     * The bitmap of the dropped chunk is reused for the new chunk at the end
+     * @param player_x Position X of the player in px
+     * @return Distance in px the stage has been moved to the left. The caller has to move the player by the same distance. 0 if it has not moved
+     * @since 1.1
+     */
+    public float scroll(float player_x) {
+        if (!this.endless || player_x < ENDLESS_SHIFT_CHUNK * ChunkRing.CHUNK_WIDTH_PX)
+            return 0;
+        Trace.beginSection("Stage.scroll");
+        this.endless_ring.shift();
+        Bitmap recycled = this.chunk_bitmaps[0];
+        System.arraycopy(this.chunk_bitmaps, 1, this.chunk_bitmaps, 0, ENDLESS_CHUNKS - 1);
+        this.chunk_bitmaps[ENDLESS_CHUNKS - 1] = recycled;
+        bakeChunk(ENDLESS_CHUNKS - 1);
+        Trace.endSection();
+        return ChunkRing.CHUNK_WIDTH_PX;
+    }
+
+    /**
+     * Draws the background and the tiles of a chunk of the window into its bitmap
+     * @param slot Position of the chunk in the window
+     * @since 1.1
+     */
+    private void bakeChunk(int slot) {
+        Bitmap bitmap = this.chunk_bitmaps[slot];
+        this.chunk_canvas.setBitmap(bitmap);
+        //background continues where the previous chunk ended
+        long chunk = this.endless_ring.getFirstChunk() + slot;
+        this.background_matrix.setTranslate(-(float) (chunk * ChunkRing.CHUNK_WIDTH_PX % this.stage_background.getWidth()), 0);
+        this.background_paint.getShader().setLocalMatrix(this.background_matrix);
+        this.chunk_canvas.drawRect(0, 0, bitmap.getWidth(), bitmap.getHeight(), this.background_paint);
+        bakeTiles(this.chunk_canvas, this.endless_ring.tiles, slot * ChunkRing.CHUNK_WIDTH, (slot + 1) * ChunkRing.CHUNK_WIDTH);
+        this.chunk_canvas.setBitmap(null);
+    }
+
+    /**
+     * Returns the distance in tiles the player has run in the endless mode
+     * @param player_x Position X of the player in px
+     * @since 1.1
+     */
+    public long getEndlessDistance(float player_x) {
+        return this.endless_ring.getFirstChunk() * ChunkRing.CHUNK_WIDTH + (long) (player_x / 24) - ChunkGenerator.START_X;
+    }
+
+    /**
+     * Draws the baked stage
+     * @param c Canvas to draw onto
+     * @param left Position X of the left edge of the stage on the canvas
+     * @param top Position Y of the top edge of the stage on the canvas
+     * @since 1.1
+     */
+    public void drawForeground(Canvas c, float left, float top) {
+        if (!this.endless) {
+            c.drawBitmap(this.stage_foreground, left, top, null);
+            return;
+        }
+        for (int slot = 0; slot < ENDLESS_CHUNKS; slot++)
+            c.drawBitmap(this.chunk_bitmaps[slot], left + slot * ChunkRing.CHUNK_WIDTH_PX, top, null);
+    }
+
+    /**
+     * Returns the width of the stage in px
+     * @since 1.1
+     */
+    public int getWidth() {
+        return this.stage_width_tiles * 24;
+    }
+
+    /**
+     * Returns the height of the stage in px
+     * @since 1.1
+     */
+    public int getHeight() {
+        return this.stage_heigth_tiles * 24;
+    }
+
+    /**
+     * Returns whether the stage is the endless mode
+     * @since 1.1
+     */
+    public boolean isEndless() {
+        return this.endless;
+    }
 }
@@ -0,0 +1,169 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.TextView;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
+import at.ac.tuwien.mmue_sb10.persistence.Stats;
+import at.ac.tuwien.mmue_sb10.simulation.LevelStats;
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class handles the stats screen of a profile. It shows the attempts, finishes and deaths of every level the profile has
+ * played and the histograms of where and after how long the deaths happened. The aggregates are read as they are stored,
+ * one row per level
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class StatsActivity extends Activity {
+
+    private final ArrayList<Integer> levels = new ArrayList<>(); //levels with stats in the order they are shown
+    private final ArrayList<LevelStats> stats = new ArrayList<>(); //stats of the levels
+    private int index; //index of the shown level
+    private TextView level_label; //name of the level
+    private TextView totals_label; //attempts, finishes and deaths of the level
+    private HistogramView histogram_distance; //deaths per position in the level
+    private HistogramView histogram_time; //deaths per time to death
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        this.level_label = findViewById(R.id.level_label);
+        this.totals_label = findViewById(R.id.totals_label);
+        this.histogram_distance = findViewById(R.id.histogram_distance);
+        this.histogram_time = findViewById(R.id.histogram_time);
+        ((TextView) findViewById(R.id.stats_time_label)).setText(getResources().getString(R.string.stats_time,
+                LevelStats.getTimeLimit(LevelStats.TIME_BUCKETS - 2) / 60_000));
+        showLevel(0);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        View decorView = getWindow().getDecorView();
+        int uiOptions = View.SYSTEM_UI_FLAG_HIDE_NAVIGATION
+                | View.SYSTEM_UI_FLAG_FULLSCREEN;
+        decorView.setSystemUiVisibility(uiOptions);
+
+        String name = getIntent().getStringExtra("name");
+        Concurrency.executeAsync("StatsActivity.loadStats", () -> {
+            List<Stats> stats = EscapeDatabase.getInstance(this).statsDao().getStatsOfUser(name);
+            runOnUiThread(() -> onStatsLoaded(stats));
+        });
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        DisplayMetrics dm = new DisplayMetrics();
+        ((WindowManager) getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRealMetrics(dm);
+        float aspect_rounded = Math.round((float) dm.widthPixels / dm.heightPixels * 10) / 10f;
+        if (aspect_rounded == Math.round(16f / 9 * 10) / 10f) {
+            overridePendingTransition(R.anim.shrink_main_activity_wide, R.anim.fade_out_activity);
+        } else {
+            overridePendingTransition(R.anim.shrink_main_activity_xwide, R.anim.fade_out_activity);
+        }
+    }
+
+    @Override
+    public void onBackPressed() {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+
+    /**
+     * When BackButton is clicked.
+     * @param v BackButton View that has been clicked
+     * @since 1.1
+     */
+    public void onClickBack(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        finish();
+    }
+
+    /**
+     * When the previous level button is clicked. Shows the stats of the previous level
+     * @param v Button View that has been clicked
+     * @since 1.1
+     */
+    public void onClickPreviousLevel(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        if (!this.levels.isEmpty())
+            showLevel((this.index + this.levels.size() - 1) % this.levels.size());
+    }
+
+    /**
+     * When the next level button is clicked. Shows the stats of the next level
+     * @param v Button View that has been clicked
+     * @since 1.1
+     */
+    public void onClickNextLevel(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        if (!this.levels.isEmpty())
+            showLevel((this.index + 1) % this.levels.size());
+    }
+
+    /**
+     * When the stats of the profile have been loaded from the db. Shows the first level
+     * @param rows Stats of all levels the profile has played, ordered by level
+     * @since 1.1
+     */
+    private void onStatsLoaded(List<Stats> rows) {
+        this.levels.clear();
+        this.stats.clear();
+        for (Stats row : rows) {
+            if (row.histograms == null)
+                continue;
+            try {
+                this.stats.add(LevelStats.decode(row.attempts, row.finishes, row.deaths, row.histograms));
+                this.levels.add(row.level);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        showLevel(Math.min(this.index, Math.max(this.levels.size() - 1, 0)));
+    }
+
+    /**
+     * Shows the stats of a level
+     * @param index Index of the level in levels
+     * @since 1.1
+     */
+    private void showLevel(int index) {
+        this.index = index;
+        if (index >= this.levels.size()) {
+            this.level_label.setText("-");
+            this.totals_label.setText("");
+            this.histogram_distance.setCounts(new int[0]);
+            this.histogram_time.setCounts(new int[0]);
+            return;
+        }
+        int level = this.levels.get(index);
+        LevelStats stats = this.stats.get(index);
+        String stage = level < 0 ? "stage_" + (-level) : "stage" + level; //tutorials are stored as negative levels
+        String title = getResources().getString(getResources().getIdentifier(stage, "string", getPackageName()));
+        this.level_label.setText(level < 0 ? title : level + " - " + title);
+        this.totals_label.setText(getResources().getString(R.string.stats_totals, stats.getAttempts(), stats.getFinishes(), stats.getDeaths()));
+
+        int[] distances = new int[LevelStats.DISTANCE_BUCKETS];
+        for (int i = 0; i < distances.length; i++)
+            distances[i] = stats.getDistance(i);
+        this.histogram_distance.setCounts(distances);
+        int[] times = new int[LevelStats.TIME_BUCKETS];
+        for (int i = 0; i < times.length; i++)
+            times[i] = stats.getTime(i);
+        this.histogram_time.setCounts(times);
+    }
+}
@@ -97,4 +97,52 @@ public class SubContinueActivity extends Activity {
         EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
         startActivity(new Intent(this, GameActivity.class));
     }
-}
\ No newline at end of file
+
+    /**
+     * When clicked starts a run of the endless mode with a new seed
+     * @param v the view as used by this method
+     * @since 1.1
+     */
+    public void onClickEndless(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        Intent intent = new Intent(this, GameActivity.class);
+        intent.putExtra("endless_seed", System.nanoTime());
+        startActivity(intent);
+    }
+
+    /**
+     * When clicked starts a marathon through all stages
+     * @param v the view as used by this method
+     * @since 1.1
+     */
+    public void onClickMarathon(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        Intent intent = new Intent(this, GameActivity.class);
+        intent.putExtra("marathon", true);
+        startActivity(intent);
+    }
+
+    /**
+     * When clicked starts the current level of the profile as a race against simulated rivals
+     * @param v the view as used by this method
+     * @since 1.1
+     */
+    public void onClickRace(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        Intent intent = new Intent(this, GameActivity.class);
+        intent.putExtra("race", true);
+        startActivity(intent);
+    }
+
+    /**
+     * When clicked shows the stats of the profile
+     * @param v the view as used by this method
+     * @since 1.1
+     */
+    public void onClickStats(View v) {
+        EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
+        Intent intent = new Intent(this, StatsActivity.class);
+        intent.putExtra("name", user.name);
+        startActivity(intent);
+    }
+}
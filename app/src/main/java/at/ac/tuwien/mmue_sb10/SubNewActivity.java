@@ -16,7 +16,7 @@ import at.ac.tuwien.mmue_sb10.persistence.User;
 import at.ac.tuwien.mmue_sb10.util.Concurrency;
 
 /**
- * This class handles the submenu for starting a new game by deleting the old profile and creating a new one
+ * This class handles the submenu for starting a new game by creating a new profile. A profile with the same name is overwritten
  * @since 1.0
  * @author Lukas Lidauer & Jan König
  */
@@ -36,8 +36,6 @@ public class SubNewActivity extends Activity {
     protected void onResume() {
         super.onResume();
 
-        user = (User)getIntent().getSerializableExtra("user");
-
         checkBox = findViewById(R.id.tutorialCheckbox);
 
         DisplayMetrics dm = new DisplayMetrics();
@@ -103,25 +101,37 @@ public class SubNewActivity extends Activity {
     public void onClickStart(View v) {
         EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
 
-        if(user != null) {
-            newusername = ((EditText)findViewById(R.id.editTextTextPersonName)).getText().toString();
+        newusername = ((EditText)findViewById(R.id.editTextTextPersonName)).getText().toString();
+        Concurrency.executeAsync("SubNewActivity.loadUser", () -> {
+            User user = EscapeDatabase.getInstance(this).userDao().getUserByName(newusername);
+            runOnUiThread(() -> onUserLoaded(user));
+        });
+    }
+
+    /**
+     * Callback when the user with the entered name has been looked up. Asks before overwriting it, otherwise starts the game
+     * @param user User with the same name or null if the name is new
+     * @since 1.1
+     */
+    private void onUserLoaded(User user) {
+        this.user = user;
+        if (user != null) {
             setContentView(R.layout.activity_sub_new_confirm);
         } else {
-            newusername = ((EditText)findViewById(R.id.editTextTextPersonName)).getText().toString();
-            Concurrency.executeAsync(() -> saveUser(new User(newusername, checkBox.isChecked())));
+            Concurrency.executeAsync("SubNewActivity.saveUser", () -> saveUser(new User(newusername, checkBox.isChecked())));
             startActivity(new Intent(this, GameActivity.class));
         }
     }
 
     /**
-     * Starts a new game even if there is already a saved user in the db. Deletes the saved user and creates a new one.
+     * Starts a new game even if there is already a saved user with the same name in the db. Replaces the saved user by a new one.
      * @param v StartConfirmButton View that has been clicked
      * @since 1.0
      */
     public void onClickStartConfirm(View v) {
         EscapeSoundManager.getInstance(this).playSound(EscapeSoundManager.getInstance(this).snd_button);
-        Concurrency.executeAsync(this::deleteUser);
-        Concurrency.executeAsync(() -> saveUser(new User(newusername, checkBox.isChecked())));
+        User old = user;
+        Concurrency.executeAsync("SubNewActivity.replaceUser", () -> replaceUser(old, new User(newusername, checkBox.isChecked())));
         startActivity(new Intent(this, GameActivity.class));
     }
 
@@ -135,19 +145,21 @@ public class SubNewActivity extends Activity {
     }
 
     /**
-     * Saves a new User in the database
+     * Saves a new User in the database and makes it the active profile
      * @param user
      * @since 1.0
      */
     private void saveUser(User user) {
-        EscapeDatabase.getInstance(this).userDao().insert(user);
+        EscapeDatabase.getInstance(this).userDao().insertActive(user);
     }
 
     /**
-     * Deletes the current User from the database
-     * @since 1.0
+     * Replaces a User with the same name in the database and makes the new one the active profile
+     * @param old User to be replaced
+     * @param user New User
+     * @since 1.1
      */
-    private void deleteUser() {
-        EscapeDatabase.getInstance(this).userDao().deleteAllUsers();
+    private void replaceUser(User old, User user) {
+        EscapeDatabase.getInstance(this).userDao().replaceActive(old, user);
     }
 }
\ No newline at end of file
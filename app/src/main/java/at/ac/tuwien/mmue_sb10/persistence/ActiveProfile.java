@@ -0,0 +1,33 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * ActiveProfile database class. Points to the user that is continued from the main menu. The table has at most one row,
+ * it is deleted together with the user
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "active_profile", indices = {@Index("user_id")},
+        foreignKeys = {@ForeignKey(entity = User.class, parentColumns = "id", childColumns = "user_id", onDelete = ForeignKey.CASCADE)})
+public class ActiveProfile {
+    public static final int SLOT = 0; //primary key of the only row
+
+    @PrimaryKey
+    public int slot;
+
+    public int user_id; //id of the active user
+
+    /**
+     * Creates an ActiveProfile object
+     * @param user_id The id of the user that becomes active
+     * @since 1.1
+     */
+    public ActiveProfile(int user_id) {
+        this.slot = SLOT;
+        this.user_id = user_id;
+    }
+}
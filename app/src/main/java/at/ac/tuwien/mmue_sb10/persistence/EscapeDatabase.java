@@ -4,10 +4,13 @@ package at.ac.tuwien.mmue_sb10.persistence;
 
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import java.util.HashMap;
 
@@ -16,12 +19,153 @@ import java.util.HashMap;
  * @since 1.0
  * @author Lukas Lidauer & Jan König
  */
-@Database(entities = {User.class, Highscore.class}, version = 1, exportSchema = false)
+@Database(entities = {User.class, Highscore.class, Ghost.class, Heatmap.class, PersonalBest.class, Split.class, Run.class, ActiveProfile.class, Stats.class}, version = 9, exportSchema = false)
 public abstract class EscapeDatabase extends RoomDatabase {
     public abstract UserDao userDao();
     public abstract HighscoreDao highscoreDao();
+    public abstract GhostDao ghostDao();
+    public abstract HeatmapDao heatmapDao();
+    public abstract PersonalBestDao personalBestDao();
+    public abstract RunDao runDao();
+    public abstract StatsDao statsDao();
 
     private static final HashMap<Context, EscapeDatabase> INSTANCES = new HashMap<>();
+    private static final int VACUUM_FREE_PERCENT = 25; //the file is rebuilt when this share of its pages is unused
+
+    /**
+     * Adds the checkpoint of the current stage to the users
+     * @since 1.1
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE users ADD COLUMN checkpoint BLOB");
+        }
+    };
+
+    /**
+     * Adds the table of the ghosts
+     * @since 1.1
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `ghosts` (`name` TEXT NOT NULL, `level` INTEGER NOT NULL, `time` INTEGER NOT NULL, `trajectory` BLOB, PRIMARY KEY(`name`, `level`))");
+        }
+    };
+
+    /**
+     * Adds the table of the death heatmaps
+     * @since 1.1
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `heatmaps` (`level` INTEGER NOT NULL, `width` INTEGER NOT NULL, `height` INTEGER NOT NULL, `counts` BLOB, PRIMARY KEY(`level`))");
+        }
+    };
+
+    /**
+     * Adds the tables of the personal bests and the split histories
+     * @since 1.1
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `personal_bests` (`name` TEXT NOT NULL, `level` INTEGER NOT NULL, `ticks` INTEGER NOT NULL, `splits` BLOB, PRIMARY KEY(`name`, `level`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `splits` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT, `level` INTEGER NOT NULL, `split` INTEGER NOT NULL, `ticks` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_splits_name_level_split` ON `splits` (`name`, `level`, `split`)");
+        }
+    };
+
+    /**
+     * Adds the table of the runs for the time attack leaderboard
+     * @since 1.1
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `runs` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT, `level` INTEGER NOT NULL, `ticks` INTEGER NOT NULL, `deaths` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL, `replay` INTEGER)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_runs_level_ticks` ON `runs` (`level`, `ticks`)");
+        }
+    };
+
+    /**
+     * Adds the index for the best highscores of a level
+     * @since 1.1
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_highscores_level_deaths` ON `highscores` (`level`, `deaths`)");
+        }
+    };
+
+    /**
+     * Adds the pointer to the active profile and makes the names of the users unique. The saved user (there was at most one)
+     * becomes the active profile
+     * @since 1.1
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_users_name` ON `users` (`name`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `active_profile` (`slot` INTEGER NOT NULL, `user_id` INTEGER NOT NULL, PRIMARY KEY(`slot`), FOREIGN KEY(`user_id`) REFERENCES `users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_active_profile_user_id` ON `active_profile` (`user_id`)");
+            database.execSQL("INSERT INTO `active_profile` (`slot`, `user_id`) SELECT 0, `id` FROM `users` ORDER BY `id` LIMIT 1");
+        }
+    };
+
+    /**
+     * Adds the table of the stats per level
+     * @since 1.1
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `stats` (`name` TEXT NOT NULL, `level` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, `finishes` INTEGER NOT NULL, `deaths` INTEGER NOT NULL, `histograms` BLOB, PRIMARY KEY(`name`, `level`))");
+        }
+    };
+
+    /**
+     * Deletes the highscores that are no longer kept and shrinks the file if enough pages have become unused. Updates the
+     * statistics of the query planner if anything has changed. Has to be called on the background thread when the app is idle,
+     * because VACUUM rewrites the whole file
+     * @since 1.1
+     */
+    public void compact() {
+        int deleted = highscoreDao().deleteNotKept();
+        SupportSQLiteDatabase database = getOpenHelper().getWritableDatabase();
+        long pages = queryLong(database, "PRAGMA page_count");
+        long free = queryLong(database, "PRAGMA freelist_count");
+        boolean vacuum = free * 100 >= pages * VACUUM_FREE_PERCENT;
+        if (vacuum)
+            database.execSQL("VACUUM"); //not possible inside a transaction
+        if (vacuum || deleted > 0)
+            database.execSQL("ANALYZE");
+    }
+
+    /**
+     * Returns the first column of the first row of a query or 0 if there is no row
+     * @since 1.1
+     */
+    private static long queryLong(SupportSQLiteDatabase database, String query) {
+        try (Cursor cursor = database.query(query)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Makes a context use a database that only lives in memory instead of the file of the app, so instrumented tests
+     * do not write into the database of the device. Has to be called before the first getInstance of the context
+     * @param context Context that the test passes to the game
+     * @since 1.1
+     */
+    public static EscapeDatabase createInMemory(Context context) {
+        EscapeDatabase db = Room.inMemoryDatabaseBuilder(context, EscapeDatabase.class).build();
+        INSTANCES.put(context, db);
+        return db;
+    }
 
     /**
      * Singleton Pattern for the EscapeDatabase
@@ -31,7 +175,9 @@ public abstract class EscapeDatabase extends RoomDatabase {
     public static EscapeDatabase getInstance(Context context) {
         EscapeDatabase db = INSTANCES.get(context);
         if (db == null) {
-            db = Room.databaseBuilder(context, EscapeDatabase.class, "escape_db").build();
+            db = Room.databaseBuilder(context, EscapeDatabase.class, "escape_db")
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9)
+                    .build();
             INSTANCES.put(context, db);
         }
         return db;
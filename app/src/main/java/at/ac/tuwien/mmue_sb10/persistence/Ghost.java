@@ -0,0 +1,33 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * Ghost database class. Stores the fastest run of a user through a level
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "ghosts", primaryKeys = {"name", "level"})
+public class Ghost {
+    @NonNull
+    public String name;
+    public int level;
+    public long time; //play time of the run in ms
+    public byte[] trajectory; //delta encoded path of the player, see Trajectory.encode
+
+    /**
+     * Creates a Ghost object
+     * @param name The name of the current file/player
+     * @param level The level of the run
+     * @param time The play time of the run in ms
+     * @param trajectory The encoded path of the player
+     * @since 1.1
+     */
+    public Ghost(@NonNull String name, int level, long time, byte[] trajectory) {
+        this.name = name;
+        this.level = level;
+        this.time = time;
+        this.trajectory = trajectory;
+    }
+}
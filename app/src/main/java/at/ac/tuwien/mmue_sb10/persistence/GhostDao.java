@@ -0,0 +1,47 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * DAO for the ghost database
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Dao
+public interface GhostDao {
+
+    /**
+     * Inserts a Ghost into the DB. Replaces the ghost of the same user and level
+     * @param ghost the object that gets inserted
+     * @since 1.1
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(Ghost ghost);
+
+    /**
+     * Returns the ghost of a user for a level or null if the user has not finished the level yet
+     * @since 1.1
+     */
+    @Query("SELECT * FROM ghosts WHERE name == :name AND level == :level")
+    Ghost getGhost(String name, int level);
+
+    /**
+     * Returns the play time in ms of the ghost of a user for a level or null if there is no ghost
+     * @since 1.1
+     */
+    @Query("SELECT time FROM ghosts WHERE name == :name AND level == :level")
+    Long getGhostTime(String name, int level);
+
+    /**
+     * Returns the ghost that holds the trajectory of a run or null if the ghost holds a faster run of the user
+     * @param name Name of the user of the run
+     * @param level Level of the run
+     * @param time Run.replay of the run
+     * @since 1.1
+     */
+    @Query("SELECT * FROM ghosts WHERE name == :name AND level == :level AND time == :time")
+    Ghost getReplay(String name, int level, long time);
+}
@@ -0,0 +1,34 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Heatmap database class. Stores the deaths of all players per tile of a level
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "heatmaps")
+public class Heatmap {
+    @PrimaryKey
+    public int level;
+
+    public int width; //width of the stage in tiles
+    public int height; //height of the stage in tiles
+    public byte[] counts; //deaths per tile, see DeathHeatmap.encode
+
+    /**
+     * Creates a Heatmap object
+     * @param level The level of the heatmap
+     * @param width The width of the stage in tiles
+     * @param height The height of the stage in tiles
+     * @param counts The encoded deaths per tile
+     * @since 1.1
+     */
+    public Heatmap(int level, int width, int height, byte[] counts) {
+        this.level = level;
+        this.width = width;
+        this.height = height;
+        this.counts = counts;
+    }
+}
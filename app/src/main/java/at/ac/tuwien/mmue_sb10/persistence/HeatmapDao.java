@@ -0,0 +1,30 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * DAO for the heatmap database
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Dao
+public interface HeatmapDao {
+
+    /**
+     * Inserts a Heatmap into the DB. Replaces the heatmap of the same level
+     * @param heatmap the object that gets inserted
+     * @since 1.1
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(Heatmap heatmap);
+
+    /**
+     * Returns the heatmap of a level or null if nobody has died in the level yet
+     * @since 1.1
+     */
+    @Query("SELECT * FROM heatmaps WHERE level == :level")
+    Heatmap getHeatmap(int level);
+}
@@ -3,6 +3,7 @@
 package at.ac.tuwien.mmue_sb10.persistence;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
@@ -10,7 +11,7 @@ import androidx.room.PrimaryKey;
  * @since 1.0
  * @author Lukas Lidauer & Jan König
  */
-@Entity(tableName = "highscores")
+@Entity(tableName = "highscores", indices = {@Index({"level", "deaths"})})
 public class Highscore {
     @PrimaryKey(autoGenerate = true)
     public int id;
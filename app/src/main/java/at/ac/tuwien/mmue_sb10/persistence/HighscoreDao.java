@@ -5,6 +5,7 @@ package at.ac.tuwien.mmue_sb10.persistence;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 
 import java.util.List;
 
@@ -15,6 +16,13 @@ import java.util.List;
  */
 @Dao
 public interface HighscoreDao {
+    /*
+     * RETENTION: a highscore is kept while it is one of the best of its level, one of the best of its player in its level
+     * or one of the latest highscores. All others are deleted, so the table does not grow with the time played
+     */
+    int KEEP_PER_LEVEL = 20; //best highscores kept per level
+    int KEEP_PER_PLAYER = 5; //best highscores kept per player and level
+    int KEEP_RECENT = 100; //latest highscores kept of all levels
 
     /**
      * DAO for inserting an Highscore object into the DB
@@ -24,6 +32,44 @@ public interface HighscoreDao {
     @Insert
     void insert(Highscore highscore);
 
+    /**
+     * Inserts a highscore and deletes the highscores of its level that are no longer kept (see RETENTION) in one transaction
+     * @param highscore the object that gets inserted
+     * @since 1.1
+     */
+    @Transaction
+    default void insertRetained(Highscore highscore) {
+        insert(highscore);
+        deleteNotKept(highscore.level, KEEP_PER_LEVEL, KEEP_PER_PLAYER, KEEP_RECENT);
+    }
+
+    /**
+     * Deletes the highscores of all levels that are no longer kept (see RETENTION) in one transaction. Also removes the
+     * highscores that were inserted before the retention existed
+     * @return Number of deleted highscores
+     * @since 1.1
+     */
+    @Transaction
+    default int deleteNotKept() {
+        int deleted = 0;
+        for (int level : getLevels())
+            deleted += deleteNotKept(level, KEEP_PER_LEVEL, KEEP_PER_PLAYER, KEEP_RECENT);
+        return deleted;
+    }
+
+    /**
+     * Deletes the highscores of a level that are neither among the best per_level of the level, nor among the best per_player
+     * of their player in the level, nor among the recent latest highscores. Ties are ordered by insertion like everywhere else
+     * @return Number of deleted highscores
+     * @since 1.1
+     */
+    @Query("DELETE FROM highscores WHERE level == :level"
+            + " AND id NOT IN (SELECT id FROM highscores ORDER BY id DESC LIMIT :recent)"
+            + " AND id NOT IN (SELECT id FROM highscores WHERE level == :level ORDER BY deaths ASC, id ASC LIMIT :per_level)"
+            + " AND (SELECT COUNT(*) FROM highscores AS better WHERE better.level == highscores.level AND better.name IS highscores.name"
+            + " AND (better.deaths < highscores.deaths OR (better.deaths == highscores.deaths AND better.id < highscores.id))) >= :per_player")
+    int deleteNotKept(int level, int per_level, int per_player, int recent);
+
     /**
      * Returns a list of Scores from the DB for a certain level. Ordered by amount of deaths.
      * @since 1.0
@@ -31,6 +77,21 @@ public interface HighscoreDao {
     @Query("SELECT * FROM highscores WHERE level == :level ORDER BY deaths ASC")
     List<Highscore> getHighscoresForLevel(int level);
 
+    /**
+     * Returns the best Scores of a level. Ordered by amount of deaths, equal scores in the order they were inserted like in deleteNotKept.
+     * Reads only count rows of the index on level and deaths
+     * @since 1.1
+     */
+    @Query("SELECT * FROM highscores WHERE level == :level ORDER BY deaths ASC, id ASC LIMIT :count")
+    List<Highscore> getTopHighscoresForLevel(int level, int count);
+
+    /**
+     * Returns the levels that have highscores
+     * @since 1.1
+     */
+    @Query("SELECT DISTINCT level FROM highscores ORDER BY level")
+    List<Integer> getLevels();
+
     /**
      * Returns a list of Scores from the DB. Order by amount of deaths.
      * @since 1.0
@@ -0,0 +1,134 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class keeps the best highscores of every level in memory, so the highscore screen does not have to read the database.
+ * The highscores are read once on the background thread when the repository is created. Highscores that are inserted through
+ * the repository are written to the database and sorted into the highscores in memory. Observers get the highscores on the
+ * main thread as soon as they are loaded and again after every change
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class HighscoreRepository {
+    public static final int TOP_SCORES = 5; //highscores kept per level
+
+    private static HighscoreRepository sInstance;
+
+    private final Context context;
+    private final Handler main_handler; //posts to the observers on the main thread
+    private final TreeMap<Integer, ArrayList<Highscore>> top = new TreeMap<>(); //best highscores per level, ordered by deaths. only changed on the background thread
+    private final ArrayList<OnHighscoresLoadedListener> observers = new ArrayList<>(); //only changed on the main thread
+    private volatile List<Highscore> snapshot; //highscores of all levels ordered by level and deaths. null until they are loaded
+
+    /**
+     * Private Constructor for the HighscoreRepository. Starts loading the highscores
+     * @param context Context of the Application
+     * @since 1.1
+     */
+    private HighscoreRepository(Context context) {
+        this.context = context.getApplicationContext();
+        this.main_handler = new Handler(Looper.getMainLooper());
+        Concurrency.executeAsync("HighscoreRepository.load", this::load);
+    }
+
+    /**
+     * Singleton Pattern used for the HighscoreRepository because the highscores in memory have to be the same everywhere
+     * @param context Context of the Application to construct the HighscoreRepository if there is no instance yet
+     * @since 1.1
+     */
+    public static HighscoreRepository getInstance(Context context) {
+        if (null == sInstance) {
+            synchronized (HighscoreRepository.class) {
+                if (null == sInstance)
+                    sInstance = new HighscoreRepository(context);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Reads the best highscores of every level with one short query per level
+     * @since 1.1
+     */
+    private void load() {
+        HighscoreDao dao = EscapeDatabase.getInstance(this.context).highscoreDao();
+        for (int level : dao.getLevels())
+            this.top.put(level, new ArrayList<>(dao.getTopHighscoresForLevel(level, TOP_SCORES)));
+        publish();
+    }
+
+    /**
+     * Inserts a highscore into the database and into the highscores in memory. The database deletes the highscores that are no
+     * longer kept in the same transaction (see HighscoreDao.KEEP_PER_LEVEL). Has to be called on the background thread (see Concurrency)
+     * @param highscore Highscore to be inserted
+     * @since 1.1
+     */
+    public void insert(Highscore highscore) {
+        EscapeDatabase.getInstance(this.context).highscoreDao().insertRetained(highscore);
+        if (this.snapshot == null)
+            return; //load has not run yet and reads the new highscore from the database
+
+        ArrayList<Highscore> scores = this.top.get(highscore.level);
+        if (scores == null) {
+            scores = new ArrayList<>(TOP_SCORES + 1);
+            this.top.put(highscore.level, scores);
+        }
+        //behind the highscores with the same deaths, like the database orders them
+        int index = scores.size();
+        while (index > 0 && scores.get(index - 1).deaths > highscore.deaths)
+            index--;
+        if (index == TOP_SCORES)
+            return; //not among the best, nothing changes
+        scores.add(index, highscore);
+        if (scores.size() > TOP_SCORES)
+            scores.remove(TOP_SCORES);
+        publish();
+    }
+
+    /**
+     * Creates a new snapshot of the highscores and passes it to the observers
+     * @since 1.1
+     */
+    private void publish() {
+        ArrayList<Highscore> all = new ArrayList<>();
+        for (ArrayList<Highscore> scores : this.top.values())
+            all.addAll(scores);
+        List<Highscore> snapshot = Collections.unmodifiableList(all);
+        this.snapshot = snapshot;
+        this.main_handler.post(() -> {
+            for (OnHighscoresLoadedListener observer : this.observers)
+                observer.onHighscoresLoaded(snapshot);
+        });
+    }
+
+    /**
+     * Registers an observer. It gets the current highscores right away if they are loaded. Has to be called on the main thread
+     * @param observer Observer to be notified with the highscores of all levels, ordered by level and deaths
+     * @since 1.1
+     */
+    public void addObserver(OnHighscoresLoadedListener observer) {
+        this.observers.add(observer);
+        List<Highscore> snapshot = this.snapshot;
+        if (snapshot != null)
+            observer.onHighscoresLoaded(snapshot);
+    }
+
+    /**
+     * Removes an observer. Has to be called on the main thread
+     * @param observer Observer to be removed
+     * @since 1.1
+     */
+    public void removeObserver(OnHighscoresLoadedListener observer) {
+        this.observers.remove(observer);
+    }
+}
@@ -0,0 +1,33 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * PersonalBest database class. Stores the fastest attempt of a user through a level and its splits
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "personal_bests", primaryKeys = {"name", "level"})
+public class PersonalBest {
+    @NonNull
+    public String name;
+    public int level;
+    public int ticks; //time of the attempt in ticks, see RunTimer
+    public byte[] splits; //ticks at the checkpoints and the finish line, see RunTimer.encodeSplits
+
+    /**
+     * Creates a PersonalBest object
+     * @param name The name of the current file/player
+     * @param level The level of the attempt
+     * @param ticks The time of the attempt in ticks
+     * @param splits The encoded splits of the attempt
+     * @since 1.1
+     */
+    public PersonalBest(@NonNull String name, int level, int ticks, byte[] splits) {
+        this.name = name;
+        this.level = level;
+        this.ticks = ticks;
+        this.splits = splits;
+    }
+}
@@ -0,0 +1,61 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO for the personal bests and the split histories
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Dao
+public interface PersonalBestDao {
+
+    /**
+     * Inserts a PersonalBest into the DB. Replaces the personal best of the same user and level
+     * @param best the object that gets inserted
+     * @since 1.1
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(PersonalBest best);
+
+    /**
+     * Returns the personal best of a user for a level or null if the user has not finished the level yet
+     * @since 1.1
+     */
+    @Query("SELECT * FROM personal_bests WHERE name == :name AND level == :level")
+    PersonalBest getPersonalBest(String name, int level);
+
+    /**
+     * Returns the time in ticks of the personal best of a user for a level or null if there is none
+     * @since 1.1
+     */
+    @Query("SELECT ticks FROM personal_bests WHERE name == :name AND level == :level")
+    Integer getPersonalBestTicks(String name, int level);
+
+    /**
+     * Inserts the splits of a finished attempt into the DB
+     * @param splits the objects that get inserted
+     * @since 1.1
+     */
+    @Insert
+    void insertSplits(List<Split> splits);
+
+    /**
+     * Returns the history of a split of a user for a level. Newest first
+     * @since 1.1
+     */
+    @Query("SELECT * FROM splits WHERE name == :name AND level == :level AND split == :split ORDER BY timestamp DESC")
+    List<Split> getSplitHistory(String name, int level, int split);
+
+    /**
+     * Returns the fastest time in ticks a user has reached a split of a level with or null if the split has never been reached
+     * @since 1.1
+     */
+    @Query("SELECT MIN(ticks) FROM splits WHERE name == :name AND level == :level AND split == :split")
+    Integer getBestSplitTicks(String name, int level, int split);
+}
@@ -0,0 +1,44 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Run database class. Stores a finished run through a level for the time attack leaderboard.
+ * Only numbers are stored, so a row stays small. The trajectory is only kept for the fastest run of a user (see Ghost),
+ * the run refers to it by the key of the ghost and its time (see GhostDao.getReplay)
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "runs", indices = {@Index({"level", "ticks"})})
+public class Run {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    public String name;
+    public int level;
+    public int ticks; //finish time in ticks, see RunTimer
+    public int deaths; //deaths in the level before the run was finished
+    public long timestamp; //time the run was finished in ms since 1970
+    public Long replay; //time in ms of the ghost (name, level) that holds the trajectory of the run. null if the trajectory was not recorded
+
+    /**
+     * Creates a Run object
+     * @param name The name of the current file/player
+     * @param level The level of the run
+     * @param ticks The finish time in ticks
+     * @param deaths The deaths in the level before the run was finished
+     * @param timestamp The time the run was finished in ms since 1970
+     * @param replay The time in ms of the ghost recorded from the run or null if the trajectory was not recorded
+     * @since 1.1
+     */
+    public Run(String name, int level, int ticks, int deaths, long timestamp, Long replay) {
+        this.name = name;
+        this.level = level;
+        this.ticks = ticks;
+        this.deaths = deaths;
+        this.timestamp = timestamp;
+        this.replay = replay;
+    }
+}
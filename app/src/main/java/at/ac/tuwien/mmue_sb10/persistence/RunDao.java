@@ -0,0 +1,42 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO for the runs of the time attack leaderboard.
+ * Pages are read with a key (ticks and id of the last run of the previous page) instead of an offset,
+ * so every page is a short range of the index on level and ticks, however far the page is down the list
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Dao
+public interface RunDao {
+
+    /**
+     * Inserts a Run into the DB
+     * @param run the object that gets inserted
+     * @since 1.1
+     */
+    @Insert
+    void insert(Run run);
+
+    /**
+     * Returns the fastest runs of a level. Ordered by time, runs with the same time in the order they were inserted
+     * @since 1.1
+     */
+    @Query("SELECT * FROM runs WHERE level == :level ORDER BY ticks ASC, id ASC LIMIT :count")
+    List<Run> getFastestRuns(int level, int count);
+
+    /**
+     * Returns the runs of a level that come after a run in the order of getFastestRuns
+     * @param ticks Time of the last run of the previous page
+     * @param id ID of the last run of the previous page
+     * @since 1.1
+     */
+    @Query("SELECT * FROM runs WHERE level == :level AND (ticks > :ticks OR (ticks == :ticks AND id > :id)) ORDER BY ticks ASC, id ASC LIMIT :count")
+    List<Run> getRunsAfter(int level, int ticks, int id, int count);
+}
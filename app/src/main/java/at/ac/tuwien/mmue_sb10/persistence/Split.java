@@ -0,0 +1,39 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Split database class. Stores the time of a finished attempt at one of its splits, so the history of every split can be compared
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "splits", indices = {@Index({"name", "level", "split"})})
+public class Split {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    public String name;
+    public int level;
+    public int split; //index of the split. the last split of an attempt is the finish line
+    public int ticks; //time since the start of the attempt in ticks, see RunTimer
+    public long timestamp; //time the attempt was finished in ms since 1970
+
+    /**
+     * Creates a Split object
+     * @param name The name of the current file/player
+     * @param level The level of the attempt
+     * @param split The index of the split
+     * @param ticks The time since the start of the attempt in ticks
+     * @param timestamp The time the attempt was finished in ms since 1970
+     * @since 1.1
+     */
+    public Split(String name, int level, int split, int ticks, long timestamp) {
+        this.name = name;
+        this.level = level;
+        this.split = split;
+        this.ticks = ticks;
+        this.timestamp = timestamp;
+    }
+}
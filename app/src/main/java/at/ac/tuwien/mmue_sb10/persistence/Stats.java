@@ -0,0 +1,39 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * Stats database class. Stores the aggregated attempts, finishes and deaths of a user in a level, one row per level
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Entity(tableName = "stats", primaryKeys = {"name", "level"})
+public class Stats {
+    @NonNull
+    public String name;
+    public int level;
+    public int attempts; //starts and retries of the level
+    public int finishes; //attempts that reached the finish line
+    public int deaths; //attempts that ended with a death
+    public byte[] histograms; //deaths per position and per time to death, see LevelStats.encodeHistograms
+
+    /**
+     * Creates a Stats object
+     * @param name The name of the current file/player
+     * @param level The level of the stats
+     * @param attempts The number of attempts
+     * @param finishes The number of finished attempts
+     * @param deaths The number of deaths
+     * @param histograms The encoded histograms of the deaths
+     * @since 1.1
+     */
+    public Stats(@NonNull String name, int level, int attempts, int finishes, int deaths, byte[] histograms) {
+        this.name = name;
+        this.level = level;
+        this.attempts = attempts;
+        this.finishes = finishes;
+        this.deaths = deaths;
+        this.histograms = histograms;
+    }
+}
@@ -0,0 +1,39 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO for the stats database
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@Dao
+public interface StatsDao {
+
+    /**
+     * Inserts Stats into the DB. Replaces the stats of the same user and level
+     * @param stats the object that gets inserted
+     * @since 1.1
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(Stats stats);
+
+    /**
+     * Returns the stats of a user in a level or null if the user has not played the level yet
+     * @since 1.1
+     */
+    @Query("SELECT * FROM stats WHERE name == :name AND level == :level")
+    Stats getStats(String name, int level);
+
+    /**
+     * Returns the stats of a user in all levels ordered by level. One row per level played
+     * @since 1.1
+     */
+    @Query("SELECT * FROM stats WHERE name == :name ORDER BY level")
+    List<Stats> getStatsOfUser(String name);
+}
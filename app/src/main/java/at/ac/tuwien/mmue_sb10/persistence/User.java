@@ -4,16 +4,18 @@ package at.ac.tuwien.mmue_sb10.persistence;
 
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.io.Serializable;
 
 /**
- * User class (object as handled via DB)
+ * User class (object as handled via DB). Every user is a save profile. The name is unique, because the highscores, ghosts and
+ * personal bests of a profile are stored by its name
  * @since 1.0
  * @author Lukas Lidauer & Jan König
  */
-@Entity(tableName = "users")
+@Entity(tableName = "users", indices = {@Index(value = {"name"}, unique = true)})
 public class User implements Serializable {
     @PrimaryKey(autoGenerate = true)
     public int id;
@@ -22,6 +24,7 @@ public class User implements Serializable {
     public int currentLevel;
     public int deathsTotal;
     public int deathsCurrentLevel;
+    public byte[] checkpoint; //snapshot of the player at the last checkpoint of currentLevel. null if no checkpoint has been reached
 
     /**
      * Basic Constructor for this class
@@ -4,8 +4,11 @@ package at.ac.tuwien.mmue_sb10.persistence;
 
 
 import androidx.room.Dao;
+import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import java.util.List;
@@ -23,7 +26,31 @@ public interface UserDao {
      * @since 1.0
      */
     @Insert
-    void insert(User user);
+    long insert(User user);
+
+    /**
+     * Inserts a user and makes it the active profile in one transaction
+     * @param user The new file/player. Its id is set to the inserted row
+     * @since 1.1
+     */
+    @Transaction
+    default void insertActive(User user) {
+        user.id = (int) insert(user);
+        setActiveProfile(new ActiveProfile(user.id));
+    }
+
+    /**
+     * Replaces a user by a new one with the same name and makes it the active profile in one transaction. The new user starts
+     * without the ghosts, personal bests, splits and stats of the old one
+     * @param old The file/player to be replaced
+     * @param user The new file/player
+     * @since 1.1
+     */
+    @Transaction
+    default void replaceActive(User old, User user) {
+        deleteWithProgress(old);
+        insertActive(user);
+    }
 
     /**
      * DAO for updating an already existing user in the DB
@@ -34,16 +61,91 @@ public interface UserDao {
     void update(User user);
 
     /**
-     * Returns list of users from DB
+     * Writes the checkpoint of a user without touching the other columns
+     * @param id ID of the user
+     * @param checkpoint Snapshot of the player, see User.checkpoint
+     * @since 1.1
+     */
+    @Query("UPDATE users SET checkpoint = :checkpoint WHERE id == :id")
+    void updateCheckpoint(int id, byte[] checkpoint);
+
+    /**
+     * Deletes a user from the DB. If it is the active profile, there is no active profile afterwards (highscores are stored seperately)
+     * @param user The file/player to be deleted
+     * @since 1.1
+     */
+    @Delete
+    void delete(User user);
+
+    /**
+     * Deletes a user and everything that is stored by its name in one transaction, so a later user with the same name does not
+     * inherit it. Highscores and runs stay on the leaderboards
+     * @param user The file/player to be deleted
+     * @since 1.1
+     */
+    @Transaction
+    default void deleteWithProgress(User user) {
+        deleteGhosts(user.name);
+        deletePersonalBests(user.name);
+        deleteSplits(user.name);
+        deleteStats(user.name);
+        delete(user);
+    }
+
+    /**
+     * Deletes the ghosts of a user
+     * @since 1.1
+     */
+    @Query("DELETE FROM ghosts WHERE name == :name")
+    void deleteGhosts(String name);
+
+    /**
+     * Deletes the personal bests of a user
+     * @since 1.1
+     */
+    @Query("DELETE FROM personal_bests WHERE name == :name")
+    void deletePersonalBests(String name);
+
+    /**
+     * Deletes the splits of a user
+     * @since 1.1
+     */
+    @Query("DELETE FROM splits WHERE name == :name")
+    void deleteSplits(String name);
+
+    /**
+     * Deletes the stats of a user
+     * @since 1.1
+     */
+    @Query("DELETE FROM stats WHERE name == :name")
+    void deleteStats(String name);
+
+    /**
+     * Returns list of users from DB ordered by name. Only used by the profile screen
      * @since 1.0
      */
-    @Query("SELECT * FROM users")
+    @Query("SELECT * FROM users ORDER BY name")
     List<User> selectAllUsers();
 
     /**
-     * Deletes users from DB (there will be always be either 0 or 1 users present in the DB, highscores are stored seperately)
-     * @since 1.0
+     * Returns the active profile or null if there is none. Reads one row by primary key from each table
+     * @since 1.1
+     */
+    @Query("SELECT * FROM users WHERE id == (SELECT user_id FROM active_profile WHERE slot == 0)")
+    User getActiveUser();
+
+    /**
+     * Returns the user with a name or null if there is none. Reads one row of the unique index on the name
+     * @since 1.1
+     */
+    @Query("SELECT * FROM users WHERE name == :name")
+    User getUserByName(String name);
+
+    /**
+     * Makes a user the active profile
+     * @param profile Pointer to the user
+     * @since 1.1
      */
-    @Query("DELETE FROM users")
-    void deleteAllUsers();
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void setActiveProfile(ActiveProfile profile);
 }
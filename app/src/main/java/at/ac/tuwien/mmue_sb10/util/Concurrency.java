@@ -1,13 +1,75 @@
 package at.ac.tuwien.mmue_sb10.util;
 
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import android.os.Trace;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class Concurrency {
-    private static final Executor executor = Executors.newSingleThreadExecutor();
+    private static final int QUEUE_CAPACITY = 256; //tasks that can wait. the game thread waits if the queue is full
+
+    //one thread, so tasks run one after another in the order they were queued. the queue is an array, so queueing does not allocate
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), (task, pool) -> {
+                try {
+                    pool.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
 
     public static void executeAsync(Runnable task) {
+        executeAsync("Concurrency.task", task);
+    }
+
+    /**
+     * Runs a task on the background thread (mostly database access) inside a system trace section
+     * @param section Name of the trace section
+     * @param task    Task to run
+     * @since 1.1
+     */
+    public static void executeAsync(String section, Runnable task) {
+        executor.execute(new Task(section, task));
+    }
+
+    /**
+     * Runs a task that has been created in advance on the background thread. Does not allocate, so it can be used in the game loop
+     * @param task Task to run
+     * @since 1.1
+     */
+    public static void execute(Task task) {
         executor.execute(task);
     }
+
+    /**
+     * A task with the name of its trace section. Tasks that are queued from the game loop are created once and queued again and again
+     * @since 1.1
+     */
+    public static class Task implements Runnable {
+        private final String section; //name of the trace section
+        private final Runnable task; //work to do
+
+        /**
+         * Creates a Task
+         * @param section Name of the trace section
+         * @param task    Work to do
+         * @since 1.1
+         */
+        public Task(String section, Runnable task) {
+            this.section = section;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Trace.beginSection(this.section);
+            try {
+                this.task.run();
+            } finally {
+                Trace.endSection();
+            }
+        }
+    }
 }
@@ -0,0 +1,65 @@
+/**
+ * Measures the lookup of the tile behaviors under the corners of the player.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import at.ac.tuwien.mmue_sb10.simulation.PlayerPhysics;
+import at.ac.tuwien.mmue_sb10.simulation.StageData;
+
+/**
+ * Looks up the four corners of the player at random positions of a stage. The positions are created up front with a fixed seed,
+ * so every run reads the same tiles and the results stay comparable
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollisionBenchmark {
+    private static final int POSITIONS = 4096; //power of two, so the index can wrap with a mask
+
+    @Param({"1", "7", "8"})
+    public String level;
+
+    private PlayerPhysics physics;
+    private float[] positions; //x, y per position
+    private int index;
+
+    @Setup
+    public void setup() throws IOException {
+        StageData stage = Stages.load(this.level);
+        this.physics = new PlayerPhysics(null);
+        this.physics.setCollision(stage.buildCollision(Stages.collisionTable()));
+
+        Random random = new Random(42);
+        this.positions = new float[POSITIONS * 2];
+        for (int i = 0; i < POSITIONS; i++) {
+            this.positions[i * 2] = random.nextFloat() * (stage.width * StageData.TILE_SIZE - PlayerPhysics.PLAYER_WIDTH - 1);
+            this.positions[i * 2 + 1] = random.nextFloat() * (stage.height * StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH - 1);
+        }
+    }
+
+    @Benchmark
+    public int corners() {
+        int i = this.index;
+        this.index = (i + 1) & (POSITIONS - 1);
+        this.physics.readCorners(this.positions[i * 2], this.positions[i * 2 + 1]);
+        return this.physics.corners[0] | this.physics.corners[1] | this.physics.corners[2] | this.physics.corners[3];
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Measures a single physics step of the player on every shipped stage.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import at.ac.tuwien.mmue_sb10.simulation.PlayerPhysics;
+import at.ac.tuwien.mmue_sb10.simulation.StageData;
+
+/**
+ * Steps the player through a stage with a frame time of 16 ms, like the game loop at 60 fps.
+ * The player jumps every JUMP_INTERVAL steps, so landing and air time are part of the measurement.
+ * After dying or finishing the player starts again at the start position
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhysicsBenchmark {
+    private static final long FRAME_TIME = 16; //ms per step
+    private static final int JUMP_INTERVAL = 40; //steps between two jumps
+
+    @Param({"-5", "-4", "-3", "-2", "-1", "1", "2", "3", "4", "5", "6", "7", "8"})
+    public String level;
+
+    private PlayerPhysics physics;
+    private StageData stage;
+    private int steps;
+
+    @Setup
+    public void setup() throws IOException {
+        this.stage = Stages.load(this.level);
+        this.physics = new PlayerPhysics(null);
+        this.physics.setCollision(this.stage.buildCollision(Stages.collisionTable()));
+        restart();
+    }
+
+    @Benchmark
+    public float step() {
+        if (this.physics.dead || this.physics.finished)
+            restart();
+        if (++this.steps % JUMP_INTERVAL == 0)
+            this.physics.jump();
+        this.physics.step(FRAME_TIME);
+        return this.physics.pos_x;
+    }
+
+    private void restart() {
+        this.physics.reset(this.stage.player_start_x * StageData.TILE_SIZE, this.stage.player_start_y * StageData.TILE_SIZE + StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, this.stage.player_velocity_x);
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Measures a tick of the rivals of the race mode for different numbers of rivals.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import at.ac.tuwien.mmue_sb10.simulation.PlayerBatch;
+import at.ac.tuwien.mmue_sb10.simulation.PlayerPhysics;
+import at.ac.tuwien.mmue_sb10.simulation.StageData;
+
+/**
+ * Steps all rivals of a PlayerBatch through stage 7. Rivals that die stop moving, so the batch is started again every RESTART_INTERVAL ticks
+ * to keep most of them active. Divide the time by the number of rivals to compare the cost per rival
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RivalsBenchmark {
+    private static final int RESTART_INTERVAL = 300; //ticks until the rivals start again
+
+    @Param({"1", "16", "64", "256"})
+    public int rivals;
+
+    private PlayerBatch batch;
+    private StageData stage;
+    private int ticks;
+
+    @Setup
+    public void setup() throws IOException {
+        this.stage = Stages.load("7");
+        this.batch = new PlayerBatch(this.rivals);
+        this.batch.setCollision(this.stage.buildCollision(Stages.collisionTable()));
+        restart();
+    }
+
+    @Benchmark
+    public float tick() {
+        if (++this.ticks % RESTART_INTERVAL == 0)
+            restart();
+        this.batch.step();
+        return this.batch.pos_x[0];
+    }
+
+    private void restart() {
+        this.batch.clear();
+        for (int i = 0; i < this.rivals; i++)
+            this.batch.addGenerated(this.stage.player_start_x * StageData.TILE_SIZE, this.stage.player_start_y * StageData.TILE_SIZE + StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, this.stage.player_velocity_x, i + 1);
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Measures parsing the biggest stage files and building their collision.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import at.ac.tuwien.mmue_sb10.simulation.StageData;
+import at.ac.tuwien.mmue_sb10.simulation.StageParser;
+
+/**
+ * Parses a stage file that is already in memory and builds the collision array, which is the part of Stage.load
+ * that does not depend on decoding and drawing bitmaps
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StageLoadBenchmark {
+    @Param({"7", "8"})
+    public String level;
+
+    private String file;
+    private int[] tiles_collision;
+
+    @Setup
+    public void setup() throws IOException {
+        this.file = Stages.read(this.level);
+        this.tiles_collision = Stages.collisionTable();
+    }
+
+    @Benchmark
+    public int[][] parse() throws IOException {
+        StageData data = StageParser.parse(new BufferedReader(new StringReader(this.file)));
+        return data.buildCollision(this.tiles_collision);
+    }
+}
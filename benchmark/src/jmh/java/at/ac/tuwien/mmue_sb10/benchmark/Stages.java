@@ -0,0 +1,52 @@
+/**
+ * Loads the shipped stage files of the app for the benchmarks.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import at.ac.tuwien.mmue_sb10.simulation.StageData;
+import at.ac.tuwien.mmue_sb10.simulation.StageParser;
+
+/**
+ * This class reads the stage files and the tile behaviors from the app module.
+ * The locations are passed as system properties by the jmh task (stages.dir and tiles.collision)
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+final class Stages {
+    private Stages() {
+    }
+
+    /**
+     * Returns the content of assets/stage{level}.txt
+     * @since 1.1
+     */
+    static String read(String level) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(System.getProperty("stages.dir", "../app/src/main/assets"), "stage" + level + ".txt")), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the stage file of a level
+     * @since 1.1
+     */
+    static StageData load(String level) throws IOException {
+        return StageParser.parse(new BufferedReader(new StringReader(read(level))));
+    }
+
+    /**
+     * Returns the tile behaviors of the tileset from res/values/arrays.xml
+     * @since 1.1
+     */
+    static int[] collisionTable() throws IOException {
+        return StageParser.parseCollisionTable(new String(Files.readAllBytes(Paths.get(System.getProperty("tiles.collision", "../app/src/main/res/values/arrays.xml"))), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Measures the throughput of the headless environments for automated players.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import at.ac.tuwien.mmue_sb10.simulation.VectorEnv;
+
+/**
+ * Steps ENVIRONMENTS copies of stage 7 with random actions. The score is the number of environment steps per second over all copies
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VectorEnvBenchmark {
+    private static final int ENVIRONMENTS = 1024;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private VectorEnv env;
+    private int[] actions;
+    private long random = 0x9E3779B97F4A7C15L;
+
+    @Setup
+    public void setup() throws IOException {
+        this.env = new VectorEnv(Stages.load("7"), Stages.collisionTable(), ENVIRONMENTS, this.threads, 5000);
+        this.actions = new int[ENVIRONMENTS];
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.env.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENVIRONMENTS)
+    public float step() {
+        for (int i = 0; i < ENVIRONMENTS; i++) {
+            this.random ^= this.random << 13;
+            this.random ^= this.random >>> 7;
+            this.random ^= this.random << 17;
+            int value = (int) (this.random >>> 58);
+            this.actions[i] = value == 0 ? VectorEnv.ACTION_JUMP : value == 1 ? VectorEnv.ACTION_FLIP : VectorEnv.ACTION_NONE;
+        }
+        this.env.step(this.actions);
+        return this.env.rewards[0];
+    }
+}
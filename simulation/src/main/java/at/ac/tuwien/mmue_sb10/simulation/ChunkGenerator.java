@@ -0,0 +1,206 @@
+/**
+ * Generates the level chunks of the endless mode.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * This class writes chunks of CHUNK_WIDTH x HEIGHT tiles one after another. Every chunk is a corridor with a ceiling and a floor,
+ * the obstacles are built from the tiles of the tileset: spike pits and blocks to jump over, spike floors to pass on the ceiling,
+ * a booster before a wide pit (with a brake pad behind it, so the speed does not grow forever) and a jumper in front of a high wall.
+ * The chunks only depend on the seed and their order, so the same seed always gives the same run. Obstacles get wider and more
+ * frequent with the distance. The sizes stay within what a jump or a gravity change can pass (see PlayerPhysics.jump)
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class ChunkGenerator {
+    public static final int CHUNK_WIDTH = 16; //width of a chunk in tiles
+    public static final int HEIGHT = 12; //height of a chunk in tiles
+    public static final int START_X = 3; //start position of the player in tiles
+    public static final int START_Y = 9;
+    public static final float VELOCITY_X = 100; //velocity of the player in px/s
+
+    /*
+     * TILES: ids of the tileset, like in the stage files
+     */
+    public static final int TILE_SOLID = 11;
+    public static final int TILE_FLOOR = 10; //solid with a surface on top
+    public static final int TILE_CEILING = 12; //solid with a surface below
+    public static final int TILE_SPIKES_UP = 72;
+    public static final int TILE_SPIKES_DOWN = 74;
+    public static final int TILE_BOOST = 13;
+    public static final int TILE_BRAKE = 43;
+    public static final int TILE_JUMPER = 55;
+
+    private static final int CEILING = 1; //row of the ceiling surface
+    private static final int FLOOR = 10; //row of the floor surface
+    private static final int SAFE_CHUNKS = 2; //chunks without obstacles at the start
+    private static final int HALF = CHUNK_WIDTH / 2; //small obstacles are placed in each half of a chunk
+
+    private long random; //xorshift state
+    private long index; //index of the next chunk
+
+    /**
+     * Creates a ChunkGenerator
+     *
+     * @param seed Seed of the run
+     * @since 1.1
+     */
+    public ChunkGenerator(long seed) {
+        reset(seed);
+    }
+
+    /**
+     * Starts a new run. The next chunk is the first one
+     *
+     * @param seed Seed of the run
+     * @since 1.1
+     */
+    public void reset(long seed) {
+        //scramble the seed, so close seeds give different runs
+        this.random = (seed ^ 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        if (this.random == 0)
+            this.random = 0x9E3779B97F4A7C15L;
+        this.index = 0;
+    }
+
+    /**
+     * Returns the index of the next chunk
+     * @since 1.1
+     */
+    public long getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Writes the next chunk
+     *
+     * @param tiles  Tile ids [x][y] with at least HEIGHT rows. EMPTY_TILE where there is no tile
+     * @param offset First column of the chunk in tiles
+     * @since 1.1
+     */
+    public void next(int[][] tiles, int offset) {
+        for (int x = offset; x < offset + CHUNK_WIDTH; x++) {
+            int[] column = tiles[x];
+            column[0] = TILE_SOLID;
+            column[CEILING] = TILE_CEILING;
+            for (int y = CEILING + 1; y < FLOOR; y++)
+                column[y] = StageData.EMPTY_TILE;
+            column[FLOOR] = TILE_FLOOR;
+            for (int y = FLOOR + 1; y < HEIGHT; y++)
+                column[y] = TILE_SOLID;
+        }
+
+        long chunk = this.index++;
+        if (chunk < SAFE_CHUNKS)
+            return;
+        //chance in percent for an obstacle in a half and for a chunk wide obstacle grows with the distance
+        int difficulty = (int) Math.min(chunk - SAFE_CHUNKS, 30);
+        if (chunk > SAFE_CHUNKS + 2 && nextInt(100) < 25 + difficulty) {
+            switch (nextInt(3)) {
+                case 0:
+                    ceilingRun(tiles, offset, difficulty);
+                    break;
+                case 1:
+                    boost(tiles, offset, difficulty);
+                    break;
+                default:
+                    jumper(tiles, offset);
+                    break;
+            }
+            return;
+        }
+        for (int half = offset; half < offset + CHUNK_WIDTH; half += HALF) {
+            if (nextInt(100) >= 40 + difficulty * 2)
+                continue;
+            if (nextInt(2) == 0)
+                pit(tiles, half, difficulty);
+            else
+                block(tiles, half, difficulty);
+        }
+    }
+
+    /**
+     * Spikes in the floor, 1 to 3 tiles wide
+     * @since 1.1
+     */
+    private void pit(int[][] tiles, int offset, int difficulty) {
+        int width = 1 + nextInt(1 + Math.min(2, difficulty / 8));
+        int start = offset + 2 + nextInt(HALF - 3 - width);
+        for (int x = start; x < start + width; x++)
+            tiles[x][FLOOR] = TILE_SPIKES_UP;
+    }
+
+    /**
+     * A block on the floor, 1 or 2 tiles high
+     * @since 1.1
+     */
+    private void block(int[][] tiles, int offset, int difficulty) {
+        int height = difficulty < 6 ? 1 : 1 + nextInt(2);
+        int width = 2 + nextInt(2);
+        int start = offset + 2 + nextInt(HALF - 2 - width);
+        for (int x = start; x < start + width; x++) {
+            tiles[x][FLOOR - height] = TILE_FLOOR;
+            for (int y = FLOOR - height + 1; y <= FLOOR; y++)
+                tiles[x][y] = TILE_SOLID;
+        }
+    }
+
+    /**
+     * A spike floor that is too wide to jump over. The player has to run on the ceiling, later also past spikes on the ceiling
+     * @since 1.1
+     */
+    private void ceilingRun(int[][] tiles, int offset, int difficulty) {
+        for (int x = offset + 4; x < offset + 14; x++)
+            tiles[x][FLOOR] = TILE_SPIKES_UP;
+        if (difficulty >= 12) {
+            int start = offset + 7 + nextInt(3);
+            int width = 1 + nextInt(2);
+            for (int x = start; x < start + width; x++)
+                tiles[x][CEILING] = TILE_SPIKES_DOWN;
+        }
+    }
+
+    /**
+     * A booster, a pit that can only be jumped over with the higher speed and a brake pad that brings the speed back
+     * @since 1.1
+     */
+    private void boost(int[][] tiles, int offset, int difficulty) {
+        tiles[offset + 1][FLOOR] = TILE_BOOST;
+        tiles[offset + 2][FLOOR] = TILE_BOOST;
+        int width = 3 + (difficulty >= 10 ? nextInt(2) : 0);
+        for (int x = offset + 7; x < offset + 7 + width; x++)
+            tiles[x][FLOOR] = TILE_SPIKES_UP;
+        tiles[offset + 13][FLOOR] = TILE_BRAKE;
+        tiles[offset + 14][FLOOR] = TILE_BRAKE;
+    }
+
+    /**
+     * A jumper in front of a wall that is too high for a normal jump
+     * @since 1.1
+     */
+    private void jumper(int[][] tiles, int offset) {
+        tiles[offset + 3][FLOOR] = TILE_JUMPER;
+        tiles[offset + 4][FLOOR] = TILE_JUMPER;
+        for (int x = offset + 8; x < offset + 10; x++) {
+            tiles[x][FLOOR - 4] = TILE_FLOOR;
+            for (int y = FLOOR - 3; y <= FLOOR; y++)
+                tiles[x][y] = TILE_SOLID;
+        }
+    }
+
+    /**
+     * Returns a random number from 0 (inclusive) to bound (exclusive) (xorshift)
+     * @since 1.1
+     */
+    private int nextInt(int bound) {
+        long x = this.random;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        this.random = x;
+        return (int) ((x >>> 33) % bound);
+    }
+}
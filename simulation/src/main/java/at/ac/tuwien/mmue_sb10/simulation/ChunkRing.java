@@ -0,0 +1,122 @@
+/**
+ * Keeps a sliding window of generated chunks for the endless mode.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * This class holds the tiles and the tile behaviors of a fixed number of chunks side by side, in the [x][y] layout of StageData,
+ * so PlayerPhysics can use the window like a normal stage. When the player has moved far enough, shift drops the first chunk and
+ * generates a new one at the end: the columns of the dropped chunk are moved to the end and overwritten, the other columns only move
+ * by reference. The caller moves the player back by the width of a chunk, so positions stay small however far the player runs.
+ * The memory of the window is allocated once and shifting does not allocate
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class ChunkRing {
+    public static final int CHUNK_WIDTH = ChunkGenerator.CHUNK_WIDTH; //width of a chunk in tiles
+    public static final int CHUNK_WIDTH_PX = CHUNK_WIDTH * StageData.TILE_SIZE; //width of a chunk in px
+
+    public final int[][] tiles; //tile ids of the window [x][y]. EMPTY_TILE where there is no tile
+    public final int[][] collision; //tile behaviors of the window [x][y]
+
+    private final int chunks; //number of chunks in the window
+    private final int[] tiles_collision; //behaviors of all tiles of the tileset
+    private final ChunkGenerator generator; //creates the chunks
+    private final int[][] spare_tiles; //columns of the dropped chunk while shifting
+    private final int[][] spare_collision;
+    private long first_chunk; //index of the first chunk of the window since the start of the run
+
+    /**
+     * Creates a window. Call reset to generate the chunks
+     *
+     * @param chunks          Number of chunks in the window
+     * @param tiles_collision Behaviors of all tiles of the tileset
+     * @since 1.1
+     */
+    public ChunkRing(int chunks, int[] tiles_collision) {
+        this.chunks = chunks;
+        this.tiles_collision = tiles_collision;
+        this.generator = new ChunkGenerator(0);
+        this.tiles = new int[chunks * CHUNK_WIDTH][ChunkGenerator.HEIGHT];
+        this.collision = new int[chunks * CHUNK_WIDTH][ChunkGenerator.HEIGHT];
+        this.spare_tiles = new int[CHUNK_WIDTH][];
+        this.spare_collision = new int[CHUNK_WIDTH][];
+    }
+
+    /**
+     * Starts a new run and fills the window with its first chunks
+     *
+     * @param seed Seed of the run
+     * @since 1.1
+     */
+    public void reset(long seed) {
+        this.generator.reset(seed);
+        this.first_chunk = 0;
+        for (int slot = 0; slot < this.chunks; slot++)
+            generate(slot);
+    }
+
+    /**
+     * Drops the first chunk and generates the next one at the end of the window. Everything in the window moves by CHUNK_WIDTH_PX to the left
+     * @since 1.1
+     */
+    public void shift() {
+        int length = this.tiles.length;
+        System.arraycopy(this.tiles, 0, this.spare_tiles, 0, CHUNK_WIDTH);
+        System.arraycopy(this.tiles, CHUNK_WIDTH, this.tiles, 0, length - CHUNK_WIDTH);
+        System.arraycopy(this.spare_tiles, 0, this.tiles, length - CHUNK_WIDTH, CHUNK_WIDTH);
+        System.arraycopy(this.collision, 0, this.spare_collision, 0, CHUNK_WIDTH);
+        System.arraycopy(this.collision, CHUNK_WIDTH, this.collision, 0, length - CHUNK_WIDTH);
+        System.arraycopy(this.spare_collision, 0, this.collision, length - CHUNK_WIDTH, CHUNK_WIDTH);
+        this.first_chunk++;
+        generate(this.chunks - 1);
+    }
+
+    /**
+     * Generates the next chunk into a slot of the window and builds its collision
+     * @since 1.1
+     */
+    private void generate(int slot) {
+        int offset = slot * CHUNK_WIDTH;
+        this.generator.next(this.tiles, offset);
+        for (int x = offset; x < offset + CHUNK_WIDTH; x++) {
+            for (int y = 0; y < ChunkGenerator.HEIGHT; y++)
+                this.collision[x][y] = this.tiles[x][y] == StageData.EMPTY_TILE ? 0 : this.tiles_collision[this.tiles[x][y]];
+        }
+    }
+
+    /**
+     * Returns the index of the first chunk of the window since the start of the run
+     * @since 1.1
+     */
+    public long getFirstChunk() {
+        return this.first_chunk;
+    }
+
+    /**
+     * Returns the number of chunks in the window
+     * @since 1.1
+     */
+    public int getChunks() {
+        return this.chunks;
+    }
+
+    /**
+     * Returns the width of the window in tiles
+     * @since 1.1
+     */
+    public int getWidth() {
+        return this.tiles.length;
+    }
+
+    /**
+     * Returns the height of the window in tiles
+     * @since 1.1
+     */
+    public int getHeight() {
+        return ChunkGenerator.HEIGHT;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Counts the deaths of the players on every tile of a stage.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.IOException;
+
+/**
+ * This class keeps one counter per tile in a single short array (row by row), so counting a death is one array write and does not allocate.
+ * Counters stop at Short.MAX_VALUE. The highest counter is kept up to date while counting, so an overlay can scale its colors without a scan.
+ * For the database the counters are encoded as little endian shorts
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class DeathHeatmap {
+    private final int width; //width of the stage in tiles
+    private final int height; //height of the stage in tiles
+    private final short[] counts; //deaths per tile, index y * width + x
+    private int max; //highest counter
+    private int total; //sum of all counters
+
+    /**
+     * Creates a DeathHeatmap without deaths
+     *
+     * @param width  Width of the stage in tiles
+     * @param height Height of the stage in tiles
+     * @since 1.1
+     */
+    public DeathHeatmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.counts = new short[width * height];
+    }
+
+    /**
+     * Counts a death on a tile. Coordinates outside of the stage count for the nearest tile at the border
+     *
+     * @param x Tile X
+     * @param y Tile Y
+     * @return Index of the tile (y * width + x)
+     * @since 1.1
+     */
+    public int add(int x, int y) {
+        x = Math.max(0, Math.min(x, this.width - 1));
+        y = Math.max(0, Math.min(y, this.height - 1));
+        int i = y * this.width + x;
+        if (this.counts[i] == Short.MAX_VALUE)
+            return i;
+        int count = ++this.counts[i];
+        this.total++;
+        if (count > this.max)
+            this.max = count;
+        return i;
+    }
+
+    /**
+     * Counts a death at a position in px (usually the center of the player)
+     *
+     * @param x Position X in px
+     * @param y Position Y in px
+     * @return Index of the tile (y * width + x)
+     * @since 1.1
+     */
+    public int addAt(float x, float y) {
+        return add((int) Math.floor(x / StageData.TILE_SIZE), (int) Math.floor(y / StageData.TILE_SIZE));
+    }
+
+    /**
+     * Adds the counters of another heatmap of the same size
+     *
+     * @param other Heatmap to add
+     * @return false if the sizes differ (the stage has changed). Nothing is added then
+     * @since 1.1
+     */
+    public boolean merge(DeathHeatmap other) {
+        if (other.width != this.width || other.height != this.height)
+            return false;
+        this.max = 0;
+        this.total = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            int count = Math.min(this.counts[i] + other.counts[i], Short.MAX_VALUE);
+            this.counts[i] = (short) count;
+            this.total += count;
+            if (count > this.max)
+                this.max = count;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the deaths on a tile
+     * @since 1.1
+     */
+    public int get(int x, int y) {
+        return this.counts[y * this.width + x];
+    }
+
+    /**
+     * Returns the highest number of deaths on a single tile
+     * @since 1.1
+     */
+    public int getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the number of all counted deaths
+     * @since 1.1
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns the width in tiles
+     * @since 1.1
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height in tiles
+     * @since 1.1
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Encodes the counters as little endian shorts, row by row
+     *
+     * @return Encoded counters that can be read by decode
+     * @since 1.1
+     */
+    public byte[] encode() {
+        byte[] bytes = new byte[this.counts.length * 2];
+        for (int i = 0; i < this.counts.length; i++) {
+            bytes[i * 2] = (byte) this.counts[i];
+            bytes[i * 2 + 1] = (byte) (this.counts[i] >> 8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates a DeathHeatmap from counters written by encode
+     *
+     * @param width  Width of the stage in tiles
+     * @param height Height of the stage in tiles
+     * @param bytes  Encoded counters
+     * @return Heatmap with the counters
+     * @throws IOException if bytes does not fit the size
+     * @since 1.1
+     */
+    public static DeathHeatmap decode(int width, int height, byte[] bytes) throws IOException {
+        DeathHeatmap heatmap = new DeathHeatmap(width, height);
+        if (bytes.length != heatmap.counts.length * 2)
+            throw new IOException("expected " + heatmap.counts.length * 2 + " bytes but got " + bytes.length);
+        for (int i = 0; i < heatmap.counts.length; i++) {
+            short count = (short) ((bytes[i * 2] & 0xFF) | bytes[i * 2 + 1] << 8);
+            if (count < 0)
+                throw new IOException("negative count at tile " + i);
+            heatmap.counts[i] = count;
+            heatmap.total += count;
+            if (count > heatmap.max)
+                heatmap.max = count;
+        }
+        return heatmap;
+    }
+}
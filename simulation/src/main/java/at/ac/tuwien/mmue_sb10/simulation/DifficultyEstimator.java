@@ -0,0 +1,352 @@
+/**
+ * Estimates how hard the stages are by simulating many attempts of human-like players.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class is a Monte Carlo tool for level designers. The RouteFinder searches a route through a stage, then many attempts replay that route
+ * with the timing of a human: every input is pressed a bit early or late (normal distribution with JITTER_MS standard deviation)
+ * and is sometimes missed. Every attempt runs with the PlayerPhysics that GameState.update uses, until the player dies or finishes.
+ * From the attempts it estimates the chance to finish, the expected number of attempts to finish and the death probability of every
+ * segment (SEGMENT_TICKS of the route). Deaths are also counted per tile, which gives a heat grid of the stage.
+ * Attempts are spread over all processors and every attempt has its own seed, so the results do not depend on the number of threads.
+ * <p>
+ * Usage: DifficultyEstimator [attempts] [jitter in ms] [output directory]. The stages are read from the system property stages.dir and the
+ * tile behaviors from tiles.collision, like the tests. The report is printed, the heat grids are written as CSV to the output directory
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class DifficultyEstimator {
+    public static final int SEGMENT_TICKS = 120; //length of a segment in ticks (about 2 seconds)
+    public static final double JITTER_MS = 20; //standard deviation of the input timing
+    public static final double MISS_CHANCE = 0.02; //chance that an input is not pressed at all
+    public static final int MAX_ROUTE_TICKS = 60 * 60 * 5; //routes longer than 5 minutes are not searched
+    private static final int TIMEOUT_TICKS = 600; //attempts that neither die nor finish within this after the end of the route are stopped
+
+    private final int[] tiles_collision; //behaviors of all tiles of the tileset
+    private final double jitter_ms; //standard deviation of the input timing
+    private final double miss_chance; //chance that an input is missed
+    private final int threads; //number of threads for the attempts
+
+    /**
+     * Result for one stage
+     */
+    public static class Report {
+        public final String level; //level as in the file name
+        public final int width, height; //size of the stage in tiles
+        public int[] route; //inputs of the route, null if no route was found
+        public boolean route_exhausted; //the route search gave up before it expanded all states, so the stage might still have a route
+        public int route_ticks; //ticks of the route until the finish line
+        public int attempts; //simulated attempts
+        public int finishes; //attempts that reached the finish line
+        public int timeouts; //attempts that neither died nor finished
+        public int[] segment_reached; //attempts that were alive at the start of a segment
+        public int[] segment_deaths; //attempts that died in a segment
+        public int[][] heat; //deaths per tile [x][y]
+
+        Report(String level, StageData stage) {
+            this.level = level;
+            this.width = stage.width;
+            this.height = stage.height;
+            this.heat = new int[stage.width][stage.height];
+            this.segment_reached = new int[0];
+            this.segment_deaths = new int[0];
+        }
+
+        /**
+         * Returns the chance that an attempt finishes the stage
+         */
+        public double finishChance() {
+            return this.attempts == 0 ? 0 : (double) this.finishes / this.attempts;
+        }
+
+        /**
+         * Returns the expected number of attempts until the stage is finished once. Infinite if no attempt finished
+         */
+        public double expectedAttempts() {
+            return this.finishes == 0 ? Double.POSITIVE_INFINITY : (double) this.attempts / this.finishes;
+        }
+
+        /**
+         * Returns the chance to die in a segment for attempts that reached the segment
+         */
+        public double deathChance(int segment) {
+            return this.segment_reached[segment] == 0 ? 0 : (double) this.segment_deaths[segment] / this.segment_reached[segment];
+        }
+
+        /**
+         * Adds the counts of another report of the same stage
+         */
+        void add(Report other) {
+            this.attempts += other.attempts;
+            this.finishes += other.finishes;
+            this.timeouts += other.timeouts;
+            for (int s = 0; s < this.segment_reached.length; s++) {
+                this.segment_reached[s] += other.segment_reached[s];
+                this.segment_deaths[s] += other.segment_deaths[s];
+            }
+            for (int x = 0; x < this.width; x++) {
+                for (int y = 0; y < this.height; y++)
+                    this.heat[x][y] += other.heat[x][y];
+            }
+        }
+    }
+
+    /**
+     * Creates a new DifficultyEstimator
+     *
+     * @param tiles_collision Behaviors of all tiles of the tileset
+     * @param jitter_ms       Standard deviation of the input timing in ms
+     * @param miss_chance     Chance that an input is not pressed
+     * @param threads         Number of threads for the attempts
+     * @since 1.1
+     */
+    public DifficultyEstimator(int[] tiles_collision, double jitter_ms, double miss_chance, int threads) {
+        this.tiles_collision = tiles_collision;
+        this.jitter_ms = jitter_ms;
+        this.miss_chance = miss_chance;
+        this.threads = threads;
+    }
+
+    /**
+     * Searches a route through a stage and simulates attempts along it
+     *
+     * @param level    Level as in the file name
+     * @param stage    Stage to estimate
+     * @param attempts Number of attempts
+     * @param seed     Seed of the attempts
+     * @return Report of the stage. Has no attempts if no route was found
+     * @since 1.1
+     */
+    public Report estimate(String level, StageData stage, int attempts, long seed) throws InterruptedException, ExecutionException {
+        int[][] collision = stage.buildCollision(this.tiles_collision);
+        Report report = new Report(level, stage);
+        RouteFinder.Result route = RouteFinder.find(stage, collision, PlayerPhysics.TICK, MAX_ROUTE_TICKS);
+        report.route = route.inputs;
+        report.route_exhausted = route.exhausted;
+        if (report.route == null)
+            return report;
+        report.route_ticks = routeTicks(stage, collision, report.route);
+        int segments = report.route_ticks / SEGMENT_TICKS + 1;
+        report.segment_reached = new int[segments];
+        report.segment_deaths = new int[segments];
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<Future<Report>> parts = new ArrayList<>();
+            for (int t = 0; t < this.threads; t++) {
+                int from = (int) ((long) attempts * t / this.threads);
+                int to = (int) ((long) attempts * (t + 1) / this.threads);
+                parts.add(executor.submit(() -> simulate(level, stage, collision, report, from, to, seed)));
+            }
+            for (Future<Report> part : parts)
+                report.add(part.get());
+        } finally {
+            executor.shutdown();
+        }
+        return report;
+    }
+
+    /**
+     * Simulates the attempts from (inclusive) to to (exclusive)
+     * @since 1.1
+     */
+    private Report simulate(String level, StageData stage, int[][] collision, Report route, int from, int to, long seed) {
+        Report report = new Report(level, stage);
+        report.segment_reached = new int[route.segment_reached.length];
+        report.segment_deaths = new int[route.segment_deaths.length];
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(collision);
+        Random random = new Random();
+        int[] inputs = new int[route.route.length];
+        int max_ticks = route.route_ticks + TIMEOUT_TICKS;
+
+        for (int attempt = from; attempt < to; attempt++) {
+            random.setSeed(seed * 31 + attempt);
+            int count = 0;
+            for (int input : route.route) {
+                if (random.nextDouble() < this.miss_chance)
+                    continue;
+                int tick = (int) Math.max(0, (input >> 1) + Math.round(random.nextGaussian() * this.jitter_ms / PlayerPhysics.TICK));
+                inputs[count++] = tick << 1 | (input & 1);
+            }
+            Arrays.sort(inputs, 0, count);
+
+            RouteFinder.start(physics, stage);
+            report.attempts++;
+            int next = 0;
+            int tick = 0;
+            for (; tick < max_ticks; tick++) {
+                if (tick % SEGMENT_TICKS == 0 && tick / SEGMENT_TICKS < report.segment_reached.length)
+                    report.segment_reached[tick / SEGMENT_TICKS]++;
+                for (; next < count && inputs[next] >> 1 <= tick; next++) {
+                    //same input rules as GameState.onTouchEvent
+                    if (physics.no_input)
+                        continue;
+                    if ((inputs[next] & 1) == PlayerBatch.INPUT_JUMP)
+                        physics.jump();
+                    else
+                        physics.invertGravity();
+                }
+                physics.step(PlayerPhysics.TICK);
+                if (physics.dead || physics.finished)
+                    break;
+            }
+
+            if (physics.finished) {
+                report.finishes++;
+            } else if (physics.dead) {
+                report.segment_deaths[Math.min(tick / SEGMENT_TICKS, report.segment_deaths.length - 1)]++;
+                int x = (int) ((physics.pos_x + PlayerPhysics.PLAYER_WIDTH / 2f) / StageData.TILE_SIZE);
+                int y = (int) ((physics.pos_y + PlayerPhysics.PLAYER_HEIGTH / 2f) / StageData.TILE_SIZE);
+                report.heat[Math.max(0, Math.min(x, report.width - 1))][Math.max(0, Math.min(y, report.height - 1))]++;
+            } else {
+                report.timeouts++;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Replays a route without noise and returns the tick it finishes in
+     * @since 1.1
+     */
+    private static int routeTicks(StageData stage, int[][] collision, int[] route) {
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(collision);
+        RouteFinder.start(physics, stage);
+        int next = 0;
+        int tick = 0;
+        while (!physics.finished && !physics.dead && tick < MAX_ROUTE_TICKS) {
+            for (; next < route.length && route[next] >> 1 <= tick; next++) {
+                if ((route[next] & 1) == PlayerBatch.INPUT_JUMP)
+                    physics.jump();
+                else
+                    physics.invertGravity();
+            }
+            physics.step(PlayerPhysics.TICK);
+            tick++;
+        }
+        return tick;
+    }
+
+    /**
+     * Prints the reports ranked from the hardest to the easiest stage
+     *
+     * @param reports Reports of all stages
+     * @param out     Target of the report
+     * @since 1.1
+     */
+    public static void print(List<Report> reports, PrintWriter out) {
+        Report[] ranked = reports.toArray(new Report[0]);
+        Arrays.sort(ranked, (a, b) -> Double.compare(b.expectedAttempts(), a.expectedAttempts()));
+
+        out.println("rank  stage  finish%  attempts  route s  hardest segment");
+        for (int r = 0; r < ranked.length; r++) {
+            Report report = ranked[r];
+            if (report.route == null) {
+                if (report.route_exhausted)
+                    out.printf(Locale.ROOT, "%4d  %5s  route search exhausted at a %d ms tick%n", r + 1, report.level, PlayerPhysics.TICK);
+                else
+                    out.printf(Locale.ROOT, "%4d  %5s  no route found at a %d ms tick%n", r + 1, report.level, PlayerPhysics.TICK);
+                continue;
+            }
+            int hardest = 0;
+            for (int s = 1; s < report.segment_deaths.length; s++) {
+                if (report.deathChance(s) > report.deathChance(hardest))
+                    hardest = s;
+            }
+            out.printf(Locale.ROOT, "%4d  %5s  %6.1f%%  %8.1f  %7.1f  %d-%d s: %.1f%% deaths%n", r + 1, report.level, report.finishChance() * 100,
+                    report.expectedAttempts(), report.route_ticks * PlayerPhysics.TICK / 1000f,
+                    hardest * SEGMENT_TICKS * PlayerPhysics.TICK / 1000, (hardest + 1) * SEGMENT_TICKS * PlayerPhysics.TICK / 1000, report.deathChance(hardest) * 100);
+        }
+
+        for (Report report : ranked) {
+            if (report.route == null)
+                continue;
+            out.println();
+            out.printf(Locale.ROOT, "stage %s: %d attempts, %d finished, %d timed out%n", report.level, report.attempts, report.finishes, report.timeouts);
+            for (int s = 0; s < report.segment_deaths.length && report.segment_reached[s] > 0; s++) {
+                out.printf(Locale.ROOT, "  %3d-%3d s  reached %7d  died %7d  %5.1f%%%n", s * SEGMENT_TICKS * PlayerPhysics.TICK / 1000, (s + 1) * SEGMENT_TICKS * PlayerPhysics.TICK / 1000,
+                        report.segment_reached[s], report.segment_deaths[s], report.deathChance(s) * 100);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the deaths per tile as CSV, one line per tile row
+     *
+     * @param report Report of a stage
+     * @param file   Target file
+     * @since 1.1
+     */
+    public static void writeHeat(Report report, File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            for (int y = 0; y < report.height; y++) {
+                for (int x = 0; x < report.width; x++) {
+                    if (x > 0)
+                        writer.print(',');
+                    writer.print(report.heat[x][y]);
+                }
+                writer.println();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int attempts = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        double jitter_ms = args.length > 1 ? Double.parseDouble(args[1]) : JITTER_MS;
+        File output = new File(args.length > 2 ? args[2] : "difficulty");
+
+        Path stages = Paths.get(System.getProperty("stages.dir", "../app/src/main/assets"));
+        String xml = new String(Files.readAllBytes(Paths.get(System.getProperty("tiles.collision", "../app/src/main/res/values/arrays.xml"))), StandardCharsets.UTF_8);
+        DifficultyEstimator estimator = new DifficultyEstimator(StageParser.parseCollisionTable(xml), jitter_ms, MISS_CHANCE, Runtime.getRuntime().availableProcessors());
+        if (!output.isDirectory() && !output.mkdirs())
+            throw new IOException("Could not create " + output);
+
+        List<Report> reports = new ArrayList<>();
+        File[] files = stages.toFile().listFiles((dir, name) -> name.matches("stage-?\\d+\\.txt"));
+        if (files == null)
+            throw new IOException("No stages in " + stages);
+        Arrays.sort(files);
+        long start = System.nanoTime();
+        for (File file : files) {
+            String level = file.getName().substring("stage".length(), file.getName().length() - ".txt".length());
+            StageData stage;
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                stage = StageParser.parse(reader);
+            }
+            Report report = estimator.estimate(level, stage, attempts, level.hashCode());
+            reports.add(report);
+            if (report.route != null)
+                writeHeat(report, new File(output, "heat_stage" + level + ".csv"));
+        }
+
+        PrintWriter out = new PrintWriter(System.out);
+        print(reports, out);
+        out.printf(Locale.ROOT, "%n%d attempts per stage with %.0f ms jitter in %.1f s. Heat grids in %s%n", attempts, jitter_ms, (System.nanoTime() - start) / 1e9, output.getAbsolutePath());
+        out.flush();
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Counts the attempts, finishes and deaths of a stage.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class keeps the aggregates of a stage: attempts, finishes and two histograms of the deaths with fixed buckets, one of the
+ * position along the stage and one of the time since the attempt started. Counting is a few array writes and does not allocate,
+ * so it can be done in the game loop. Stats of the same stage are added up with add, so only the counts since the last save have
+ * to be written. For the database the histograms are encoded as little endian ints
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class LevelStats {
+    public static final int DISTANCE_BUCKETS = 16; //the stage is split into this many parts of the same width
+    private static final long[] TIME_LIMITS = {2_000, 5_000, 10_000, 20_000, 30_000, 60_000, 120_000}; //upper limit in ms of every time bucket but the last
+    public static final int TIME_BUCKETS = TIME_LIMITS.length + 1;
+
+    private int attempts; //starts and retries of the stage
+    private int finishes; //attempts that reached the finish line
+    private int deaths; //attempts that ended with a death
+    private final int[] distances = new int[DISTANCE_BUCKETS]; //deaths per part of the stage, from left to right
+    private final int[] times = new int[TIME_BUCKETS]; //deaths per time bucket
+
+    /**
+     * Counts the start of an attempt
+     * @since 1.1
+     */
+    public void addAttempt() {
+        this.attempts++;
+    }
+
+    /**
+     * Counts an attempt that reached the finish line
+     * @since 1.1
+     */
+    public void addFinish() {
+        this.finishes++;
+    }
+
+    /**
+     * Counts a death
+     *
+     * @param x       Position of the death in px. Positions outside of the stage count for the part at the border
+     * @param width   Width of the stage in px
+     * @param time_ms Time since the attempt started in ms
+     * @since 1.1
+     */
+    public void addDeath(float x, float width, long time_ms) {
+        int distance = (int) (x / width * DISTANCE_BUCKETS);
+        this.distances[Math.max(0, Math.min(distance, DISTANCE_BUCKETS - 1))]++;
+        int time = 0;
+        while (time < TIME_LIMITS.length && time_ms >= TIME_LIMITS[time])
+            time++;
+        this.times[time]++;
+        this.deaths++;
+    }
+
+    /**
+     * Adds the counts of other stats of the same stage
+     * @since 1.1
+     */
+    public void add(LevelStats other) {
+        this.attempts += other.attempts;
+        this.finishes += other.finishes;
+        this.deaths += other.deaths;
+        for (int i = 0; i < DISTANCE_BUCKETS; i++)
+            this.distances[i] += other.distances[i];
+        for (int i = 0; i < TIME_BUCKETS; i++)
+            this.times[i] += other.times[i];
+    }
+
+    /**
+     * Sets all counts back to 0
+     * @since 1.1
+     */
+    public void clear() {
+        this.attempts = 0;
+        this.finishes = 0;
+        this.deaths = 0;
+        Arrays.fill(this.distances, 0);
+        Arrays.fill(this.times, 0);
+    }
+
+    /**
+     * Returns whether nothing has been counted
+     * @since 1.1
+     */
+    public boolean isEmpty() {
+        return this.attempts == 0 && this.finishes == 0 && this.deaths == 0;
+    }
+
+    /**
+     * Returns the number of attempts
+     * @since 1.1
+     */
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Returns the number of finished attempts
+     * @since 1.1
+     */
+    public int getFinishes() {
+        return this.finishes;
+    }
+
+    /**
+     * Returns the number of deaths
+     * @since 1.1
+     */
+    public int getDeaths() {
+        return this.deaths;
+    }
+
+    /**
+     * Returns the deaths in a part of the stage
+     * @param bucket Part of the stage from 0 (left border) to DISTANCE_BUCKETS - 1 (right border)
+     * @since 1.1
+     */
+    public int getDistance(int bucket) {
+        return this.distances[bucket];
+    }
+
+    /**
+     * Returns the deaths in a time bucket
+     * @param bucket Time bucket from 0 (shortest) to TIME_BUCKETS - 1 (longer than getTimeLimit(TIME_BUCKETS - 2))
+     * @since 1.1
+     */
+    public int getTime(int bucket) {
+        return this.times[bucket];
+    }
+
+    /**
+     * Returns the upper limit of a time bucket in ms (exclusive)
+     * @param bucket Time bucket from 0 to TIME_BUCKETS - 2. The last bucket has no limit
+     * @since 1.1
+     */
+    public static long getTimeLimit(int bucket) {
+        return TIME_LIMITS[bucket];
+    }
+
+    /**
+     * Encodes the histograms as little endian ints, first the distances then the times
+     *
+     * @return Encoded histograms that can be read by decode
+     * @since 1.1
+     */
+    public byte[] encodeHistograms() {
+        byte[] bytes = new byte[(DISTANCE_BUCKETS + TIME_BUCKETS) * 4];
+        for (int i = 0; i < DISTANCE_BUCKETS; i++)
+            putInt(bytes, i, this.distances[i]);
+        for (int i = 0; i < TIME_BUCKETS; i++)
+            putInt(bytes, DISTANCE_BUCKETS + i, this.times[i]);
+        return bytes;
+    }
+
+    /**
+     * Creates LevelStats from the counts and the histograms written by encodeHistograms
+     *
+     * @param attempts   Number of attempts
+     * @param finishes   Number of finished attempts
+     * @param deaths     Number of deaths
+     * @param histograms Encoded histograms
+     * @return Stats with the counts
+     * @throws IOException if histograms do not fit the buckets
+     * @since 1.1
+     */
+    public static LevelStats decode(int attempts, int finishes, int deaths, byte[] histograms) throws IOException {
+        if (histograms.length != (DISTANCE_BUCKETS + TIME_BUCKETS) * 4)
+            throw new IOException("expected " + (DISTANCE_BUCKETS + TIME_BUCKETS) * 4 + " bytes but got " + histograms.length);
+        LevelStats stats = new LevelStats();
+        stats.attempts = attempts;
+        stats.finishes = finishes;
+        stats.deaths = deaths;
+        for (int i = 0; i < DISTANCE_BUCKETS; i++)
+            stats.distances[i] = getInt(histograms, i);
+        for (int i = 0; i < TIME_BUCKETS; i++)
+            stats.times[i] = getInt(histograms, DISTANCE_BUCKETS + i);
+        return stats;
+    }
+
+    /**
+     * Writes an int as little endian at an index of ints
+     * @since 1.1
+     */
+    private static void putInt(byte[] bytes, int index, int value) {
+        for (int b = 0; b < 4; b++)
+            bytes[index * 4 + b] = (byte) (value >> (b * 8));
+    }
+
+    /**
+     * Reads an int written by putInt
+     * @since 1.1
+     */
+    private static int getInt(byte[] bytes, int index) {
+        int value = 0;
+        for (int b = 0; b < 4; b++)
+            value |= (bytes[index * 4 + b] & 0xFF) << (b * 8);
+        return value;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Receives the events of the player physics that the game reacts to with sounds, animations or savefile updates.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * Listener for events that happen during a PlayerPhysics step. The simulation itself does not depend on Android,
+ * everything that needs the device (sound, database, ...) is done by the listener
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public interface PhysicsListener {
+    /**
+     * Called every step the player stands on the ground (or the ceiling if gravity is inverted)
+     * @since 1.1
+     */
+    void onLanded();
+
+    /**
+     * Called every step the player does not touch any tile
+     * @since 1.1
+     */
+    void onAirborne();
+
+    /**
+     * Called when the player died. Can be called multiple times
+     * @since 1.1
+     */
+    void onKilled();
+
+    /**
+     * Called when the player reached the finish line
+     * @since 1.1
+     */
+    void onFinished();
+
+    /**
+     * Called once when the player touched a no-input tile in front of the finish line
+     * @since 1.1
+     */
+    void onNoInput();
+
+    /**
+     * Called once when the player touched a checkpoint. The step is not finished yet, so the state of the player should be saved after the step
+     * @since 1.1
+     */
+    void onCheckpoint();
+}
@@ -0,0 +1,291 @@
+/**
+ * Simulates many rival players that race through the same stage as the player.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * This class keeps the state of all rivals in primitive arrays (one array per value) and steps them in a single loop with fixed ticks.
+ * Every rival is moved by the same PlayerPhysics as the player: its values are copied into one shared PlayerPhysics, stepped and copied back.
+ * That way there is only one implementation of the collision, and the shared instance stays in the cache while the arrays are read in order.
+ * The cost of a tick grows linearly with the number of rivals and a tick does not allocate.
+ * Rivals either replay recorded inputs or decide on their own: they jump when an obstacle is ahead and sometimes change the gravity
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class PlayerBatch {
+    public static final int INPUT_JUMP = 0; //recorded input: jump
+    public static final int INPUT_GRAVITY = 1; //recorded input: invert gravity
+
+    private static final PlayerState[] STATES = PlayerState.values(); //cached, values() creates a new array every call
+    private static final int INACTIVE = PlayerPhysics.FLAG_DEAD | PlayerPhysics.FLAG_FINISHED; //rivals with one of these flags are not stepped anymore
+
+    /*
+     * RIVALS: one entry per rival
+     */
+    public final float[] pos_x;
+    public final float[] pos_y;
+    public final float[] velocity_x;
+    public final float[] velocity_y;
+    public final float[] boost_x;
+    public final byte[] gravity;
+    public final int[] flags; //see PlayerPhysics.getFlags
+    public final byte[] state; //ordinal of the PlayerState. used for animations
+
+    /*
+     * INPUTS
+     */
+    private final int[][] inputs; //recorded inputs (tick << 1 | INPUT_*), sorted by tick. null if the rival decides on its own
+    private final int[] input_index; //next recorded input
+    private final float[] lookahead; //distance in px an obstacle has to be in front of a deciding rival to make it jump
+    private final long[] random; //xorshift state of a deciding rival
+    private final int[] gravity_chance; //chance in 1/65536 per tick that a deciding rival inverts the gravity
+
+    private final int capacity; //maximum number of rivals
+    private int size; //number of rivals
+    private int tick; //number of steps since the start
+    private int[][] collision; //tile behaviors of the stage [x][y]
+    private final PlayerPhysics physics; //shared physics every rival is stepped with
+
+    /**
+     * Creates an empty PlayerBatch
+     *
+     * @param capacity Maximum number of rivals
+     * @since 1.1
+     */
+    public PlayerBatch(int capacity) {
+        this.capacity = capacity;
+        this.pos_x = new float[capacity];
+        this.pos_y = new float[capacity];
+        this.velocity_x = new float[capacity];
+        this.velocity_y = new float[capacity];
+        this.boost_x = new float[capacity];
+        this.gravity = new byte[capacity];
+        this.flags = new int[capacity];
+        this.state = new byte[capacity];
+        this.inputs = new int[capacity][];
+        this.input_index = new int[capacity];
+        this.lookahead = new float[capacity];
+        this.random = new long[capacity];
+        this.gravity_chance = new int[capacity];
+        this.physics = new PlayerPhysics(null);
+    }
+
+    /**
+     * Sets the tile behaviors of the stage and removes all rivals
+     *
+     * @param collision Tile behaviors [x][y]
+     * @since 1.1
+     */
+    public void setCollision(int[][] collision) {
+        this.collision = collision;
+        this.physics.setCollision(collision);
+        clear();
+    }
+
+    /**
+     * Removes all rivals
+     * @since 1.1
+     */
+    public void clear() {
+        this.size = 0;
+        this.tick = 0;
+    }
+
+    /**
+     * Adds a rival that replays recorded inputs
+     *
+     * @param pos_x      Start position X in px
+     * @param pos_y      Start position Y in px
+     * @param velocity_x Velocity on x axis in px/s
+     * @param inputs     Inputs (tick << 1 | INPUT_JUMP or INPUT_GRAVITY) sorted by tick
+     * @return Index of the rival or -1 if the batch is full
+     * @since 1.1
+     */
+    public int addRecorded(float pos_x, float pos_y, float velocity_x, int[] inputs) {
+        int i = add(pos_x, pos_y, velocity_x);
+        if (i >= 0)
+            this.inputs[i] = inputs;
+        return i;
+    }
+
+    /**
+     * Adds a rival that decides on its own when to jump or invert the gravity
+     *
+     * @param pos_x      Start position X in px
+     * @param pos_y      Start position Y in px
+     * @param velocity_x Velocity on x axis in px/s
+     * @param seed       Seed of the decisions. Rivals with the same seed behave the same
+     * @return Index of the rival or -1 if the batch is full
+     * @since 1.1
+     */
+    public int addGenerated(float pos_x, float pos_y, float velocity_x, long seed) {
+        int i = add(pos_x, pos_y, velocity_x);
+        if (i < 0)
+            return i;
+        this.inputs[i] = null;
+        this.random[i] = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        this.lookahead[i] = 4 + nextInt(i) % 20;
+        this.gravity_chance[i] = nextInt(i) % 400;
+        return i;
+    }
+
+    /**
+     * Puts a new rival at a position
+     * @since 1.1
+     */
+    private int add(float pos_x, float pos_y, float velocity_x) {
+        if (this.size == this.capacity)
+            return -1;
+        int i = this.size++;
+        this.physics.reset(pos_x, pos_y, velocity_x);
+        this.physics.state = PlayerState.RUNNING;
+        store(i);
+        this.input_index[i] = 0;
+        return i;
+    }
+
+    /**
+     * Moves all active rivals by one PlayerPhysics.TICK
+     * @since 1.1
+     */
+    public void step() {
+        for (int i = 0; i < this.size; i++) {
+            if ((this.flags[i] & INACTIVE) != 0)
+                continue;
+            load(i);
+            if (this.inputs[i] != null)
+                replay(i);
+            else
+                decide(i);
+            this.physics.step(PlayerPhysics.TICK);
+            store(i);
+        }
+        this.tick++;
+    }
+
+    /**
+     * Applies the recorded inputs of the current tick
+     * @since 1.1
+     */
+    private void replay(int i) {
+        int[] inputs = this.inputs[i];
+        while (this.input_index[i] < inputs.length && inputs[this.input_index[i]] >> 1 <= this.tick) {
+            if ((inputs[this.input_index[i]] & 1) == INPUT_JUMP)
+                this.physics.jump();
+            else
+                this.physics.invertGravity();
+            this.input_index[i]++;
+        }
+    }
+
+    /**
+     * Jumps if a solid or deadly tile is ahead or the ground ends, sometimes inverts the gravity
+     * @since 1.1
+     */
+    private void decide(int i) {
+        if (this.physics.inAir)
+            return;
+        float direction = this.physics.velocity_x > 0 ? 1 : -1;
+        float front = direction > 0 ? this.physics.pos_x + PlayerPhysics.PLAYER_WIDTH : this.physics.pos_x;
+        float ahead = front + direction * this.lookahead[i];
+        float middle = this.physics.pos_y + PlayerPhysics.PLAYER_HEIGTH / 2f;
+        float ground = this.physics.gravity > 0 ? this.physics.pos_y + PlayerPhysics.PLAYER_HEIGTH + 1 : this.physics.pos_y - 1;
+
+        int obstacle = behavior(ahead, middle);
+        int floor = behavior(ahead, ground);
+        if (obstacle == 1 || obstacle == 2 || floor == 0 || floor == 2)
+            this.physics.jump();
+        else if ((nextInt(i) & 0xFFFF) < this.gravity_chance[i])
+            this.physics.invertGravity();
+    }
+
+    /**
+     * Returns the behavior of the tile at a position. Outside of the stage counts as empty
+     * @since 1.1
+     */
+    private int behavior(float x, float y) {
+        int tile_x = (int) (x / StageData.TILE_SIZE);
+        int tile_y = (int) (y / StageData.TILE_SIZE);
+        if (x < 0 || y < 0 || tile_x >= this.collision.length || tile_y >= this.collision[0].length)
+            return 0;
+        return this.collision[tile_x][tile_y];
+    }
+
+    /**
+     * Returns the next random number of a rival (xorshift)
+     * @since 1.1
+     */
+    private int nextInt(int i) {
+        long x = this.random[i];
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        this.random[i] = x;
+        return (int) (x >>> 33);
+    }
+
+    /**
+     * Copies a rival into the shared physics
+     * @since 1.1
+     */
+    private void load(int i) {
+        this.physics.pos_x = this.pos_x[i];
+        this.physics.pos_y = this.pos_y[i];
+        this.physics.velocity_x = this.velocity_x[i];
+        this.physics.velocity_y = this.velocity_y[i];
+        this.physics.boost_x = this.boost_x[i];
+        this.physics.gravity = this.gravity[i];
+        this.physics.setFlags(this.flags[i]);
+        this.physics.state = STATES[this.state[i]];
+    }
+
+    /**
+     * Copies the shared physics back into a rival
+     * @since 1.1
+     */
+    private void store(int i) {
+        this.pos_x[i] = this.physics.pos_x;
+        this.pos_y[i] = this.physics.pos_y;
+        this.velocity_x[i] = this.physics.velocity_x;
+        this.velocity_y[i] = this.physics.velocity_y;
+        this.boost_x[i] = this.physics.boost_x;
+        this.gravity[i] = this.physics.gravity;
+        this.flags[i] = this.physics.getFlags();
+        this.state[i] = (byte) this.physics.state.ordinal();
+    }
+
+    /**
+     * Returns whether a rival is still racing (neither dead nor finished)
+     * @since 1.1
+     */
+    public boolean isActive(int i) {
+        return (this.flags[i] & INACTIVE) == 0;
+    }
+
+    /**
+     * Returns the state of a rival
+     * @since 1.1
+     */
+    public PlayerState getState(int i) {
+        return STATES[this.state[i]];
+    }
+
+    /**
+     * Returns the number of rivals
+     * @since 1.1
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the simulated time in ms since the start
+     * @since 1.1
+     */
+    public long getTime() {
+        return (long) this.tick * PlayerPhysics.TICK;
+    }
+}
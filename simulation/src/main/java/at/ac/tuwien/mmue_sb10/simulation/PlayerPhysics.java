@@ -0,0 +1,551 @@
+/**
+ * Moves the player through a stage and detects collisions with the tiles.
+ * This class saves the position of the player on a 2D grid, player velocity, player acceleration, gravity (up or down), is player dead and more.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * This class computes the frame by frame movement of the player and its collision with the tiles of the stage.
+ * It does not depend on Android, so it can run in the game as well as in tests and benchmarks on the JVM.
+ * A step does not allocate any objects
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class PlayerPhysics {
+    public static final int PLAYER_WIDTH = 18; //player width in pixels
+    public static final int PLAYER_HEIGTH = 24; //player heigth in pixel (24 is maximum because of collision)
+    public static final float ACCELERATION_Y = 450; //gravity acceleration in px/s²
+    public static final int TICK = 16; //time in ms of a fixed step (recordings, rivals, timer and the simulation tools)
+    public static final int STATE_SIZE = 9; //number of floats written by save
+    public static final int FLAG_DEAD = 1 << 5; //bit of dead in getFlags
+    public static final int FLAG_FINISHED = 1 << 6; //bit of finished in getFlags
+
+    private static final PlayerState[] STATES = PlayerState.values(); //cached, values() creates a new array every call
+
+    /*
+     * PLAYER: POSITION, VELOCITY
+     */
+    public float pos_x;
+    public float pos_y;
+    public float velocity_x;
+    public float boost_x;
+    public float velocity_y;
+
+    private float move_y;
+    private float move_x;
+
+    /*
+     * PLAYER: STATE
+     */
+    public byte gravity; //gravity can either be regular or inverted (or top or bottom)
+    public boolean inAir; //player is in air?
+    public boolean onBoost; //player touches booster?
+    public boolean inInverter; //player touches inverter?
+    public boolean onJumper; //player touches jumper?
+    public boolean inCheckpoint; //player touches checkpoint?
+    public boolean first_gravity_inAir; //player is allowed to do only one gravity change in the air until he hits the ground again. This variable keeps track of that.
+    public boolean dead; //player died
+    public boolean finished; //player reached the finish line
+    public boolean no_input; //game doesnt accept input for player until stage is finished
+
+    public PlayerState state; //current state of the player. used for animations
+    public PlayerState last_state; //last state of player. used for animations
+
+    /*
+     * COLLISION
+     */
+    private int[][] collision; //tile behaviors of the stage [x][y]
+    private float col_left, col_top, col_right, col_bottom; //player corner coordinates in px after next step
+    private int tile_left, tile_top, tile_right, tile_bottom; //player corner coordinates in tiles after next step
+    public final int[] corners; //0=TopLeft, 1=TopRight, 2=BottomRight, 3=BottomLeft
+    private float col_time_x; //collision time on x-axis
+    private float col_time_y; //collision time on y-axis
+
+    private final PhysicsListener listener; //receives events like landing or dying. may be null
+
+    /**
+     * Creates a new PlayerPhysics instance
+     *
+     * @param listener Listener for events during a step. May be null
+     * @since 1.1
+     */
+    public PlayerPhysics(PhysicsListener listener) {
+        this.listener = listener;
+        this.corners = new int[4];
+        this.state = PlayerState.IDLE;
+    }
+
+    /**
+     * Sets the tile behaviors of the stage the player moves through
+     *
+     * @param collision Tile behaviors [x][y]
+     * @since 1.1
+     */
+    public void setCollision(int[][] collision) {
+        this.collision = collision;
+    }
+
+    /**
+     * Puts the player at a position and resets velocity, gravity and all collision states
+     *
+     * @param pos_x      Position X in px
+     * @param pos_y      Position Y in px
+     * @param velocity_x Velocity on x axis in px/s
+     * @since 1.1
+     */
+    public void reset(float pos_x, float pos_y, float velocity_x) {
+        this.pos_x = pos_x;
+        this.pos_y = pos_y;
+        this.velocity_x = velocity_x;
+        this.boost_x = 1.0f;
+        this.velocity_y = 0;
+        this.dead = false;
+        this.finished = false;
+        this.no_input = false;
+        this.inAir = true;
+        this.onBoost = false;
+        this.inInverter = false;
+        this.onJumper = false;
+        this.inCheckpoint = false;
+        this.first_gravity_inAir = false;
+        this.gravity = 1;
+    }
+
+    /**
+     * Sets the state of the player and keeps the old one as last state
+     *
+     * @param state New state of the player
+     * @since 1.1
+     */
+    public void setState(PlayerState state) {
+        this.last_state = this.state;
+        this.state = state;
+    }
+
+    /**
+     * Writes the state of the player (position, velocities, gravity, boost, flags and animation state) into a float array
+     *
+     * @param buffer Array to write into
+     * @param offset Index of the first value. STATE_SIZE values are written
+     * @since 1.1
+     */
+    public void save(float[] buffer, int offset) {
+        buffer[offset] = this.pos_x;
+        buffer[offset + 1] = this.pos_y;
+        buffer[offset + 2] = this.velocity_x;
+        buffer[offset + 3] = this.velocity_y;
+        buffer[offset + 4] = this.boost_x;
+        buffer[offset + 5] = this.gravity;
+        buffer[offset + 6] = getFlags();
+        buffer[offset + 7] = this.state == null ? -1 : this.state.ordinal();
+        buffer[offset + 8] = this.last_state == null ? -1 : this.last_state.ordinal();
+    }
+
+    /**
+     * Restores the state of the player that has been written by save
+     *
+     * @param buffer Array to read from
+     * @param offset Index of the first value
+     * @since 1.1
+     */
+    public void restore(float[] buffer, int offset) {
+        this.pos_x = buffer[offset];
+        this.pos_y = buffer[offset + 1];
+        this.velocity_x = buffer[offset + 2];
+        this.velocity_y = buffer[offset + 3];
+        this.boost_x = buffer[offset + 4];
+        this.gravity = (byte) buffer[offset + 5];
+        setFlags((int) buffer[offset + 6]);
+        int state = (int) buffer[offset + 7];
+        int last_state = (int) buffer[offset + 8];
+        this.state = state < 0 ? null : STATES[state];
+        this.last_state = last_state < 0 ? null : STATES[last_state];
+    }
+
+    /**
+     * Packs the boolean states of the player into one int
+     *
+     * @return Bitmask of the states. Can be read by setFlags
+     * @since 1.1
+     */
+    public int getFlags() {
+        return (this.inAir ? 1 : 0)
+                | (this.onBoost ? 1 << 1 : 0)
+                | (this.inInverter ? 1 << 2 : 0)
+                | (this.onJumper ? 1 << 3 : 0)
+                | (this.first_gravity_inAir ? 1 << 4 : 0)
+                | (this.dead ? FLAG_DEAD : 0)
+                | (this.finished ? FLAG_FINISHED : 0)
+                | (this.no_input ? 1 << 7 : 0)
+                | (this.inCheckpoint ? 1 << 8 : 0);
+    }
+
+    /**
+     * Sets the boolean states of the player from a bitmask written by getFlags
+     *
+     * @param flags Bitmask of the states
+     * @since 1.1
+     */
+    public void setFlags(int flags) {
+        this.inAir = (flags & 1) != 0;
+        this.onBoost = (flags & 1 << 1) != 0;
+        this.inInverter = (flags & 1 << 2) != 0;
+        this.onJumper = (flags & 1 << 3) != 0;
+        this.first_gravity_inAir = (flags & 1 << 4) != 0;
+        this.dead = (flags & FLAG_DEAD) != 0;
+        this.finished = (flags & FLAG_FINISHED) != 0;
+        this.no_input = (flags & 1 << 7) != 0;
+        this.inCheckpoint = (flags & 1 << 8) != 0;
+    }
+
+    /**
+     * Moves the player by deltaFrameTime. Handles collision detection, gravity, movement, ...
+     *
+     * @param deltaFrameTime The passed time in ms
+     * @since 1.1
+     */
+    public void step(long deltaFrameTime) {
+        this.velocity_y += ((float) deltaFrameTime / 1000) * ACCELERATION_Y * this.gravity;
+        this.move_y = Math.min(this.velocity_y * ((float) deltaFrameTime / 1000), 12);
+        this.move_x = Math.min(this.velocity_x * this.boost_x * ((float) deltaFrameTime / 1000), 23);
+
+        //Player position after this deltatime-step
+        this.col_left = this.pos_x + this.move_x;
+        this.col_top = this.pos_y + this.move_y;
+        this.col_right = this.col_left + PLAYER_WIDTH;
+        this.col_bottom = this.col_top + PLAYER_HEIGTH;
+
+        if (readCorners(this.col_left, this.col_top)) {
+            if (touches(9)) {
+                //Checkpoint Collision. Checkpoints do not block the player, so they are treated as empty tiles afterwards
+                if (!this.inCheckpoint) {
+                    this.inCheckpoint = true;
+                    if (this.listener != null)
+                        this.listener.onCheckpoint();
+                }
+                ignore(9);
+            } else {
+                if (this.inCheckpoint)
+                    this.inCheckpoint = false;
+            }
+
+            //Player is inside bounds => CHECK COLLISION!
+            if (this.corners[0] != 0 || this.corners[1] != 0 || this.corners[2] != 0 || this.corners[3] != 0) {
+                //At least one of the player corners collides with a tile with behavior (solid, die, ...)
+                if ((this.corners[0] == 1 && this.corners[1] == 1) || (this.corners[2] == 1 && this.corners[3] == 1)) {
+                    //Y Solid Collision => Position adjustment
+                    adjustPositionY();
+                    //X Collision can still happen
+                    checkCollisionX();
+                    if (this.onBoost)
+                        this.onBoost = false;
+                    if (this.onJumper)
+                        this.onJumper = false;
+                } else if ((this.corners[0] == 4 && this.corners[1] == 4) || (this.corners[2] == 4 && this.corners[3] == 4)) {
+                    adjustPositionY();
+                    checkCollisionX();
+                    boostRight();
+                } else if ((this.corners[0] == 5 && this.corners[1] == 5) || (this.corners[2] == 5 && this.corners[3] == 5)) {
+                    adjustPositionY();
+                    checkCollisionX();
+                    boostLeft();
+                } else if ((this.corners[0] == 8 && this.corners[1] == 8) || (this.corners[2] == 8 && this.corners[3] == 8)) {
+                    adjustPositionY();
+                    if (!this.onJumper)
+                        this.onJumper = true;
+                } else if ((this.corners[0] != 0 && this.corners[3] != 0) || (this.corners[1] != 0 && this.corners[2] != 0)) {
+                    //X Collision
+                    checkCollisionX();
+                } else {
+                    //Only one corner collided, can be either X or Y first
+                    calcCollisionTimeX();
+                    calcCollisionTimeY();
+                    if (this.col_time_y < 0 && this.col_time_x > 0) {
+                        //no valid collision on Y, collision on X
+                        kill();
+                        this.pos_y = this.col_top;
+                    } else {
+                        //Y before X => Y Solid Collosion => Position adjustment
+                        adjustPositionY();
+                        if (touches(4)) {
+                            boostRight();
+                        } else if (touches(5)) {
+                            boostLeft();
+                        } else if (touches(8)) {
+                            if (!this.onJumper)
+                                this.onJumper = true;
+                        } else {
+                            if (this.onBoost)
+                                this.onBoost = false;
+                            if (this.onJumper)
+                                this.onJumper = false;
+                        }
+                    }
+                }
+
+                if (touches(3)) {
+                    //X Inverter Collision
+                    if (!this.inInverter) {
+                        this.velocity_x *= -1;
+                        this.inInverter = true;
+                    }
+                    this.pos_y = this.col_top;
+                } else if (touches(6)) {
+                    //X Finish Collision
+                    finish();
+                    this.pos_y = this.col_top;
+                } else if (touches(7)) {
+                    //X Collision with no-input tile
+                    //happens before finish line for running out of screen effect
+                    setNoInput();
+                    this.pos_y = this.col_top;
+                } else if (touches(2)) {
+                    //X Death Collision (spikes)
+                    kill();
+                    this.pos_y = this.col_top;
+                } else {
+                    if (this.inInverter)
+                        this.inInverter = false;
+                }
+
+                if (this.inAir)
+                    this.inAir = false;
+                if (this.first_gravity_inAir)
+                    this.first_gravity_inAir = false;
+            } else {
+                //None of the player corners collides with anything
+                this.pos_y = this.col_top;
+                if (!this.inAir)
+                    this.inAir = true;
+                if (this.onBoost)
+                    this.onBoost = false;
+                if (this.onJumper)
+                    this.onJumper = false;
+
+                if (this.listener != null)
+                    this.listener.onAirborne();
+            }
+            this.pos_x = this.col_left;
+        } else {
+            //Player is out of bounds => DIE!
+            kill();
+            this.pos_x = this.col_left;
+            this.pos_y = this.col_top;
+        }
+    }
+
+    /**
+     * Looks up the tile behaviors under the four corners of the player and stores them in corners
+     *
+     * @param left Left edge of the player in px
+     * @param top  Top edge of the player in px
+     * @return false if a corner is outside of the stage. corners is not changed then
+     * @since 1.1
+     */
+    public boolean readCorners(float left, float top) {
+        this.tile_left = (int) (left / StageData.TILE_SIZE);
+        this.tile_top = (int) (top / StageData.TILE_SIZE);
+        this.tile_right = (int) ((left + PLAYER_WIDTH) / StageData.TILE_SIZE);
+        this.tile_bottom = (int) ((top + PLAYER_HEIGTH) / StageData.TILE_SIZE);
+
+        if (this.tile_left < 0 || this.tile_top < 0 || this.tile_right >= this.collision.length || this.tile_bottom >= this.collision[0].length)
+            return false;
+
+        this.corners[0] = this.collision[this.tile_left][this.tile_top]; //TopLeft
+        this.corners[1] = this.collision[this.tile_right][this.tile_top]; //TopRight
+        this.corners[2] = this.collision[this.tile_right][this.tile_bottom]; //BottomRight
+        this.corners[3] = this.collision[this.tile_left][this.tile_bottom]; //BottomLeft
+        return true;
+    }
+
+    /**
+     * Inverts the gravity to face upside down. Also marks the player to be in air
+     * Only works if player is not in air or has not inverted the gravity in the air yet
+     *
+     * @return true if the gravity has been inverted
+     * @since 1.1
+     */
+    public boolean invertGravity() {
+        if (!this.inAir || !this.first_gravity_inAir) {
+            this.gravity *= -1;
+            this.inAir = true;
+            this.first_gravity_inAir = true;
+            setState(PlayerState.GRAVITY);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the vertical velocity of the player to make a small jump (or a high jump on a jumper). Also marks the player to be in air
+     * Only works if player is not in air
+     *
+     * @return true if the player jumped
+     * @since 1.1
+     */
+    public boolean jump() {
+        if (!this.inAir) {
+            if (this.onJumper)
+                this.velocity_y = -360 * this.gravity;
+            else
+                this.velocity_y = -240 * this.gravity;
+            this.inAir = true;
+            setState(PlayerState.START_END_JUMP);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether one of the corners touches a tile with the behavior
+     * @since 1.1
+     */
+    private boolean touches(int behavior) {
+        return this.corners[0] == behavior || this.corners[1] == behavior || this.corners[2] == behavior || this.corners[3] == behavior;
+    }
+
+    /**
+     * Treats the corners with the behavior as empty tiles
+     * @since 1.1
+     */
+    private void ignore(int behavior) {
+        for (int i = 0; i < this.corners.length; i++) {
+            if (this.corners[i] == behavior)
+                this.corners[i] = 0;
+        }
+    }
+
+    /**
+     * Boosts the player speed by a factor of 1.5 if going right, otherwise slows down by factor of 0.66
+     * Only works once per boost platform
+     *
+     * @since 0.1
+     */
+    private void boostRight() {
+        if (this.velocity_x > 0 && !this.onBoost) {
+            this.boost_x *= 1.5;
+            this.onBoost = true;
+        } else if (this.velocity_x < 0 && !this.onBoost) {
+            this.boost_x *= (2f / 3);
+            this.onBoost = true;
+        }
+    }
+
+    /**
+     * Boosts the player speed by a factor of 1.5 if going left, otherwise slows down by factor of 0.66
+     * Only works once per boost platform
+     *
+     * @since 0.1
+     */
+    private void boostLeft() {
+        if (this.velocity_x < 0 && !this.onBoost) {
+            this.boost_x *= 1.5;
+            this.onBoost = true;
+        } else if (this.velocity_x > 0 && !this.onBoost) {
+            this.boost_x *= (2f / 3);
+            this.onBoost = true;
+        }
+    }
+
+    /**
+     * When player object collides with tiles on Y axis (basically when it is walking on the ground), adjust Y position to be exactly
+     *
+     * @since 0.1
+     */
+    private void adjustPositionY() {
+        if (this.velocity_y > 0)
+            this.pos_y = this.col_bottom - this.col_bottom % StageData.TILE_SIZE - PLAYER_HEIGTH;
+        else
+            this.pos_y = this.col_top + (StageData.TILE_SIZE - this.col_top % StageData.TILE_SIZE);
+
+        this.velocity_y = 0;
+        setState(PlayerState.RUNNING);
+
+        if (this.listener != null)
+            this.listener.onLanded();
+    }
+
+    /**
+     * When player object collides with a wall horizontally, player dies
+     *
+     * @since 0.1
+     */
+    private void checkCollisionX() {
+        if ((this.corners[0] == 1 && this.corners[3] == 1) || (this.corners[1] == 1 && this.corners[2] == 1)) {
+            kill();
+            this.pos_x = this.col_left;
+            this.pos_y = this.col_top;
+        }
+    }
+
+    /**
+     * Calculates the exact time it took the player object to collide with the tile object on x axis
+     * Player object might overlap the collided object, this calculates exact time it takes to collide without overlap
+     *
+     * @since 0.1
+     */
+    private void calcCollisionTimeX() {
+        if (this.velocity_x < 0)
+            this.col_time_x = (this.tile_right * StageData.TILE_SIZE - this.pos_x) / (this.velocity_x * this.boost_x);
+        else
+            this.col_time_x = (this.tile_left * StageData.TILE_SIZE + (StageData.TILE_SIZE - PLAYER_WIDTH) - this.pos_x) / (this.velocity_x * this.boost_x); //TODO: (24 - PLAYER_WIDTH) only works with PLAYER_WIDTH < 24
+    }
+
+    /**
+     * Calculates the exact time it took the player object to collide with the tile object on y axis
+     * Player object might overlap the collided object, this calculates exact time it takes to collide without overlap
+     *
+     * @since 0.1
+     */
+    private void calcCollisionTimeY() {
+        if (this.velocity_y < 0)
+            this.col_time_y = (this.tile_bottom * StageData.TILE_SIZE - this.pos_y) / this.velocity_y;
+        else
+            this.col_time_y = (this.tile_top * StageData.TILE_SIZE - this.pos_y) / this.velocity_y;
+    }
+
+    /**
+     * Sets the player to finished and applies the dying animation (same animation as dying)
+     * @since 1.0
+     */
+    private void finish() {
+        this.finished = true;
+        setState(PlayerState.DYING);
+
+        if (this.listener != null)
+            this.listener.onFinished();
+    }
+
+    /**
+     * Prepares finishing a stage by not allowing any more input
+     * @since 1.0
+     */
+    private void setNoInput() {
+        if (!this.no_input) {
+            this.no_input = true;
+            this.gravity = 1;
+            this.boost_x = 1.0f;
+            if (this.velocity_y < 0)
+                this.velocity_y = 0;
+
+            if (this.listener != null)
+                this.listener.onNoInput();
+        }
+    }
+
+    /**
+     * Sets the player to dead and applies the dying animation. Can be called multiple times
+     * @since 1.0
+     */
+    private void kill() {
+        if (!this.dead)
+            this.dead = true;
+        setState(PlayerState.DYING);
+
+        if (this.listener != null)
+            this.listener.onKilled();
+    }
+}
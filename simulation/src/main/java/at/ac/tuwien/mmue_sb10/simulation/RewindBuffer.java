@@ -0,0 +1,117 @@
+/**
+ * Keeps snapshots of the player of the last seconds, so the game can be rewound.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * This class stores one snapshot of the player per update in a preallocated float array that is used as ring buffer.
+ * When the buffer is full, the oldest snapshot is overwritten, so the memory stays bounded. Recording and rewinding do not allocate
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class RewindBuffer {
+    private static final int SNAPSHOT_SIZE = PlayerPhysics.STATE_SIZE + 1; //player state and the time of the update
+
+    private final float[] snapshots; //SNAPSHOT_SIZE values per snapshot
+    private final int capacity; //maximum number of snapshots
+    private int top; //index of the newest snapshot
+    private int count; //number of valid snapshots
+
+    /**
+     * Creates an empty RewindBuffer
+     *
+     * @param capacity Maximum number of snapshots. At 60 updates per second, 600 snapshots cover 10 seconds
+     * @since 1.1
+     */
+    public RewindBuffer(int capacity) {
+        this.capacity = capacity;
+        this.snapshots = new float[capacity * SNAPSHOT_SIZE];
+        this.top = capacity - 1;
+    }
+
+    /**
+     * Stores the current state of the player as newest snapshot
+     *
+     * @param physics        Player to store
+     * @param deltaFrameTime Time in ms of the update that led to this state
+     * @since 1.1
+     */
+    public void record(PlayerPhysics physics, long deltaFrameTime) {
+        this.top = (this.top + 1) % this.capacity;
+        physics.save(this.snapshots, this.top * SNAPSHOT_SIZE);
+        this.snapshots[this.top * SNAPSHOT_SIZE + PlayerPhysics.STATE_SIZE] = deltaFrameTime;
+        if (this.count < this.capacity)
+            this.count++;
+    }
+
+    /**
+     * Goes back in time by dropping the newest snapshots and restores the player to the snapshot that is the newest afterwards.
+     * The oldest snapshot is never dropped, so rewinding can be continued until the buffer is cleared
+     *
+     * @param physics Player to restore
+     * @param time    Time in ms to go back
+     * @return Time in ms that has actually been rewound. Less than time if the buffer does not reach back far enough
+     * @since 1.1
+     */
+    public long rewind(PlayerPhysics physics, long time) {
+        if (this.count == 0)
+            return 0;
+        long rewound = 0;
+        while (rewound < time && this.count > 1) {
+            rewound += (long) this.snapshots[this.top * SNAPSHOT_SIZE + PlayerPhysics.STATE_SIZE];
+            this.top = (this.top - 1 + this.capacity) % this.capacity;
+            this.count--;
+        }
+        physics.restore(this.snapshots, this.top * SNAPSHOT_SIZE);
+        return rewound;
+    }
+
+    /**
+     * Moves all snapshots to the left, when the stage has been moved under the player (endless mode).
+     * Snapshots that end up left of the stage are dropped together with all older ones
+     *
+     * @param distance Distance in px the stage has been moved to the left
+     * @since 1.1
+     */
+    public void shift(float distance) {
+        for (int n = 0; n < this.count; n++) {
+            int offset = ((this.top - n + this.capacity) % this.capacity) * SNAPSHOT_SIZE;
+            this.snapshots[offset] -= distance;
+            if (this.snapshots[offset] < 0) {
+                this.count = n;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the time in ms the buffer reaches back from the newest snapshot
+     * @since 1.1
+     */
+    public long getRecordedTime() {
+        long time = 0;
+        for (int n = 0; n < this.count - 1; n++)
+            time += (long) this.snapshots[((this.top - n + this.capacity) % this.capacity) * SNAPSHOT_SIZE + PlayerPhysics.STATE_SIZE];
+        return time;
+    }
+
+    /**
+     * Returns the number of stored snapshots
+     * @since 1.1
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Removes all snapshots
+     * @since 1.1
+     */
+    public void clear() {
+        this.count = 0;
+        this.top = this.capacity - 1;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Searches a sequence of inputs that brings the player from the start to the finish line of a stage.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+/**
+ * This class finds a route through a stage with a breadth first search over the states of PlayerPhysics.
+ * Every DECISION_TICKS the player can do nothing, jump or invert the gravity. States that land on the same position (in steps of
+ * a cell) with the same vertical velocity (in steps of a velocity step), gravity, direction, boost and flags are only expanded
+ * once, which keeps the search small because the player moves with a constant speed.
+ * <p>
+ * Merging states is not exact: a slowed down player can stay in the cell of the state it came from and is cut off, and a merged state
+ * can die where the other one would have made it. So the search starts with coarse cells, which are fast and find most routes, and
+ * searches again with fine cells if the coarse search has no route. The first route that is found has the earliest finish among all
+ * routes of its search
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class RouteFinder {
+    private static final int DECISION_TICKS = 3; //ticks between two decisions
+    private static final int[] CELL_SIZES = {3, 1}; //px of a position cell for the visited states of every search
+    private static final int[] VELOCITY_STEPS = {30, 10}; //px/s of a velocity step on y for the visited states of every search
+    private static final int MAX_STATES = 4_000_000; //the search gives up after this many expanded states
+    private static final double LOG_BOOST = Math.log(1.5); //log of the factor of a booster
+
+    /**
+     * State of the search
+     */
+    private static final class Node {
+        final float[] state; //saved PlayerPhysics
+        final Node parent; //state before the decision. null at the start
+        final int input; //tick << 1 | PlayerBatch.INPUT_* of the decision, -1 if nothing was pressed
+        final int tick; //ticks since the start
+
+        Node(float[] state, Node parent, int input, int tick) {
+            this.state = state;
+            this.parent = parent;
+            this.input = input;
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * Result of a search
+     * @since 1.1
+     */
+    public static final class Result {
+        public final int[] inputs; //inputs of the route (tick << 1 | PlayerBatch.INPUT_JUMP or INPUT_GRAVITY) sorted by tick, null if no route was found
+        public final boolean exhausted; //the fine search gave up after MAX_STATES before all states were expanded, so there might still be a route
+
+        Result(int[] inputs, boolean exhausted) {
+            this.inputs = inputs;
+            this.exhausted = exhausted;
+        }
+    }
+
+    private RouteFinder() {
+    }
+
+    /**
+     * Searches a route from the start to the finish line
+     *
+     * @param stage     Stage to search a route through
+     * @param collision Tile behaviors of the stage, see StageData.buildCollision
+     * @param tick_ms   Time in ms of a step
+     * @param max_ticks The search gives up on routes that take longer than this
+     * @return Result with the inputs of the route, or without inputs if there is no route or the search was exhausted
+     * @since 1.1
+     */
+    public static Result find(StageData stage, int[][] collision, long tick_ms, int max_ticks) {
+        Result result = null;
+        for (int i = 0; i < CELL_SIZES.length && (result == null || result.inputs == null); i++)
+            result = search(stage, collision, tick_ms, max_ticks, CELL_SIZES[i], VELOCITY_STEPS[i]);
+        return result;
+    }
+
+    /**
+     * Searches a route with one size of the cells
+     * @since 1.1
+     */
+    private static Result search(StageData stage, int[][] collision, long tick_ms, int max_ticks, int cell_size, int velocity_step) {
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(collision);
+        start(physics, stage);
+
+        float[] start = new float[PlayerPhysics.STATE_SIZE];
+        physics.save(start, 0);
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        HashSet<Long> visited = new HashSet<>();
+        queue.add(new Node(start, null, -1, 0));
+
+        int expanded = 0;
+        while (!queue.isEmpty()) {
+            if (expanded++ == MAX_STATES)
+                return new Result(null, true);
+            Node node = queue.poll();
+            if (node.tick >= max_ticks)
+                continue;
+            //nothing first, so routes with fewer inputs are preferred
+            for (int action = -1; action <= PlayerBatch.INPUT_GRAVITY; action++) {
+                physics.restore(node.state, 0);
+                if (action >= 0 && physics.no_input)
+                    break; //same input rules as GameState.onTouchEvent
+                if (action == PlayerBatch.INPUT_JUMP && !physics.jump())
+                    continue;
+                if (action == PlayerBatch.INPUT_GRAVITY && !physics.invertGravity())
+                    continue;
+
+                int tick = node.tick;
+                for (int t = 0; t < DECISION_TICKS && !physics.dead && !physics.finished; t++) {
+                    physics.step(tick_ms);
+                    tick++;
+                }
+                if (physics.dead)
+                    continue;
+
+                Node child = new Node(null, node, action < 0 ? -1 : node.tick << 1 | action, tick);
+                if (physics.finished)
+                    return new Result(inputs(child), false);
+                if (!visited.add(key(physics, cell_size, velocity_step)))
+                    continue;
+                float[] state = new float[PlayerPhysics.STATE_SIZE];
+                physics.save(state, 0);
+                queue.add(new Node(state, node, child.input, tick));
+            }
+        }
+        return new Result(null, false);
+    }
+
+    /**
+     * Puts the player at the start of the stage like GameState does
+     *
+     * @param physics Player to put at the start
+     * @param stage   Stage with the start position
+     * @since 1.1
+     */
+    public static void start(PlayerPhysics physics, StageData stage) {
+        physics.reset(stage.player_start_x * StageData.TILE_SIZE, stage.player_start_y * StageData.TILE_SIZE + StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, stage.player_velocity_x);
+        physics.setState(PlayerState.WAKEUP);
+    }
+
+    /**
+     * Collects the inputs on the way from the start to a node
+     * @since 1.1
+     */
+    private static int[] inputs(Node node) {
+        int count = 0;
+        for (Node n = node; n != null; n = n.parent) {
+            if (n.input >= 0)
+                count++;
+        }
+        int[] inputs = new int[count];
+        for (Node n = node; n != null; n = n.parent) {
+            if (n.input >= 0)
+                inputs[--count] = n.input;
+        }
+        return inputs;
+    }
+
+    /**
+     * Returns the key of a state for the visited states
+     * @since 1.1
+     */
+    private static long key(PlayerPhysics physics, int cell_size, int velocity_step) {
+        //every part has its own range, so different states never share a key by overflowing into the next part.
+        //living players are inside the stage, so the positions are not negative
+        long key = (long) (physics.pos_x / cell_size); //up to 2^19 cells
+        key = key * 65536 + (long) (physics.pos_y / cell_size);
+        //boosts multiply by 1.5 or 2/3, so the boost is 1.5^n. n is kept instead of the rounded boost
+        key = key * 32 + (Math.round(Math.log(physics.boost_x) / LOG_BOOST) & 31);
+        key = key * 2 + (physics.gravity > 0 ? 1 : 0);
+        key = key * 2 + (physics.velocity_x > 0 ? 1 : 0);
+        key = key * 512 + physics.getFlags(); //in air, on boost, on jumper, ...
+        //velocity on y decides where a jump ends. 4096 steps cover far more than a fall through the highest stage
+        key = key * 4096 + (Math.round(physics.velocity_y / velocity_step) + 2048);
+        return key;
+    }
+}
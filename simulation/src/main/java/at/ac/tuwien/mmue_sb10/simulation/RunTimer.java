@@ -0,0 +1,179 @@
+/**
+ * Measures the play time of an attempt in simulation ticks.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.IOException;
+
+/**
+ * This class adds up the time between two calls of update in ns (System.nanoTime) and counts it in ticks of PlayerPhysics.TICK ms.
+ * The time since the last call only counts if the simulation has advanced by it, so the timer stops in exactly the frames the game
+ * is paused and no fraction of a tick is lost when it continues. The remainder below a tick is kept, so the timer does not drift.
+ * Splits are the ticks at the checkpoints of the stage and at the finish line
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class RunTimer {
+    public static final long TICK_NS = PlayerPhysics.TICK * 1_000_000L; //length of a tick in ns
+
+    private final int[] splits; //ticks at every split
+    private int split_count; //number of entries in splits
+    private long elapsed_ns; //counted time in ns
+    private long last_ns; //time of the last update
+    private boolean updated; //update has been called since the last reset
+
+    /**
+     * Creates a RunTimer
+     *
+     * @param max_splits Number of splits that are kept. Later splits are ignored
+     * @since 1.1
+     */
+    public RunTimer(int max_splits) {
+        this.splits = new int[max_splits];
+    }
+
+    /**
+     * Starts a new attempt at 0 ticks without splits
+     * @since 1.1
+     */
+    public void reset() {
+        this.elapsed_ns = 0;
+        this.split_count = 0;
+        this.updated = false;
+    }
+
+    /**
+     * Counts the time since the last update. Has to be called every frame, also while the timer does not run
+     *
+     * @param now_ns  Current time in ns (System.nanoTime)
+     * @param running Whether the simulation advances by the time since the last update in this frame
+     * @since 1.1
+     */
+    public void update(long now_ns, boolean running) {
+        if (running && this.updated)
+            this.elapsed_ns += now_ns - this.last_ns;
+        this.last_ns = now_ns;
+        this.updated = true;
+    }
+
+    /**
+     * Returns the counted time in ticks
+     * @since 1.1
+     */
+    public int getTicks() {
+        return (int) (this.elapsed_ns / TICK_NS);
+    }
+
+    /**
+     * Keeps the current ticks as split
+     *
+     * @return Index of the split or -1 if there is no space for more splits
+     * @since 1.1
+     */
+    public int split() {
+        if (this.split_count == this.splits.length)
+            return -1;
+        this.splits[this.split_count] = getTicks();
+        return this.split_count++;
+    }
+
+    /**
+     * Goes back to a time of the attempt and drops all later splits. Used when the player continues at a checkpoint
+     *
+     * @param count Number of splits to keep. 0 and 0 ticks start the attempt again
+     * @param ticks Time to continue with, as returned by getTicks when the checkpoint was reached
+     * @since 1.1
+     */
+    public void restoreSplit(int count, int ticks) {
+        this.split_count = Math.min(count, this.split_count);
+        this.elapsed_ns = ticks * TICK_NS;
+    }
+
+    /**
+     * Returns the ticks of a split
+     * @since 1.1
+     */
+    public int getSplit(int index) {
+        return this.splits[index];
+    }
+
+    /**
+     * Returns the number of splits of the attempt
+     * @since 1.1
+     */
+    public int getSplitCount() {
+        return this.split_count;
+    }
+
+    /**
+     * Encodes the splits as little endian ints
+     *
+     * @return Encoded splits that can be read by decodeSplits
+     * @since 1.1
+     */
+    public byte[] encodeSplits() {
+        byte[] bytes = new byte[this.split_count * 4];
+        for (int i = 0; i < this.split_count; i++) {
+            int split = this.splits[i];
+            for (int b = 0; b < 4; b++)
+                bytes[i * 4 + b] = (byte) (split >> (b * 8));
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads splits written by encodeSplits
+     *
+     * @param bytes Encoded splits
+     * @return Ticks of the splits
+     * @throws IOException if bytes are not a list of splits
+     * @since 1.1
+     */
+    public static int[] decodeSplits(byte[] bytes) throws IOException {
+        if (bytes.length % 4 != 0)
+            throw new IOException("expected a multiple of 4 bytes but got " + bytes.length);
+        int[] splits = new int[bytes.length / 4];
+        for (int i = 0; i < splits.length; i++) {
+            int split = 0;
+            for (int b = 0; b < 4; b++)
+                split |= (bytes[i * 4 + b] & 0xFF) << (b * 8);
+            if (split < 0 || (i > 0 && split < splits[i - 1]))
+                throw new IOException("split " + i + " is out of order");
+            splits[i] = split;
+        }
+        return splits;
+    }
+
+    /**
+     * Writes ticks as m:ss.cc into a char array without allocating
+     *
+     * @param ticks  Ticks to write
+     * @param buffer Array to write into. Needs space for up to 16 characters
+     * @param offset Index of the first character to write
+     * @return Number of written characters
+     * @since 1.1
+     */
+    public static int format(int ticks, char[] buffer, int offset) {
+        long centis = (long) ticks * PlayerPhysics.TICK / 10;
+        long minutes = centis / 6000;
+        int start = offset;
+        int digits = 1;
+        for (long rest = minutes / 10; rest > 0; rest /= 10)
+            digits++;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + minutes % 10);
+            minutes /= 10;
+        }
+        offset += digits;
+        buffer[offset++] = ':';
+        buffer[offset++] = (char) ('0' + centis / 1000 % 6);
+        buffer[offset++] = (char) ('0' + centis / 100 % 10);
+        buffer[offset++] = '.';
+        buffer[offset++] = (char) ('0' + centis / 10 % 10);
+        buffer[offset++] = (char) ('0' + centis % 10);
+        return offset - start;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Holds the content of a stage file without any graphics.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+/**
+ * This class holds the parsed values of a stage file (assets/stageN.txt). The graphics are created by the Stage of the app,
+ * the collision array can also be built without a device
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class StageData {
+    public static final int TILE_SIZE = 24; //size of a tile in px
+    public static final int EMPTY_TILE = -1; //tile id of "--"
+
+    public float scale; //scaling of the stage before multiplying with the density
+    public String music; //name of the raw resource of the bg music
+    public String background; //name of the drawable resource of the background
+    public int player_start_x, player_start_y; //starting position of player in tiles
+    public float player_velocity_x; //how far player moves forward
+    public int width; //width in tiles
+    public int height; //height in tiles
+    public int[][] tiles; //tile ids [x][y]. EMPTY_TILE where there is no tile
+
+    /**
+     * Creates the array of tile behaviors for the physics
+     *
+     * @param tiles_collision Behaviors of all tiles of the tileset. Uses the tile id as index
+     * @return Tile behaviors [x][y]. 0 where there is no tile
+     * @since 1.1
+     */
+    public int[][] buildCollision(int[] tiles_collision) {
+        int[][] collision = new int[this.width][this.height];
+        for (int x = 0; x < this.width; x++) {
+            for (int y = 0; y < this.height; y++) {
+                if (this.tiles[x][y] != EMPTY_TILE)
+                    collision[x][y] = tiles_collision[this.tiles[x][y]];
+            }
+        }
+        return collision;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Reads stage files and the tile behaviors of the tileset without Android.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class parses the stage files (assets/stageN.txt) into StageData.
+ * Tile rows are read character by character instead of splitting them, because the big stages have several thousand tiles
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public final class StageParser {
+    private static final Pattern COLLISION_ARRAY = Pattern.compile("<integer-array name=\"collision\">(.*?)</integer-array>", Pattern.DOTALL);
+    private static final Pattern ITEM = Pattern.compile("<item>\\s*(-?\\d+)\\s*</item>");
+
+    private StageParser() {
+    }
+
+    /**
+     * Parses a stage file
+     *
+     * @param reader Reader of the stage file. Is not closed
+     * @return Content of the stage file
+     * @throws IOException if the file could not be read or is not a valid stage file
+     * @since 1.1
+     */
+    public static StageData parse(BufferedReader reader) throws IOException {
+        StageData data = new StageData();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            switch (line) {
+                case "#info":
+                    data.scale = Float.parseFloat(value(reader.readLine()));
+                    data.music = value(reader.readLine());
+                    data.background = value(reader.readLine());
+                    break;
+                case "#player":
+                    data.player_start_x = Integer.parseInt(value(reader.readLine()));
+                    data.player_start_y = Integer.parseInt(value(reader.readLine()));
+                    data.player_velocity_x = Float.parseFloat(value(reader.readLine()));
+                    break;
+                case "#size":
+                    data.width = Integer.parseInt(value(reader.readLine()));
+                    data.height = Integer.parseInt(value(reader.readLine()));
+                    data.tiles = new int[data.width][data.height];
+                    break;
+                case "#tiles":
+                    if (data.tiles == null)
+                        throw new IOException("#tiles before #size");
+                    for (int y = 0; y < data.height; y++)
+                        parseRow(reader.readLine(), data.tiles, y);
+                    break;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Reads the tile behaviors of the tileset from res/values/arrays.xml, so the collision can be built without the resources of a device
+     *
+     * @param xml Content of arrays.xml
+     * @return Behaviors of all tiles of the tileset. Uses the tile id as index
+     * @throws IOException if the file has no collision array
+     * @since 1.1
+     */
+    public static int[] parseCollisionTable(CharSequence xml) throws IOException {
+        Matcher array = COLLISION_ARRAY.matcher(xml);
+        if (!array.find())
+            throw new IOException("no collision array");
+        Matcher item = ITEM.matcher(array.group(1));
+        int[] table = new int[128];
+        int count = 0;
+        while (item.find()) {
+            if (count == table.length) {
+                int[] grown = new int[table.length * 2];
+                System.arraycopy(table, 0, grown, 0, count);
+                table = grown;
+            }
+            table[count++] = Integer.parseInt(item.group(1));
+        }
+        int[] result = new int[count];
+        System.arraycopy(table, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Reads one row of tiles. Tiles are separated by spaces, "--" is an empty tile
+     * @since 1.1
+     */
+    private static void parseRow(String line, int[][] tiles, int y) throws IOException {
+        if (line == null)
+            throw new IOException("missing tile row " + y);
+        int x = 0;
+        int i = 0;
+        int length = line.length();
+        while (i < length && x < tiles.length) {
+            char ch = line.charAt(i);
+            if (ch == ' ') {
+                i++;
+                continue;
+            }
+            if (ch == '-') {
+                tiles[x++][y] = StageData.EMPTY_TILE;
+                while (i < length && line.charAt(i) != ' ')
+                    i++;
+                continue;
+            }
+            int id = 0;
+            while (i < length && (ch = line.charAt(i)) != ' ') {
+                if (ch < '0' || ch > '9')
+                    throw new IOException("invalid tile in row " + y + ": " + ch);
+                id = id * 10 + (ch - '0');
+                i++;
+            }
+            tiles[x++][y] = id;
+        }
+        while (x < tiles.length)
+            tiles[x++][y] = StageData.EMPTY_TILE;
+    }
+
+    /**
+     * Returns the value of a key=value line
+     * @since 1.1
+     */
+    private static String value(String line) throws IOException {
+        int index = line == null ? -1 : line.indexOf('=');
+        if (index < 0)
+            throw new IOException("expected key=value but got " + line);
+        return line.substring(index + 1).trim();
+    }
+}
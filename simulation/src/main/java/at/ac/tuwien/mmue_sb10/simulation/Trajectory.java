@@ -0,0 +1,222 @@
+/**
+ * Stores the path of the player through a stage, so it can be played back as ghost.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.IOException;
+
+/**
+ * This class keeps one sample (position and animation frame) of the player every PlayerPhysics.TICK ms of play time in preallocated arrays,
+ * so adding and reading samples does not allocate.
+ * For the database the samples are delta encoded: positions are rounded to quarter pixels and every sample only stores the difference
+ * to the previous one as zigzag varint, the frame is only stored when it changes. A sample usually takes 2 bytes, a minute of play about 7 KB
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class Trajectory {
+    private static final float PRECISION = 4; //positions are stored in 1/PRECISION px
+
+    private final float[] x; //position X of the samples in px
+    private final float[] y; //position Y of the samples in px
+    private final byte[] frames; //animation frame of the samples
+    private int size; //number of valid samples
+
+    /**
+     * Creates an empty Trajectory
+     *
+     * @param capacity Maximum number of samples
+     * @since 1.1
+     */
+    public Trajectory(int capacity) {
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.frames = new byte[capacity];
+    }
+
+    /**
+     * Adds a sample at the end
+     *
+     * @param x     Position X of the player in px
+     * @param y     Position Y of the player in px
+     * @param frame Animation frame of the player (0-255)
+     * @return false if the trajectory is full. The sample is not added then
+     * @since 1.1
+     */
+    public boolean add(float x, float y, int frame) {
+        if (this.size == this.frames.length)
+            return false;
+        this.x[this.size] = x;
+        this.y[this.size] = y;
+        this.frames[this.size] = (byte) frame;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Removes the newest samples, so at most size samples are left
+     *
+     * @param size Number of samples to keep
+     * @since 1.1
+     */
+    public void truncate(int size) {
+        if (size < this.size)
+            this.size = Math.max(size, 0);
+    }
+
+    /**
+     * Removes all samples
+     * @since 1.1
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of samples
+     * @since 1.1
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the play time in ms the samples cover
+     * @since 1.1
+     */
+    public long getTime() {
+        return (long) this.size * PlayerPhysics.TICK;
+    }
+
+    /**
+     * Returns position X of a sample in px
+     * @since 1.1
+     */
+    public float getX(int index) {
+        return this.x[index];
+    }
+
+    /**
+     * Returns position Y of a sample in px
+     * @since 1.1
+     */
+    public float getY(int index) {
+        return this.y[index];
+    }
+
+    /**
+     * Returns the animation frame of a sample
+     * @since 1.1
+     */
+    public int getFrame(int index) {
+        return this.frames[index] & 0xFF;
+    }
+
+    /**
+     * Delta encodes the samples
+     *
+     * @return Encoded samples that can be read by decode
+     * @since 1.1
+     */
+    public byte[] encode() {
+        //worst case: 5 bytes per varint
+        byte[] buffer = new byte[5 + this.size * 11];
+        int length = writeVarint(buffer, 0, this.size);
+        int last_x = 0, last_y = 0, last_frame = -1;
+        for (int i = 0; i < this.size; i++) {
+            int x = Math.round(this.x[i] * PRECISION);
+            int y = Math.round(this.y[i] * PRECISION);
+            int frame = this.frames[i] & 0xFF;
+            boolean frame_changed = frame != last_frame;
+            //the lowest bit of the x delta tells whether a frame follows
+            length = writeVarint(buffer, length, zigzag(x - last_x) << 1 | (frame_changed ? 1 : 0));
+            length = writeVarint(buffer, length, zigzag(y - last_y));
+            if (frame_changed)
+                buffer[length++] = (byte) frame;
+            last_x = x;
+            last_y = y;
+            last_frame = frame;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Creates a Trajectory from samples written by encode
+     *
+     * @param bytes Encoded samples
+     * @return Trajectory that is exactly large enough for the samples
+     * @throws IOException if bytes is not a valid trajectory
+     * @since 1.1
+     */
+    public static Trajectory decode(byte[] bytes) throws IOException {
+        int[] position = new int[1];
+        int size = readVarint(bytes, position);
+        if (size < 0 || size > bytes.length)
+            throw new IOException("invalid trajectory size " + size);
+        Trajectory trajectory = new Trajectory(size);
+        int x = 0, y = 0, frame = 0;
+        for (int i = 0; i < size; i++) {
+            int dx = readVarint(bytes, position);
+            x += unzigzag(dx >>> 1);
+            y += unzigzag(readVarint(bytes, position));
+            if ((dx & 1) != 0) {
+                if (position[0] >= bytes.length)
+                    throw new IOException("trajectory ends in sample " + i);
+                frame = bytes[position[0]++] & 0xFF;
+            }
+            trajectory.add(x / PRECISION, y / PRECISION, frame);
+        }
+        return trajectory;
+    }
+
+    /**
+     * Maps signed values to unsigned ones, so small negative values also need few bytes
+     * @since 1.1
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverts zigzag
+     * @since 1.1
+     */
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes an unsigned value with 7 bits per byte. The highest bit marks that another byte follows
+     * @return Index after the written bytes
+     * @since 1.1
+     */
+    private static int writeVarint(byte[] buffer, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[index++] = (byte) value;
+        return index;
+    }
+
+    /**
+     * Reads a value written by writeVarint and moves position behind it
+     * @since 1.1
+     */
+    private static int readVarint(byte[] bytes, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= bytes.length)
+                throw new IOException("unexpected end of trajectory");
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("varint too long");
+    }
+}
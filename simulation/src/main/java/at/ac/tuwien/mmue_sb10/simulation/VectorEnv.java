@@ -0,0 +1,264 @@
+/**
+ * Runs many headless copies of a stage side by side for automated players.
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * This class is a vectorised environment in the style of gym: count independent copies of a stage are stepped together with one action per copy.
+ * Every copy moves the player with PlayerPhysics over the collision of StageData, which is what GameState.update does after its checks for
+ * pause and the start animation, so an automated player sees exactly the rules of the game. Time advances in fixed ticks.
+ * Observations, rewards and done flags are written into public arrays that are allocated once and reused for every step.
+ * A copy that is done is reset right away, so its observation already belongs to the next episode (like the autoreset of gym).
+ * With more than one thread the copies are split into equally sized ranges, each worker steps its own range
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class VectorEnv implements AutoCloseable {
+    public static final int ACTION_NONE = 0; //do nothing
+    public static final int ACTION_JUMP = 1; //jump
+    public static final int ACTION_FLIP = 2; //invert gravity
+
+    public static final int VIEW_WIDTH = 8; //tiles in front of the player in the observation
+    public static final int VIEW_HEIGHT = 5; //tiles above, at and below the player in the observation
+    public static final int OBSERVATION_SIZE = 8 + VIEW_WIDTH * VIEW_HEIGHT; //floats per copy
+
+    public static final float REWARD_FINISH = 1; //reward for reaching the finish line
+    public static final float REWARD_DEATH = -1; //reward for dying
+    public static final float REWARD_TICK = -0.001f; //reward for every step, so faster runs are better
+
+    /*
+     * OUTPUT: written by every step
+     */
+    public final float[] observations; //OBSERVATION_SIZE values per copy, see observe
+    public final float[] rewards; //reward of the last step per copy
+    public final boolean[] dones; //copy died, finished or ran out of steps in the last step. it has been reset already
+    public final boolean[] finished; //copy finished in the last step
+
+    private final StageData stage; //stage all copies play
+    private final int[][] collision; //tile behaviors [x][y], shared by all copies
+    private final PlayerPhysics[] players; //player of each copy
+    private final int[] steps; //steps since the last reset per copy
+    private final int max_steps; //steps until an episode is cut off
+    private final float width_px, height_px; //size of the stage in px
+
+    /*
+     * WORKERS
+     */
+    private final Thread[] workers; //one thread per range except the first, which is stepped by the caller
+    private final CyclicBarrier start; //workers wait here for the next step
+    private final CyclicBarrier end; //caller waits here until all ranges are stepped
+    private int[] actions; //actions of the current step, read by the workers
+    private volatile boolean closed;
+
+    /**
+     * Creates the copies and puts all of them at the start of the stage
+     *
+     * @param stage           Stage to play
+     * @param tiles_collision Behaviors of all tiles of the tileset
+     * @param count           Number of copies
+     * @param threads         Number of threads that step the copies, including the calling thread
+     * @param max_steps       Steps until an episode is cut off
+     * @since 1.1
+     */
+    public VectorEnv(StageData stage, int[] tiles_collision, int count, int threads, int max_steps) {
+        if (count < 1 || threads < 1)
+            throw new IllegalArgumentException("count and threads must be positive");
+        this.stage = stage;
+        this.collision = stage.buildCollision(tiles_collision);
+        this.max_steps = max_steps;
+        this.width_px = stage.width * StageData.TILE_SIZE;
+        this.height_px = stage.height * StageData.TILE_SIZE;
+
+        this.observations = new float[count * OBSERVATION_SIZE];
+        this.rewards = new float[count];
+        this.dones = new boolean[count];
+        this.finished = new boolean[count];
+        this.players = new PlayerPhysics[count];
+        this.steps = new int[count];
+        for (int i = 0; i < count; i++) {
+            this.players[i] = new PlayerPhysics(null);
+            this.players[i].setCollision(this.collision);
+        }
+        reset();
+
+        threads = Math.min(threads, count);
+        this.workers = new Thread[threads - 1];
+        this.start = new CyclicBarrier(threads);
+        this.end = new CyclicBarrier(threads);
+        for (int w = 1; w < threads; w++) {
+            final int from = count * w / threads;
+            final int to = count * (w + 1) / threads;
+            this.workers[w - 1] = new Thread(() -> work(from, to), "VectorEnv-" + w);
+            this.workers[w - 1].setDaemon(true);
+            this.workers[w - 1].start();
+        }
+    }
+
+    /**
+     * Puts all copies at the start of the stage and writes their observations
+     * @since 1.1
+     */
+    public void reset() {
+        for (int i = 0; i < this.players.length; i++) {
+            reset(i);
+            this.rewards[i] = 0;
+            this.dones[i] = false;
+            this.finished[i] = false;
+        }
+    }
+
+    /**
+     * Applies one action per copy and moves all copies by one PlayerPhysics.TICK
+     *
+     * @param actions ACTION_NONE, ACTION_JUMP or ACTION_FLIP per copy
+     * @since 1.1
+     */
+    public void step(int[] actions) {
+        if (actions.length != this.players.length)
+            throw new IllegalArgumentException("expected " + this.players.length + " actions but got " + actions.length);
+        if (this.closed)
+            throw new IllegalStateException("closed");
+        this.actions = actions;
+        if (this.workers.length == 0) {
+            stepRange(0, this.players.length);
+            return;
+        }
+        await(this.start);
+        stepRange(0, this.players.length / (this.workers.length + 1));
+        await(this.end);
+    }
+
+    /**
+     * Returns the number of copies
+     * @since 1.1
+     */
+    public int size() {
+        return this.players.length;
+    }
+
+    /**
+     * Stops the worker threads
+     * @since 1.1
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        for (Thread worker : this.workers)
+            worker.interrupt();
+    }
+
+    /**
+     * Loop of a worker thread: waits for a step, steps its range and reports back
+     * @since 1.1
+     */
+    private void work(int from, int to) {
+        try {
+            while (!this.closed) {
+                this.start.await();
+                stepRange(from, to);
+                this.end.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            //closed
+        }
+    }
+
+    /**
+     * Steps the copies from (inclusive) to to (exclusive)
+     * @since 1.1
+     */
+    private void stepRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            PlayerPhysics player = this.players[i];
+            //same input rules as GameState.onTouchEvent: no input in front of the finish line
+            if (!player.no_input) {
+                if (this.actions[i] == ACTION_JUMP)
+                    player.jump();
+                else if (this.actions[i] == ACTION_FLIP)
+                    player.invertGravity();
+            }
+            player.step(PlayerPhysics.TICK);
+            this.steps[i]++;
+
+            float reward = REWARD_TICK;
+            boolean done = false;
+            if (player.finished) {
+                reward += REWARD_FINISH;
+                done = true;
+            } else if (player.dead) {
+                reward += REWARD_DEATH;
+                done = true;
+            } else if (this.steps[i] >= this.max_steps) {
+                done = true;
+            }
+            this.rewards[i] = reward;
+            this.dones[i] = done;
+            this.finished[i] = player.finished;
+            if (done)
+                reset(i);
+            else
+                observe(i);
+        }
+    }
+
+    /**
+     * Puts a copy at the start of the stage and writes its observation
+     * @since 1.1
+     */
+    private void reset(int i) {
+        this.players[i].reset(this.stage.player_start_x * StageData.TILE_SIZE, this.stage.player_start_y * StageData.TILE_SIZE + StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, this.stage.player_velocity_x);
+        this.players[i].setState(PlayerState.WAKEUP);
+        this.steps[i] = 0;
+        observe(i);
+    }
+
+    /**
+     * Writes the observation of a copy: position relative to the stage size, velocities in px/s divided by 100, gravity, in air, boost and
+     * jumper flags, followed by the tile behaviors of VIEW_WIDTH x VIEW_HEIGHT tiles in front of the player, row by row (outside of the stage is solid)
+     * @since 1.1
+     */
+    private void observe(int i) {
+        PlayerPhysics player = this.players[i];
+        int o = i * OBSERVATION_SIZE;
+        this.observations[o] = player.pos_x / this.width_px;
+        this.observations[o + 1] = player.pos_y / this.height_px;
+        this.observations[o + 2] = player.velocity_x * player.boost_x / 100;
+        this.observations[o + 3] = player.velocity_y / 100;
+        this.observations[o + 4] = player.gravity;
+        this.observations[o + 5] = player.inAir ? 1 : 0;
+        this.observations[o + 6] = player.onBoost ? 1 : 0;
+        this.observations[o + 7] = player.onJumper ? 1 : 0;
+
+        int direction = player.velocity_x < 0 ? -1 : 1;
+        int tile_x = (int) ((player.pos_x + PlayerPhysics.PLAYER_WIDTH / 2f) / StageData.TILE_SIZE);
+        int tile_y = (int) ((player.pos_y + PlayerPhysics.PLAYER_HEIGTH / 2f) / StageData.TILE_SIZE);
+        o += 8;
+        for (int dy = -VIEW_HEIGHT / 2; dy <= VIEW_HEIGHT / 2; dy++) {
+            //rows are mirrored with the gravity, so "below" always means towards the ground
+            int y = tile_y + dy * player.gravity;
+            for (int dx = 1; dx <= VIEW_WIDTH; dx++) {
+                int x = tile_x + dx * direction;
+                boolean inside = x >= 0 && y >= 0 && x < this.collision.length && y < this.collision[0].length;
+                this.observations[o++] = inside ? this.collision[x][y] : 1;
+            }
+        }
+    }
+
+    /**
+     * Waits for all parties of a barrier
+     * @since 1.1
+     */
+    private void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (InterruptedException | BrokenBarrierException e) {
+            throw new IllegalStateException("worker stopped", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Shifts a window of generated chunks and checks that generated runs can be finished
+ */
+public class ChunkRingTest {
+    private static final int TILE_FINISH = 91;
+    private static final int RUN_CHUNKS = 30;
+
+    private int[] tiles_collision;
+
+    @Before
+    public void setUp() throws IOException {
+        this.tiles_collision = Stages.collisionTable();
+    }
+
+    @Test
+    public void shift_matchesChunksGeneratedInOrder() {
+        ChunkRing ring = new ChunkRing(4, this.tiles_collision);
+        ring.reset(42);
+        for (int i = 0; i < 10; i++)
+            ring.shift();
+        assertEquals(10, ring.getFirstChunk());
+
+        int[][] run = new int[14 * ChunkRing.CHUNK_WIDTH][ChunkGenerator.HEIGHT];
+        ChunkGenerator generator = new ChunkGenerator(42);
+        for (int chunk = 0; chunk < 14; chunk++)
+            generator.next(run, chunk * ChunkRing.CHUNK_WIDTH);
+        for (int x = 0; x < ring.getWidth(); x++) {
+            assertArrayEquals(run[10 * ChunkRing.CHUNK_WIDTH + x], ring.tiles[x]);
+            for (int y = 0; y < ring.getHeight(); y++) {
+                int tile = ring.tiles[x][y];
+                assertEquals(tile == StageData.EMPTY_TILE ? 0 : this.tiles_collision[tile], ring.collision[x][y]);
+            }
+        }
+    }
+
+    @Test
+    public void generatedRuns_canBeFinished() {
+        for (long seed = 1; seed <= 2; seed++) {
+            StageData stage = run(seed);
+            RouteFinder.Result route = RouteFinder.find(stage, stage.buildCollision(this.tiles_collision), PlayerPhysics.TICK, 60 * 60 * 5);
+            assertNotNull("no route for seed " + seed, route.inputs);
+        }
+    }
+
+    /**
+     * Puts the first chunks of a run into a stage with a finish line at the end
+     */
+    private StageData run(long seed) {
+        StageData stage = new StageData();
+        stage.width = RUN_CHUNKS * ChunkRing.CHUNK_WIDTH + 2;
+        stage.height = ChunkGenerator.HEIGHT;
+        stage.tiles = new int[stage.width][stage.height];
+        stage.player_start_x = ChunkGenerator.START_X;
+        stage.player_start_y = ChunkGenerator.START_Y;
+        stage.player_velocity_x = ChunkGenerator.VELOCITY_X;
+        ChunkGenerator generator = new ChunkGenerator(seed);
+        for (int chunk = 0; chunk < RUN_CHUNKS; chunk++)
+            generator.next(stage.tiles, chunk * ChunkRing.CHUNK_WIDTH);
+        for (int x = stage.width - 2; x < stage.width; x++) {
+            for (int y = 0; y < stage.height; y++)
+                stage.tiles[x][y] = TILE_FINISH;
+        }
+        return stage;
+    }
+}
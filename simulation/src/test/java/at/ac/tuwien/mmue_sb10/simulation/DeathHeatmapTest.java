@@ -0,0 +1,68 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts deaths on a small heatmap, encodes and merges it
+ */
+public class DeathHeatmapTest {
+
+    @Test
+    public void add_countsPerTileAndClampsToTheStage() {
+        DeathHeatmap heatmap = new DeathHeatmap(10, 5);
+        heatmap.addAt(3.5f * StageData.TILE_SIZE, 2.5f * StageData.TILE_SIZE);
+        heatmap.add(3, 2);
+        heatmap.add(-4, 20);
+        assertEquals(2, heatmap.get(3, 2));
+        assertEquals(1, heatmap.get(0, 4));
+        assertEquals(2, heatmap.getMax());
+        assertEquals(3, heatmap.getTotal());
+    }
+
+    @Test
+    public void add_stopsAtShortMax() {
+        DeathHeatmap heatmap = new DeathHeatmap(1, 1);
+        for (int i = 0; i < Short.MAX_VALUE + 10; i++)
+            heatmap.add(0, 0);
+        assertEquals(Short.MAX_VALUE, heatmap.get(0, 0));
+        assertEquals(Short.MAX_VALUE, heatmap.getMax());
+    }
+
+    @Test
+    public void encode_decodeGivesCountsBack() throws IOException {
+        DeathHeatmap heatmap = new DeathHeatmap(7, 3);
+        for (int i = 0; i < 1000; i++)
+            heatmap.add(i % 7, i % 3);
+        heatmap.add(6, 2);
+        DeathHeatmap decoded = DeathHeatmap.decode(7, 3, heatmap.encode());
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 7; x++)
+                assertEquals(heatmap.get(x, y), decoded.get(x, y));
+        }
+        assertEquals(heatmap.getMax(), decoded.getMax());
+        assertEquals(heatmap.getTotal(), decoded.getTotal());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsOtherSize() throws IOException {
+        DeathHeatmap.decode(8, 3, new DeathHeatmap(7, 3).encode());
+    }
+
+    @Test
+    public void merge_addsCountsOfTheSameSize() {
+        DeathHeatmap heatmap = new DeathHeatmap(4, 4);
+        DeathHeatmap other = new DeathHeatmap(4, 4);
+        heatmap.add(1, 1);
+        other.add(1, 1);
+        other.add(2, 3);
+        assertTrue(heatmap.merge(other));
+        assertEquals(2, heatmap.get(1, 1));
+        assertEquals(1, heatmap.get(2, 3));
+        assertEquals(3, heatmap.getTotal());
+        assertFalse(heatmap.merge(new DeathHeatmap(5, 4)));
+    }
+}
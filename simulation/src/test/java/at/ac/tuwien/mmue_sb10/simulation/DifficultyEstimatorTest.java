@@ -0,0 +1,47 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Estimates the tutorial stage -1, which has a short route
+ */
+public class DifficultyEstimatorTest {
+    private static final int ATTEMPTS = 500;
+
+    private StageData stage;
+    private int[] tiles_collision;
+
+    @Before
+    public void setUp() throws IOException {
+        this.tiles_collision = Stages.collisionTable();
+        this.stage = Stages.load("-1");
+    }
+
+    @Test
+    public void estimate_withoutNoiseAlwaysFinishes() throws Exception {
+        DifficultyEstimator.Report report = new DifficultyEstimator(this.tiles_collision, 0, 0, 1).estimate("-1", this.stage, ATTEMPTS, 1);
+        assertNotNull(report.route);
+        assertEquals(ATTEMPTS, report.attempts);
+        assertEquals(ATTEMPTS, report.finishes);
+        assertEquals(1, report.expectedAttempts(), 0);
+    }
+
+    @Test
+    public void estimate_isIndependentOfThreads() throws Exception {
+        DifficultyEstimator.Report single = new DifficultyEstimator(this.tiles_collision, 40, 0.05, 1).estimate("-1", this.stage, ATTEMPTS, 7);
+        DifficultyEstimator.Report parallel = new DifficultyEstimator(this.tiles_collision, 40, 0.05, 3).estimate("-1", this.stage, ATTEMPTS, 7);
+        assertEquals(single.finishes, parallel.finishes);
+        assertArrayEquals(single.segment_deaths, parallel.segment_deaths);
+        assertArrayEquals(single.segment_reached, parallel.segment_reached);
+        int deaths = 0;
+        for (int death : single.segment_deaths)
+            deaths += death;
+        assertEquals(ATTEMPTS, single.finishes + single.timeouts + deaths);
+        assertTrue(single.finishes < ATTEMPTS);
+    }
+}
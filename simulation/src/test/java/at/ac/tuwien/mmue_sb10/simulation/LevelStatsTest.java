@@ -0,0 +1,55 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sorts deaths into the fixed buckets, adds up stats and encodes the histograms
+ */
+public class LevelStatsTest {
+
+    @Test
+    public void addDeath_sortsIntoTheBucketsAndClampsAtTheBorders() {
+        LevelStats stats = new LevelStats();
+        stats.addDeath(-24, 960, 0);
+        stats.addDeath(959, 960, LevelStats.getTimeLimit(0));
+        stats.addDeath(2000, 960, 10 * 60_000L);
+        assertEquals(1, stats.getDistance(0));
+        assertEquals(2, stats.getDistance(LevelStats.DISTANCE_BUCKETS - 1));
+        assertEquals(1, stats.getTime(0));
+        assertEquals(1, stats.getTime(1)); //the limit belongs to the next bucket
+        assertEquals(1, stats.getTime(LevelStats.TIME_BUCKETS - 1));
+        assertEquals(3, stats.getDeaths());
+    }
+
+    @Test
+    public void add_decodeGivesTheSumBack() throws IOException {
+        LevelStats saved = new LevelStats();
+        saved.addAttempt();
+        saved.addDeath(100, 960, 3_000);
+        LevelStats unsaved = new LevelStats();
+        unsaved.addAttempt();
+        unsaved.addFinish();
+        unsaved.addDeath(100, 960, 3_000);
+        assertFalse(unsaved.isEmpty());
+
+        LevelStats stored = LevelStats.decode(saved.getAttempts(), saved.getFinishes(), saved.getDeaths(), saved.encodeHistograms());
+        stored.add(unsaved);
+        assertEquals(2, stored.getAttempts());
+        assertEquals(1, stored.getFinishes());
+        assertEquals(2, stored.getDeaths());
+        assertEquals(2, stored.getDistance(1));
+        assertEquals(2, stored.getTime(1));
+        stored.clear();
+        assertTrue(stored.isEmpty());
+        assertEquals(0, stored.getDistance(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsHistogramsOfOtherBuckets() throws IOException {
+        LevelStats.decode(0, 0, 0, new byte[12]);
+    }
+}
@@ -0,0 +1,80 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that rivals of a PlayerBatch move exactly like a single PlayerPhysics with the same inputs
+ */
+public class PlayerBatchTest {
+    private static final int TICKS = 2000;
+
+    private int[][] collision;
+
+    @Before
+    public void setUp() {
+        //floor with some walls to jump over and a gap
+        this.collision = new int[400][14];
+        for (int x = 0; x < 400; x++) {
+            if (x % 60 != 30)
+                this.collision[x][12] = 1;
+            if (x % 25 == 20)
+                this.collision[x][11] = 1;
+        }
+    }
+
+    @Test
+    public void recordedRival_movesLikePlayer() {
+        int[] inputs = new int[TICKS / 40];
+        for (int n = 0; n < inputs.length; n++)
+            inputs[n] = (n * 40) << 1 | (n % 7 == 6 ? PlayerBatch.INPUT_GRAVITY : PlayerBatch.INPUT_JUMP);
+
+        PlayerBatch batch = new PlayerBatch(8);
+        batch.setCollision(this.collision);
+        for (int i = 0; i < 8; i++)
+            batch.addRecorded(48, 11 * StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, 100, inputs);
+
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(this.collision);
+        physics.reset(48, 11 * StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, 100);
+        int next = 0;
+        for (int tick = 0; tick < TICKS && !physics.dead && !physics.finished; tick++) {
+            while (next < inputs.length && inputs[next] >> 1 <= tick) {
+                if ((inputs[next] & 1) == PlayerBatch.INPUT_JUMP)
+                    physics.jump();
+                else
+                    physics.invertGravity();
+                next++;
+            }
+            physics.step(PlayerPhysics.TICK);
+            batch.step();
+
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(physics.pos_x, batch.pos_x[i], 0f);
+                assertEquals(physics.pos_y, batch.pos_y[i], 0f);
+                assertEquals(physics.getFlags(), batch.flags[i]);
+            }
+        }
+    }
+
+    @Test
+    public void generatedRivals_dependOnlyOnSeed() {
+        PlayerBatch first = new PlayerBatch(50);
+        PlayerBatch second = new PlayerBatch(50);
+        first.setCollision(this.collision);
+        second.setCollision(this.collision);
+        for (int i = 0; i < 50; i++) {
+            first.addGenerated(48, 11 * StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, 100, i + 1);
+            second.addGenerated(48, 11 * StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, 100, i + 1);
+        }
+        for (int tick = 0; tick < TICKS; tick++) {
+            first.step();
+            second.step();
+        }
+        assertArrayEquals(first.pos_x, second.pos_x, 0f);
+        assertArrayEquals(first.pos_y, second.pos_y, 0f);
+        assertEquals(TICKS * PlayerPhysics.TICK, first.getTime());
+    }
+}
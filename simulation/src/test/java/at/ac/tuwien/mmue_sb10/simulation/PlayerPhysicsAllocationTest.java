@@ -0,0 +1,125 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Steps the player through every shipped stage and fails if a single step allocates on the heap.
+ * The step runs every frame of the game loop, so any allocation there leads to GC pauses while playing
+ */
+public class PlayerPhysicsAllocationTest {
+    private static final int FRAMES = 5000; //simulated frames per stage
+    private static final long FRAME_TIME = 16; //ms per frame at 60 fps
+    private static final int JUMP_INTERVAL = 40; //frames between two jumps
+    private static final int GRAVITY_INTERVAL = 150; //frames between two gravity changes
+
+    private com.sun.management.ThreadMXBean threads;
+    private long thread_id;
+    private long overhead; //bytes the measurement itself allocates
+    private int[] tiles_collision;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(this.threads.isThreadAllocatedMemorySupported());
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.thread_id = Thread.currentThread().getId();
+
+        //the measurement allocates once while it is compiled, so it is warmed up before its overhead is taken
+        for (int i = 0; i < 50000; i++)
+            this.threads.getThreadAllocatedBytes(this.thread_id);
+        this.overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long start = this.threads.getThreadAllocatedBytes(this.thread_id);
+            this.overhead = Math.min(this.overhead, this.threads.getThreadAllocatedBytes(this.thread_id) - start);
+        }
+
+        this.tiles_collision = Stages.collisionTable();
+    }
+
+    @Test
+    public void step_doesNotAllocate() throws IOException {
+        for (String level : Stages.LEVELS) {
+            StageData stage = Stages.load(level);
+            CountingListener listener = new CountingListener();
+            PlayerPhysics physics = new PlayerPhysics(listener);
+            physics.setCollision(stage.buildCollision(this.tiles_collision));
+
+            //first run loads and compiles all classes, which allocates
+            simulate(physics, stage, level, false);
+            simulate(physics, stage, level, true);
+            assertTrue("stage " + level + " was not simulated", listener.landed > 0);
+        }
+    }
+
+    /**
+     * Simulates FRAMES frames with regular input. Restarts the stage when the player died or finished
+     */
+    private void simulate(PlayerPhysics physics, StageData stage, String level, boolean check) {
+        restart(physics, stage);
+        for (int frame = 1; frame <= FRAMES; frame++) {
+            long start = this.threads.getThreadAllocatedBytes(this.thread_id);
+
+            if (physics.dead || physics.finished)
+                restart(physics, stage);
+            if (frame % JUMP_INTERVAL == 0)
+                physics.jump();
+            if (frame % GRAVITY_INTERVAL == 0)
+                physics.invertGravity();
+            physics.step(FRAME_TIME);
+
+            long allocated = this.threads.getThreadAllocatedBytes(this.thread_id) - start - this.overhead;
+            if (check && allocated > 0)
+                fail("frame " + frame + " of stage " + level + " allocated " + allocated + " bytes");
+        }
+    }
+
+    private static void restart(PlayerPhysics physics, StageData stage) {
+        physics.reset(stage.player_start_x * StageData.TILE_SIZE, stage.player_start_y * StageData.TILE_SIZE + StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, stage.player_velocity_x);
+        physics.setState(PlayerState.WAKEUP);
+    }
+
+    /**
+     * Listener that only counts the events, so it does not allocate itself
+     */
+    private static class CountingListener implements PhysicsListener {
+        int landed, airborne, killed, finished, no_input, checkpoints;
+
+        @Override
+        public void onLanded() {
+            this.landed++;
+        }
+
+        @Override
+        public void onAirborne() {
+            this.airborne++;
+        }
+
+        @Override
+        public void onKilled() {
+            this.killed++;
+        }
+
+        @Override
+        public void onFinished() {
+            this.finished++;
+        }
+
+        @Override
+        public void onNoInput() {
+            this.no_input++;
+        }
+
+        @Override
+        public void onCheckpoint() {
+            this.checkpoints++;
+        }
+    }
+}
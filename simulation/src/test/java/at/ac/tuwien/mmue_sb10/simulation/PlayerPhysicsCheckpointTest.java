@@ -0,0 +1,59 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the player through a checkpoint gate on a flat floor
+ */
+public class PlayerPhysicsCheckpointTest {
+    private static final long FRAME_TIME = 16; //ms per frame at 60 fps
+
+    @Test
+    public void checkpoint_isReachedOnceAndDoesNotBlock() {
+        int[][] collision = new int[40][12];
+        for (int x = 0; x < 40; x++)
+            collision[x][10] = 1;
+        for (int y = 7; y < 10; y++)
+            collision[15][y] = 9;
+
+        int[] checkpoints = new int[1];
+        PlayerPhysics physics = new PlayerPhysics(new PhysicsListener() {
+            @Override
+            public void onLanded() {
+            }
+
+            @Override
+            public void onAirborne() {
+            }
+
+            @Override
+            public void onKilled() {
+            }
+
+            @Override
+            public void onFinished() {
+            }
+
+            @Override
+            public void onNoInput() {
+            }
+
+            @Override
+            public void onCheckpoint() {
+                checkpoints[0]++;
+            }
+        });
+        physics.setCollision(collision);
+        physics.reset(5 * StageData.TILE_SIZE, 9 * StageData.TILE_SIZE, 100);
+
+        for (int frame = 0; frame < 300 && physics.pos_x < 20 * StageData.TILE_SIZE; frame++)
+            physics.step(FRAME_TIME);
+
+        assertFalse(physics.dead);
+        assertTrue(physics.pos_x >= 20 * StageData.TILE_SIZE);
+        assertFalse(physics.inCheckpoint);
+        assertEquals(1, checkpoints[0]);
+    }
+}
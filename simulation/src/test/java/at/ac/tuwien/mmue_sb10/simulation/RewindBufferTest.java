@@ -0,0 +1,74 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records the player falling through an empty stage and checks that rewinding restores the recorded snapshots
+ */
+public class RewindBufferTest {
+    private static final long FRAME_TIME = 16; //ms per frame at 60 fps
+
+    private PlayerPhysics physics;
+
+    @Before
+    public void setUp() {
+        this.physics = new PlayerPhysics(null);
+        this.physics.setCollision(new int[100][100]);
+        this.physics.reset(240, 240, 100);
+        this.physics.setState(PlayerState.WAKEUP);
+    }
+
+    @Test
+    public void rewind_restoresOlderSnapshot() {
+        RewindBuffer buffer = new RewindBuffer(100);
+        float[] expected = null;
+        for (int frame = 0; frame < 20; frame++) {
+            this.physics.step(FRAME_TIME);
+            buffer.record(this.physics, FRAME_TIME);
+            if (frame == 9) {
+                expected = new float[PlayerPhysics.STATE_SIZE];
+                this.physics.save(expected, 0);
+            }
+        }
+
+        assertEquals(10 * FRAME_TIME, buffer.rewind(this.physics, 10 * FRAME_TIME));
+        float[] actual = new float[PlayerPhysics.STATE_SIZE];
+        this.physics.save(actual, 0);
+        assertArrayEquals(expected, actual, 0f);
+        assertEquals(10, buffer.size());
+    }
+
+    @Test
+    public void rewind_keepsOldestSnapshotWhenFull() {
+        RewindBuffer buffer = new RewindBuffer(10);
+        for (int frame = 0; frame < 50; frame++) {
+            this.physics.step(FRAME_TIME);
+            buffer.record(this.physics, FRAME_TIME);
+        }
+
+        assertEquals(10, buffer.size());
+        assertEquals(9 * FRAME_TIME, buffer.getRecordedTime());
+        assertEquals(9 * FRAME_TIME, buffer.rewind(this.physics, 1000));
+        assertEquals(1, buffer.size());
+        assertEquals(0, buffer.rewind(this.physics, 1000));
+    }
+
+    @Test
+    public void shift_movesSnapshotsAndDropsThoseLeftOfTheStage() {
+        RewindBuffer buffer = new RewindBuffer(100);
+        for (int frame = 0; frame < 20; frame++) {
+            this.physics.step(FRAME_TIME);
+            buffer.record(this.physics, FRAME_TIME);
+        }
+        float newest = this.physics.pos_x;
+
+        //player moves 1.6 px per frame, so the 5 newest snapshots stay right of 0
+        buffer.shift(newest - 7);
+        assertEquals(5, buffer.size());
+        buffer.rewind(this.physics, 0);
+        assertEquals(7, this.physics.pos_x, 0.001f);
+    }
+}
@@ -0,0 +1,52 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Searches a route through every shipped stage at the tick of the game loop and replays it
+ */
+public class RouteFinderTest {
+    private int[] tiles_collision;
+
+    @Before
+    public void setUp() throws IOException {
+        this.tiles_collision = Stages.collisionTable();
+    }
+
+    @Test
+    public void find_solvesEveryStage() throws IOException {
+        for (String level : Stages.LEVELS) {
+            StageData stage = Stages.load(level);
+            int[][] collision = stage.buildCollision(this.tiles_collision);
+            RouteFinder.Result route = RouteFinder.find(stage, collision, PlayerPhysics.TICK, DifficultyEstimator.MAX_ROUTE_TICKS);
+            assertFalse("search exhausted for stage " + level, route.exhausted);
+            assertNotNull("no route for stage " + level, route.inputs);
+            assertTrue("route does not finish stage " + level, replay(stage, collision, route.inputs));
+        }
+    }
+
+    /**
+     * Plays the inputs without noise and returns whether the player reaches the finish line
+     */
+    private static boolean replay(StageData stage, int[][] collision, int[] inputs) {
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(collision);
+        RouteFinder.start(physics, stage);
+        int next = 0;
+        for (int tick = 0; tick < DifficultyEstimator.MAX_ROUTE_TICKS && !physics.dead && !physics.finished; tick++) {
+            for (; next < inputs.length && inputs[next] >> 1 <= tick; next++) {
+                if ((inputs[next] & 1) == PlayerBatch.INPUT_JUMP)
+                    physics.jump();
+                else
+                    physics.invertGravity();
+            }
+            physics.step(PlayerPhysics.TICK);
+        }
+        return physics.finished;
+    }
+}
@@ -0,0 +1,74 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts ticks across pauses, keeps splits and formats the time
+ */
+public class RunTimerTest {
+
+    @Test
+    public void update_countsOnlyTheTimeWhileRunningWithoutLosingRemainders() {
+        RunTimer timer = new RunTimer(4);
+        long now = 123_456_789L;
+        timer.update(now, true);
+        //uneven frames, so every frame leaves a remainder below a tick
+        for (int i = 0; i < 100; i++) {
+            now += 16_700_000L;
+            timer.update(now, true);
+        }
+        timer.update(now += 5_000_000_000L, true);
+        timer.update(now += 9_000_000_000L, false); //paused: the 9 s do not count
+        timer.update(now + 300_000L, true);
+        long counted = 100 * 16_700_000L + 5_000_000_000L + 300_000L;
+        assertEquals(counted / RunTimer.TICK_NS, timer.getTicks());
+    }
+
+    @Test
+    public void restoreSplit_goesBackToTheCheckpoint() {
+        RunTimer timer = new RunTimer(2);
+        timer.update(0, true);
+        timer.update(RunTimer.TICK_NS * 10, true);
+        assertEquals(0, timer.split());
+        timer.update(RunTimer.TICK_NS * 25, true);
+        assertEquals(1, timer.split());
+        assertEquals(-1, timer.split());
+        timer.restoreSplit(1, 10);
+        assertEquals(1, timer.getSplitCount());
+        assertEquals(10, timer.getTicks());
+        timer.restoreSplit(1, 18); //checkpoint touched again after a rewind, later than its split
+        assertEquals(1, timer.getSplitCount());
+        assertEquals(18, timer.getTicks());
+        timer.restoreSplit(0, 0);
+        assertEquals(0, timer.getSplitCount());
+        assertEquals(0, timer.getTicks());
+    }
+
+    @Test
+    public void encodeSplits_decodeGivesSplitsBack() throws IOException {
+        RunTimer timer = new RunTimer(8);
+        timer.update(0, true);
+        for (int i = 1; i <= 5; i++) {
+            timer.update(RunTimer.TICK_NS * i * 70_000L, true);
+            timer.split();
+        }
+        int[] splits = RunTimer.decodeSplits(timer.encodeSplits());
+        assertEquals(5, splits.length);
+        for (int i = 0; i < 5; i++)
+            assertEquals(timer.getSplit(i), splits[i]);
+    }
+
+    @Test
+    public void format_writesMinutesSecondsAndHundredths() {
+        char[] buffer = new char[16];
+        int ticks = (12 * 60_000 + 3_450) / PlayerPhysics.TICK;
+        int length = RunTimer.format(ticks, buffer, 1);
+        long centis = (long) ticks * PlayerPhysics.TICK / 10;
+        assertEquals("12:0" + centis / 100 % 10 + "." + String.format("%02d", centis % 100), new String(buffer, 1, length));
+        assertEquals("0:00.00", new String(buffer, 0, RunTimer.format(0, buffer, 0)));
+    }
+}
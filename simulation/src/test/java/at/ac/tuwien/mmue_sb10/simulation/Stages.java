@@ -0,0 +1,34 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Loads the shipped stage files and the tile behaviors of the app for the tests.
+ * The locations are passed as system properties by the test task (stages.dir and tiles.collision)
+ */
+final class Stages {
+    static final String[] LEVELS = {"-5", "-4", "-3", "-2", "-1", "1", "2", "3", "4", "5", "6", "7", "8"}; //every shipped stage
+
+    private Stages() {
+    }
+
+    /**
+     * Parses assets/stage{level}.txt
+     */
+    static StageData load(String level) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(System.getProperty("stages.dir", "../app/src/main/assets"), "stage" + level + ".txt"), StandardCharsets.UTF_8)) {
+            return StageParser.parse(reader);
+        }
+    }
+
+    /**
+     * Returns the tile behaviors of the tileset from res/values/arrays.xml
+     */
+    static int[] collisionTable() throws IOException {
+        return StageParser.parseCollisionTable(new String(Files.readAllBytes(Paths.get(System.getProperty("tiles.collision", "../app/src/main/res/values/arrays.xml"))), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,54 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Encodes the trajectory of a simulated run and checks that decoding gives back the samples
+ */
+public class TrajectoryTest {
+    private static final long FRAME_TIME = PlayerPhysics.TICK;
+
+    @Test
+    public void encode_decodeGivesSamplesBack() throws IOException {
+        int[][] collision = new int[200][12];
+        for (int x = 0; x < 200; x++)
+            collision[x][10] = 1;
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(collision);
+        physics.reset(2 * StageData.TILE_SIZE, 9 * StageData.TILE_SIZE, 100);
+
+        Trajectory trajectory = new Trajectory(4000);
+        for (int tick = 0; tick < 3600; tick++) {
+            if (tick % 50 == 0)
+                physics.jump();
+            physics.step(FRAME_TIME);
+            assertTrue(trajectory.add(physics.pos_x, physics.pos_y, (tick / 5) % 48));
+        }
+
+        byte[] bytes = trajectory.encode();
+        Trajectory decoded = Trajectory.decode(bytes);
+        assertEquals(trajectory.size(), decoded.size());
+        for (int i = 0; i < trajectory.size(); i++) {
+            assertEquals(trajectory.getX(i), decoded.getX(i), 0.125f);
+            assertEquals(trajectory.getY(i), decoded.getY(i), 0.125f);
+            assertEquals(trajectory.getFrame(i), decoded.getFrame(i));
+        }
+        //about a minute of play
+        assertTrue("encoded size " + bytes.length, bytes.length < 3 * trajectory.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsTruncatedData() throws IOException {
+        Trajectory trajectory = new Trajectory(10);
+        for (int i = 0; i < 10; i++)
+            trajectory.add(i * 10, 240, i);
+        byte[] bytes = trajectory.encode();
+        byte[] truncated = new byte[bytes.length - 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        Trajectory.decode(truncated);
+    }
+}
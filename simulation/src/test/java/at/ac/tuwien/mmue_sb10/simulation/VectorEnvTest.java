@@ -0,0 +1,90 @@
+package at.ac.tuwien.mmue_sb10.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Steps a VectorEnv on stage 1 and compares it with a single PlayerPhysics and with other thread counts
+ */
+public class VectorEnvTest {
+    private static final int COUNT = 37;
+    private static final int STEPS = 3000;
+
+    private StageData stage;
+    private int[] tiles_collision;
+
+    @Before
+    public void setUp() throws IOException {
+        this.tiles_collision = Stages.collisionTable();
+        this.stage = Stages.load("1");
+    }
+
+    @Test
+    public void step_isIndependentOfThreads() {
+        float[] single = run(1);
+        float[] parallel = run(4);
+        assertArrayEquals(single, parallel, 0f);
+    }
+
+    @Test
+    public void step_followsPlayerPhysics() {
+        PlayerPhysics physics = new PlayerPhysics(null);
+        physics.setCollision(this.stage.buildCollision(this.tiles_collision));
+        physics.reset(this.stage.player_start_x * StageData.TILE_SIZE, this.stage.player_start_y * StageData.TILE_SIZE + StageData.TILE_SIZE - PlayerPhysics.PLAYER_HEIGTH, this.stage.player_velocity_x);
+
+        try (VectorEnv env = new VectorEnv(this.stage, this.tiles_collision, 1, 1, Integer.MAX_VALUE)) {
+            int[] actions = new int[1];
+            for (int step = 0; step < STEPS; step++) {
+                actions[0] = action(0, step);
+                if (!physics.no_input) {
+                    if (actions[0] == VectorEnv.ACTION_JUMP)
+                        physics.jump();
+                    else if (actions[0] == VectorEnv.ACTION_FLIP)
+                        physics.invertGravity();
+                }
+                physics.step(PlayerPhysics.TICK);
+                env.step(actions);
+
+                assertEquals(physics.dead || physics.finished, env.dones[0]);
+                if (env.dones[0]) {
+                    assertEquals(physics.finished ? VectorEnv.REWARD_FINISH + VectorEnv.REWARD_TICK : VectorEnv.REWARD_DEATH + VectorEnv.REWARD_TICK, env.rewards[0], 1e-6f);
+                    return;
+                }
+                assertEquals(physics.pos_x / (this.stage.width * StageData.TILE_SIZE), env.observations[0], 0f);
+                assertEquals(physics.pos_y / (this.stage.height * StageData.TILE_SIZE), env.observations[1], 0f);
+            }
+        }
+    }
+
+    /**
+     * Steps COUNT copies with fixed actions and returns the sum of all observations and rewards of every step
+     */
+    private float[] run(int threads) {
+        float[] result = new float[STEPS * 2];
+        try (VectorEnv env = new VectorEnv(this.stage, this.tiles_collision, COUNT, threads, 500)) {
+            int[] actions = new int[COUNT];
+            for (int step = 0; step < STEPS; step++) {
+                for (int i = 0; i < COUNT; i++)
+                    actions[i] = action(i, step);
+                env.step(actions);
+                for (float value : env.observations)
+                    result[step * 2] += value;
+                for (int i = 0; i < COUNT; i++)
+                    result[step * 2 + 1] += env.rewards[i] + (env.dones[i] ? 1000 : 0);
+            }
+        }
+        return result;
+    }
+
+    private static int action(int copy, int step) {
+        if ((step + copy) % 37 == 0)
+            return VectorEnv.ACTION_JUMP;
+        if ((step + copy * 7) % 211 == 0)
+            return VectorEnv.ACTION_FLIP;
+        return VectorEnv.ACTION_NONE;
+    }
+}